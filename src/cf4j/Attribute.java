@@ -0,0 +1,51 @@
+package cf4j;
+
+import java.io.Serializable;
+
+/**
+ * <p>Column of values of an attribute of the users or the items. The value of each user or item is
+ * stored at its index (see Attributes).</p>
+ *
+ * <p>Reading and writing values does not lock: different threads can write the values of different
+ * users or items at the same time, as UsersPartible and ItemsPartible do.</p>
+ *
+ * @author Fernando Ortega
+ */
+public abstract class Attribute implements Serializable {
+
+	private static final long serialVersionUID = 20171018L;
+
+	/**
+	 * Key of the attribute
+	 */
+	private String key;
+
+	/**
+	 * Creates an attribute
+	 * @param key Key of the attribute
+	 */
+	Attribute (String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Returns the key of the attribute
+	 * @return Key
+	 */
+	public String getKey () {
+		return this.key;
+	}
+
+	/**
+	 * Returns the number of values of the attribute
+	 * @return Number of users or items
+	 */
+	public abstract int size ();
+
+	/**
+	 * Moves the values when users or items are inserted. New users or items receive the default value.
+	 * @param indexes New index of each current user or item
+	 * @param size New number of users or items
+	 */
+	abstract void remap (int [] indexes, int size);
+}
@@ -0,0 +1,138 @@
+package cf4j;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Typed attributes of the users or the items of the Kernel. Each attribute is registered once by
+ * its key and returns a handle whose values are stored in one array indexed by the user or item
+ * index, so algorithms can read and write them without the locks, hashing and boxing of the
+ * User and Item maps:</p>
+ * <pre>
+ * DoubleAttribute bias = Kernel.gi().getUsersAttributes().getDoubles("my-user-bias");
+ * bias.set(userIndex, bias.get(userIndex) + delta);
+ * </pre>
+ *
+ * <p>Attributes are kept when users or items are added (see Kernel.addRatings(...)) and lost when
+ * users and items are created again (open(...), resplit(...)...).</p>
+ *
+ * @author Fernando Ortega
+ */
+public class Attributes implements Serializable {
+
+	private static final long serialVersionUID = 20171018L;
+
+	/**
+	 * Number of users or items
+	 */
+	private int size;
+
+	/**
+	 * Registered attributes
+	 */
+	private Map <String, Attribute> attributes = new HashMap <String, Attribute> ();
+
+	/**
+	 * Creates an empty set of attributes
+	 * @param size Number of users or items
+	 */
+	Attributes (int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Returns an attribute with a double for each user or item. It is registered if it does not exist.
+	 * @param key Key of the attribute
+	 * @return Attribute
+	 * @throws IllegalArgumentException If the key is registered with other type
+	 */
+	public synchronized DoubleAttribute getDoubles (String key) {
+		Attribute attribute = this.attributes.get(key);
+		if (attribute == null) {
+			attribute = new DoubleAttribute(key, this.size);
+			this.attributes.put(key, attribute);
+		}
+		return Attributes.cast(attribute, DoubleAttribute.class);
+	}
+
+	/**
+	 * Returns an attribute with an int for each user or item. It is registered if it does not exist.
+	 * @param key Key of the attribute
+	 * @return Attribute
+	 * @throws IllegalArgumentException If the key is registered with other type
+	 */
+	public synchronized IntAttribute getInts (String key) {
+		Attribute attribute = this.attributes.get(key);
+		if (attribute == null) {
+			attribute = new IntAttribute(key, this.size);
+			this.attributes.put(key, attribute);
+		}
+		return Attributes.cast(attribute, IntAttribute.class);
+	}
+
+	/**
+	 * Returns an attribute with an array of doubles for each user or item. It is registered if it
+	 * does not exist.
+	 * @param key Key of the attribute
+	 * @return Attribute
+	 * @throws IllegalArgumentException If the key is registered with other type
+	 */
+	public synchronized ArrayAttribute getArrays (String key) {
+		Attribute attribute = this.attributes.get(key);
+		if (attribute == null) {
+			attribute = new ArrayAttribute(key, this.size);
+			this.attributes.put(key, attribute);
+		}
+		return Attributes.cast(attribute, ArrayAttribute.class);
+	}
+
+	/**
+	 * Checks if an attribute is registered
+	 * @param key Key of the attribute
+	 * @return True if the attribute exists
+	 */
+	public synchronized boolean contains (String key) {
+		return this.attributes.containsKey(key);
+	}
+
+	/**
+	 * Removes an attribute. The handles of the attribute keep their values.
+	 * @param key Key of the attribute
+	 * @return Removed attribute or null if it does not exist
+	 */
+	public synchronized Attribute remove (String key) {
+		return this.attributes.remove(key);
+	}
+
+	/**
+	 * Returns the number of values of each attribute
+	 * @return Number of users or items
+	 */
+	public int size () {
+		return this.size;
+	}
+
+	/**
+	 * Moves the values of every attribute when users or items are inserted
+	 * @param indexes New index of each current user or item
+	 * @param size New number of users or items
+	 */
+	synchronized void remap (int [] indexes, int size) {
+		for (Attribute attribute : this.attributes.values()) attribute.remap(indexes, size);
+		this.size = size;
+	}
+
+	/**
+	 * Checks the type of a registered attribute
+	 * @param attribute Attribute
+	 * @param type Expected type
+	 * @return Attribute
+	 */
+	private static <T extends Attribute> T cast (Attribute attribute, Class <T> type) {
+		if (!type.isInstance(attribute)) {
+			throw new IllegalArgumentException("Attribute '" + attribute.getKey() + "' is registered as " + attribute.getClass().getSimpleName());
+		}
+		return type.cast(attribute);
+	}
+}
@@ -0,0 +1,293 @@
+package cf4j;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Native binary format for ratings datasets. Opening a binary dataset does not require parsing, so
+ * it is limited by the disk speed instead of by the CPU. The file contains:</p>
+ * <ol>
+ * 		<li>Header: magic number, format version, number of users, number of items, number of ratings,
+ * 		minimum rating and maximum rating.</li>
+ * 		<li>Users codes sorted from low to high.</li>
+ * 		<li>Items codes sorted from low to high.</li>
+ * 		<li>Column of users: index of the user code of each rating.</li>
+ * 		<li>Column of items: index of the item code of each rating.</li>
+ * 		<li>Column of ratings.</li>
+ * </ol>
+ * <p>Ratings are sorted by user and item and there are not duplicated ratings.</p>
+ *
+ * <p>Binary datasets are created from text datasets with convert(...) and they are detected
+ * automatically by Kernel.open(...).</p>
+ *
+ * @author Fernando Ortega
+ */
+public class BinaryDataset {
+
+	/**
+	 * Magic number: "CF4J" in ASCII
+	 */
+	public static final int MAGIC = 0x4346344A;
+
+	/**
+	 * Format version
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 40;
+
+	/**
+	 * Number of values read or written at once
+	 */
+	private static final int BLOCK_SIZE = 1 << 20;
+
+	/**
+	 * Converts a ratings text file to the binary format. Usage:
+	 * <p>java cf4j.BinaryDataset textFile separator binaryFile</p>
+	 * @param args Text file, separator and binary file
+	 * @throws Exception If the conversion fails
+	 */
+	public static void main (String [] args) throws Exception {
+		if (args.length != 3) {
+			System.out.println("Usage: java cf4j.BinaryDataset textFile separator binaryFile");
+			System.exit(1);
+		}
+		BinaryDataset.convert(args[0], args[1], args[2]);
+	}
+
+	/**
+	 * Converts a ratings text file to the binary format. The lines of the text file must have the
+	 * following format:
+	 * <p>userCode SEPARATOR itemCode SEPARATOR rating</p>
+	 * @param textFile Text file with the ratings
+	 * @param separator Separator between file fields
+	 * @param binaryFile Binary file to be written
+	 * @throws Exception If the text file can not be read or the binary file can not be written
+	 */
+	public static void convert (String textFile, String separator, String binaryFile) throws Exception {
+		RatingsBuilder ratings = new RatingsBuilder();
+		MappedDatasetReader.read(textFile, separator, ratings);
+		BinaryDataset.write(ratings, binaryFile);
+	}
+
+	/**
+	 * Checks if a file is a binary dataset
+	 * @param filename File name
+	 * @return True if the file starts with the magic number of the binary datasets
+	 */
+	public static boolean isBinaryDataset (String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			return file.length() >= HEADER_SIZE && file.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the ratings collected by a builder
+	 * @param ratings Ratings builder (finished)
+	 * @param filename Binary file to be written
+	 * @throws IOException If the file can not be written
+	 */
+	static void write (RatingsBuilder ratings, String filename) throws IOException {
+		int [] userCodes = ratings.getUserCodes();
+		int [] itemCodes = ratings.getItemCodes();
+
+		long numRatings = 0;
+		for (int u = 0; u < userCodes.length; u++) numRatings += ratings.getUserItems(u).length;
+
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE * 8);
+
+			buffer.putInt(MAGIC).putInt(VERSION);
+			buffer.putInt(userCodes.length).putInt(itemCodes.length).putLong(numRatings);
+			buffer.putDouble(ratings.getMinRating()).putDouble(ratings.getMaxRating());
+			flush(channel, buffer);
+
+			writeInts(channel, buffer, userCodes);
+			writeInts(channel, buffer, itemCodes);
+
+			// Column of users
+			for (int u = 0; u < userCodes.length; u++) {
+				for (int i = 0; i < ratings.getUserItems(u).length; i++) {
+					if (buffer.remaining() < 4) flush(channel, buffer);
+					buffer.putInt(u);
+				}
+			}
+			flush(channel, buffer);
+
+			// Column of items
+			for (int u = 0; u < userCodes.length; u++) {
+				for (int itemCode : ratings.getUserItems(u)) {
+					if (buffer.remaining() < 4) flush(channel, buffer);
+					buffer.putInt(ratings.getItemIndex(itemCode));
+				}
+			}
+			flush(channel, buffer);
+
+			// Column of ratings
+			for (int u = 0; u < userCodes.length; u++) {
+				for (double rating : ratings.getUserRatings(u)) {
+					if (buffer.remaining() < 8) flush(channel, buffer);
+					buffer.putDouble(rating);
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Reads a binary dataset into a builder. The columns are read in blocks, so the memory used
+	 * is close to the size of the ratings arrays of the builder.
+	 * @param filename Binary file
+	 * @param ratings Builder where the ratings are collected
+	 * @throws IOException If the file can not be read or it is not a binary dataset
+	 */
+	static void read (String filename, RatingsBuilder ratings) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE * 8);
+
+			fill(channel, buffer, 0, HEADER_SIZE);
+			if (buffer.getInt() != MAGIC) throw new IOException("'" + filename + "' is not a binary dataset");
+			int version = buffer.getInt();
+			if (version != VERSION) throw new IOException("Unsupported binary dataset version: " + version);
+
+			int numUsers = buffer.getInt();
+			int numItems = buffer.getInt();
+			long numRatings = buffer.getLong();
+			double minRating = buffer.getDouble();
+			double maxRating = buffer.getDouble();
+
+			long position = HEADER_SIZE;
+			int [] userCodes = readInts(channel, buffer, position, numUsers);
+			position += 4L * numUsers;
+			int [] itemCodes = readInts(channel, buffer, position, numItems);
+			position += 4L * numItems;
+
+			long usersColumn = position;
+			long itemsColumn = usersColumn + 4L * numRatings;
+			long ratingsColumn = itemsColumn + 4L * numRatings;
+
+			// First pass: count the ratings of each user and item
+			int [] userCounts = new int [numUsers];
+			int [] itemCounts = new int [numItems];
+			int [] block = new int [BLOCK_SIZE];
+			for (long r = 0; r < numRatings; r += BLOCK_SIZE) {
+				int n = (int) Math.min(BLOCK_SIZE, numRatings - r);
+				readInts(channel, buffer, usersColumn + 4L * r, block, n);
+				for (int i = 0; i < n; i++) userCounts[block[i]]++;
+				readInts(channel, buffer, itemsColumn + 4L * r, block, n);
+				for (int i = 0; i < n; i++) itemCounts[block[i]]++;
+			}
+
+			ratings.count(userCodes, userCounts, true);
+			ratings.count(itemCodes, itemCounts, false);
+			ratings.allocate();
+
+			// Second pass: store the ratings
+			int [] usersBlock = block;
+			int [] itemsBlock = new int [BLOCK_SIZE];
+			double [] ratingsBlock = new double [BLOCK_SIZE];
+			for (long r = 0; r < numRatings; r += BLOCK_SIZE) {
+				int n = (int) Math.min(BLOCK_SIZE, numRatings - r);
+				readInts(channel, buffer, usersColumn + 4L * r, usersBlock, n);
+				readInts(channel, buffer, itemsColumn + 4L * r, itemsBlock, n);
+				fill(channel, buffer, ratingsColumn + 8L * r, 8 * n);
+				buffer.asDoubleBuffer().get(ratingsBlock, 0, n);
+				for (int i = 0; i < n; i++) ratings.addAt(usersBlock[i], itemsBlock[i], ratingsBlock[i]);
+			}
+
+			ratings.extendRatingRange(minRating, maxRating);
+			ratings.finish();
+		}
+	}
+
+	/**
+	 * Writes an int array
+	 * @param channel File channel
+	 * @param buffer Buffer used to write
+	 * @param values Values to be written
+	 * @throws IOException If the file can not be written
+	 */
+	private static void writeInts (FileChannel channel, ByteBuffer buffer, int [] values) throws IOException {
+		int capacity = buffer.capacity() / 4;
+		for (int from = 0; from < values.length; from += capacity) {
+			int n = Math.min(capacity, values.length - from);
+			buffer.asIntBuffer().put(values, from, n);
+			buffer.position(4 * n);
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes the content of the buffer and clears it
+	 * @param channel File channel
+	 * @param buffer Buffer to be written
+	 * @throws IOException If the file can not be written
+	 */
+	private static void flush (FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Reads an int array
+	 * @param channel File channel
+	 * @param buffer Buffer used to read
+	 * @param position Position of the array in the file
+	 * @param length Length of the array
+	 * @return Array read
+	 * @throws IOException If the file can not be read
+	 */
+	private static int [] readInts (FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		int [] values = new int [length];
+		int capacity = buffer.capacity() / 4;
+		for (int from = 0; from < length; from += capacity) {
+			int n = Math.min(capacity, length - from);
+			fill(channel, buffer, position + 4L * from, 4 * n);
+			buffer.asIntBuffer().get(values, from, n);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a block of ints
+	 * @param channel File channel
+	 * @param buffer Buffer used to read
+	 * @param position Position of the block in the file
+	 * @param values Array where the block is stored
+	 * @param n Number of ints to read
+	 * @throws IOException If the file can not be read
+	 */
+	private static void readInts (FileChannel channel, ByteBuffer buffer, long position, int [] values, int n) throws IOException {
+		fill(channel, buffer, position, 4 * n);
+		buffer.asIntBuffer().get(values, 0, n);
+	}
+
+	/**
+	 * Reads bytes from the file into the buffer
+	 * @param channel File channel
+	 * @param buffer Buffer where the bytes are stored (it is flipped to be read)
+	 * @param position Position in the file
+	 * @param length Number of bytes
+	 * @throws IOException If the file can not be read or it is truncated
+	 */
+	private static void fill (FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read == -1) throw new IOException("Unexpected end of binary dataset");
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,127 @@
+package cf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Reads primitive values and arrays from a channel through a direct buffer. Arrays are copied
+ * in bulk from the buffer.</p>
+ *
+ * @author Fernando Ortega
+ */
+class ChannelInput {
+
+	/**
+	 * Size of the buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Channel from which the values are read
+	 */
+	private ReadableByteChannel channel;
+
+	/**
+	 * Values read and not consumed yet
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Creates a reader
+	 * @param channel Channel from which the values are read
+	 */
+	ChannelInput (ReadableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+
+	int readInt () throws IOException {
+		this.require(4);
+		return this.buffer.getInt();
+	}
+
+	long readLong () throws IOException {
+		this.require(8);
+		return this.buffer.getLong();
+	}
+
+	double readDouble () throws IOException {
+		this.require(8);
+		return this.buffer.getDouble();
+	}
+
+	int readByte () throws IOException {
+		this.require(1);
+		return this.buffer.get() & 0xFF;
+	}
+
+	/**
+	 * Reads an int written as an unsigned varint
+	 * @return Value
+	 * @throws IOException If the channel can not be read or the varint is malformed
+	 */
+	int readVarInt () throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			this.require(1);
+			byte b = this.buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	int [] readInts (int length) throws IOException {
+		int [] values = new int [length];
+		for (int from = 0; from < length; ) {
+			this.require(4);
+			int n = Math.min(this.buffer.remaining() / 4, length - from);
+			this.buffer.asIntBuffer().get(values, from, n);
+			this.buffer.position(this.buffer.position() + 4 * n);
+			from += n;
+		}
+		return values;
+	}
+
+	double [] readDoubles (int length) throws IOException {
+		double [] values = new double [length];
+		for (int from = 0; from < length; ) {
+			this.require(8);
+			int n = Math.min(this.buffer.remaining() / 8, length - from);
+			this.buffer.asDoubleBuffer().get(values, from, n);
+			this.buffer.position(this.buffer.position() + 8 * n);
+			from += n;
+		}
+		return values;
+	}
+
+	byte [] readBytes (int length) throws IOException {
+		byte [] values = new byte [length];
+		for (int from = 0; from < length; ) {
+			this.require(1);
+			int n = Math.min(this.buffer.remaining(), length - from);
+			this.buffer.get(values, from, n);
+			from += n;
+		}
+		return values;
+	}
+
+	/**
+	 * Reads from the channel until the buffer contains the bytes required
+	 * @param bytes Bytes required
+	 * @throws IOException If the channel can not be read or it ends before
+	 */
+	private void require (int bytes) throws IOException {
+		if (this.buffer.remaining() >= bytes) return;
+		this.buffer.compact();
+		while (this.buffer.position() < bytes) {
+			if (this.channel.read(this.buffer) == -1) throw new EOFException("Unexpected end of file");
+		}
+		this.buffer.flip();
+	}
+}
@@ -0,0 +1,131 @@
+package cf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Writes primitive values and arrays to a channel through a direct buffer. Arrays are copied
+ * in bulk into the buffer.</p>
+ *
+ * @author Fernando Ortega
+ */
+class ChannelOutput {
+
+	/**
+	 * Size of the buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Channel where the values are written
+	 */
+	private WritableByteChannel channel;
+
+	/**
+	 * Values not written yet
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Creates a writer
+	 * @param channel Channel where the values are written
+	 */
+	ChannelOutput (WritableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	void writeInt (int value) throws IOException {
+		this.ensure(4);
+		this.buffer.putInt(value);
+	}
+
+	void writeLong (long value) throws IOException {
+		this.ensure(8);
+		this.buffer.putLong(value);
+	}
+
+	void writeDouble (double value) throws IOException {
+		this.ensure(8);
+		this.buffer.putDouble(value);
+	}
+
+	void writeByte (int value) throws IOException {
+		this.ensure(1);
+		this.buffer.put((byte) value);
+	}
+
+	/**
+	 * Writes an int as an unsigned varint: 7 bits per byte, from the lowest to the highest bits.
+	 * The highest bit of each byte marks that more bytes follow.
+	 * @param value Value (negative values take 5 bytes)
+	 * @throws IOException If the channel can not be written
+	 */
+	void writeVarInt (int value) throws IOException {
+		this.ensure(5);
+		while ((value & ~0x7F) != 0) {
+			this.buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		this.buffer.put((byte) value);
+	}
+
+	void writeInts (int [] values) throws IOException {
+		this.writeInts(values, values.length);
+	}
+
+	void writeInts (int [] values, int length) throws IOException {
+		for (int from = 0; from < length; ) {
+			this.ensure(4);
+			int n = Math.min(this.buffer.remaining() / 4, length - from);
+			this.buffer.asIntBuffer().put(values, from, n);
+			this.buffer.position(this.buffer.position() + 4 * n);
+			from += n;
+		}
+	}
+
+	void writeDoubles (double [] values) throws IOException {
+		this.writeDoubles(values, values.length);
+	}
+
+	void writeDoubles (double [] values, int length) throws IOException {
+		for (int from = 0; from < length; ) {
+			this.ensure(8);
+			int n = Math.min(this.buffer.remaining() / 8, length - from);
+			this.buffer.asDoubleBuffer().put(values, from, n);
+			this.buffer.position(this.buffer.position() + 8 * n);
+			from += n;
+		}
+	}
+
+	void writeBytes (byte [] values) throws IOException {
+		for (int from = 0; from < values.length; ) {
+			this.ensure(1);
+			int n = Math.min(this.buffer.remaining(), values.length - from);
+			this.buffer.put(values, from, n);
+			from += n;
+		}
+	}
+
+	/**
+	 * Writes the buffered values to the channel
+	 * @throws IOException If the channel can not be written
+	 */
+	void flush () throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+		this.buffer.clear();
+	}
+
+	/**
+	 * Flushes the buffer if it has not enough space
+	 * @param bytes Bytes required
+	 * @throws IOException If the channel can not be written
+	 */
+	private void ensure (int bytes) throws IOException {
+		if (this.buffer.remaining() < bytes) this.flush();
+	}
+}
@@ -0,0 +1,177 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Primitive open addressing hash table used while a dataset is loaded. First, it counts how many
+ * times each user or item code appears. Once it is frozen, it maps every code to its position in the
+ * sorted array of codes.</p>
+ *
+ * @author Fernando Ortega
+ */
+class CodeIndex {
+
+	/**
+	 * Initial capacity of the hash table (must be a power of two)
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Codes stored at each slot
+	 */
+	private int [] keys;
+
+	/**
+	 * Occurrences of the code stored at each slot. Zero means empty slot.
+	 */
+	private int [] counts;
+
+	/**
+	 * Position of the code of each slot at the sorted codes array (filled by freeze())
+	 */
+	private int [] indexes;
+
+	/**
+	 * Number of different codes
+	 */
+	private int size;
+
+	/**
+	 * Sorted codes (filled by freeze())
+	 */
+	private int [] codes;
+
+	/**
+	 * Occurrences of each code overlapping with the codes array (filled by freeze())
+	 */
+	private int [] codeCounts;
+
+	/**
+	 * Creates an empty index
+	 */
+	CodeIndex () {
+		this.keys = new int [INITIAL_CAPACITY];
+		this.counts = new int [INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Counts an occurrence of a code. Can not be used after freeze().
+	 * @param code User or item code
+	 */
+	void add (int code) {
+		this.add(code, 1);
+	}
+
+	/**
+	 * Counts several occurrences of a code. Can not be used after freeze().
+	 * @param code User or item code
+	 * @param times Number of occurrences
+	 */
+	void add (int code, int times) {
+		if (times <= 0) return;
+
+		int slot = this.slot(code);
+		if (this.counts[slot] == 0) {
+			this.keys[slot] = code;
+			this.size++;
+		}
+		this.counts[slot] += times;
+
+		if (this.size * 2 > this.keys.length) this.grow();
+	}
+
+	/**
+	 * Sorts the codes and assigns to each code its position at the sorted array.
+	 */
+	void freeze () {
+		this.codes = new int [this.size];
+		int c = 0;
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.counts[slot] > 0) this.codes[c++] = this.keys[slot];
+		}
+		Arrays.sort(this.codes);
+
+		this.indexes = new int [this.keys.length];
+		this.codeCounts = new int [this.size];
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.counts[slot] > 0) {
+				int index = Arrays.binarySearch(this.codes, this.keys[slot]);
+				this.indexes[slot] = index;
+				this.codeCounts[index] = this.counts[slot];
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of a code at the sorted codes array. Only valid after freeze().
+	 * @param code User or item code
+	 * @return Index of the code or -1 if the code was not counted
+	 */
+	int indexOf (int code) {
+		int slot = this.slot(code);
+		return (this.counts[slot] == 0) ? -1 : this.indexes[slot];
+	}
+
+	/**
+	 * Returns the number of different codes
+	 * @return Number of codes
+	 */
+	int size () {
+		return this.size;
+	}
+
+	/**
+	 * Returns the sorted codes. Only valid after freeze().
+	 * @return Codes sorted from low to high
+	 */
+	int [] getCodes () {
+		return this.codes;
+	}
+
+	/**
+	 * Returns the occurrences of the code at a position of the sorted codes array. Only
+	 * valid after freeze().
+	 * @param index Index of the code
+	 * @return Number of occurrences
+	 */
+	int getCount (int index) {
+		return this.codeCounts[index];
+	}
+
+	/**
+	 * Finds the slot where a code is stored or where it must be inserted
+	 * @param code User or item code
+	 * @return Slot of the code
+	 */
+	private int slot (int code) {
+		int mask = this.keys.length - 1;
+		int h = code * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (this.counts[slot] != 0 && this.keys[slot] != code) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the hash table
+	 */
+	private void grow () {
+		int [] oldKeys = this.keys;
+		int [] oldCounts = this.counts;
+
+		this.keys = new int [oldKeys.length * 2];
+		this.counts = new int [oldKeys.length * 2];
+
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldCounts[slot] > 0) {
+				int newSlot = this.slot(oldKeys[slot]);
+				this.keys[newSlot] = oldKeys[slot];
+				this.counts[newSlot] = oldCounts[slot];
+			}
+		}
+	}
+}
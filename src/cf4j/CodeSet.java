@@ -0,0 +1,119 @@
+package cf4j;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Immutable set of user or item codes with constant time lookups. Codes in a compact range are stored
+ * in a bit set. Otherwise, they are stored in a primitive open addressing hash table.</p>
+ *
+ * @author Fernando Ortega
+ */
+abstract class CodeSet {
+
+	/**
+	 * Maximum number of bits per code to use a bit set (same memory as the hash table)
+	 */
+	private static final long BITS_PER_CODE = 64;
+
+	/**
+	 * Checks if the set contains a code
+	 * @param code Code
+	 * @return True if the code is in the set
+	 */
+	abstract boolean contains (int code);
+
+	/**
+	 * Creates a set with the given codes
+	 * @param codes Codes (duplicates are allowed)
+	 * @return Set of codes
+	 */
+	static CodeSet of (int [] codes) {
+		if (codes.length == 0) return new BitCodeSet(0, new BitSet(0));
+
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (int code : codes) {
+			if (code < min) min = code;
+			if (code > max) max = code;
+		}
+
+		long range = (long) max - min + 1;
+		if (range <= BITS_PER_CODE * codes.length && range <= Integer.MAX_VALUE) {
+			BitSet bits = new BitSet((int) range);
+			for (int code : codes) bits.set(code - min);
+			return new BitCodeSet(min, bits);
+		} else {
+			return new HashCodeSet(codes);
+		}
+	}
+
+	/**
+	 * Set of codes stored as bits from the minimum code
+	 */
+	private static class BitCodeSet extends CodeSet {
+
+		private int offset;
+
+		private BitSet bits;
+
+		BitCodeSet (int offset, BitSet bits) {
+			this.offset = offset;
+			this.bits = bits;
+		}
+
+		@Override
+		boolean contains (int code) {
+			long bit = (long) code - this.offset;
+			return bit >= 0 && bit < Integer.MAX_VALUE && this.bits.get((int) bit);
+		}
+	}
+
+	/**
+	 * Set of codes stored in a hash table with linear probing. Integer.MIN_VALUE marks the empty slots.
+	 */
+	private static class HashCodeSet extends CodeSet {
+
+		private static final int EMPTY = Integer.MIN_VALUE;
+
+		private int [] keys;
+
+		private int mask;
+
+		private boolean containsEmpty;
+
+		HashCodeSet (int [] codes) {
+			int capacity = Integer.highestOneBit(Math.max(codes.length, 1) * 2 - 1) << 1;
+			this.keys = new int [capacity];
+			this.mask = capacity - 1;
+			Arrays.fill(this.keys, EMPTY);
+
+			for (int code : codes) {
+				if (code == EMPTY) {
+					this.containsEmpty = true;
+					continue;
+				}
+				int slot = HashCodeSet.hash(code) & this.mask;
+				while (this.keys[slot] != EMPTY && this.keys[slot] != code) slot = (slot + 1) & this.mask;
+				this.keys[slot] = code;
+			}
+		}
+
+		@Override
+		boolean contains (int code) {
+			if (code == EMPTY) return this.containsEmpty;
+			int slot = HashCodeSet.hash(code) & this.mask;
+			while (this.keys[slot] != EMPTY) {
+				if (this.keys[slot] == code) return true;
+				slot = (slot + 1) & this.mask;
+			}
+			return false;
+		}
+
+		private static int hash (int code) {
+			int h = code * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
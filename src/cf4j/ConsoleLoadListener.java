@@ -0,0 +1,59 @@
+package cf4j;
+
+import java.io.PrintStream;
+
+/**
+ * <p>Load listener that prints the progress and the metrics of each phase. It is the default
+ * listener of the Kernel. The metrics are printed as a line of key=value pairs.</p>
+ *
+ * @author Fernando Ortega
+ */
+public class ConsoleLoadListener implements LoadListener {
+
+	/**
+	 * Stream where the messages are printed
+	 */
+	private PrintStream out;
+
+	/**
+	 * Creates a listener that prints into System.out
+	 */
+	public ConsoleLoadListener () {
+		this(System.out);
+	}
+
+	/**
+	 * Creates a listener that prints into a stream
+	 * @param out Stream where the messages are printed
+	 */
+	public ConsoleLoadListener (PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void loadStarted (String source) {
+		this.out.println("\nLoading dataset...");
+	}
+
+	@Override
+	public void progress (LoadPhase phase, long ratings) {
+		if (ratings % 1000000  == 0) this.out.print(".");
+		if (ratings % 10000000 == 0) this.out.println(ratings + " ratings");
+	}
+
+	@Override
+	public void phaseFinished (LoadMetrics metrics) {
+		this.out.println("\n" + metrics);
+	}
+
+	@Override
+	public void loadFinished (String source) {
+		this.out.println("\n'" + source + "' dataset loaded succesfully");
+	}
+
+	@Override
+	public void loadFailed (String source, Exception error) {
+		this.out.println("An error has occurred while loading database");
+		error.printStackTrace(this.out);
+	}
+}
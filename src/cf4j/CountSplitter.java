@@ -0,0 +1,26 @@
+package cf4j;
+
+/**
+ * <p>Splitter that decides if an user or an item is of test using only its code and its number of
+ * ratings. The Kernel evaluates it without reading the ratings of the dataset, so splitting a memory
+ * mapped dataset does not copy them into the heap.</p>
+ *
+ * @author Fernando Ortega
+ * @see DatasetSplitters
+ */
+@FunctionalInterface
+public interface CountSplitter extends DatasetSplitter {
+
+	/**
+	 * Checks if an element is of test
+	 * @param code Code of the user or the item
+	 * @param numRatings Number of ratings of the user or the item
+	 * @return True if element is test; False otherwise
+	 */
+	boolean isTest (int code, int numRatings);
+
+	@Override
+	default boolean isTest (int code, int [] codes, double [] ratings) {
+		return this.isTest(code, codes.length);
+	}
+}
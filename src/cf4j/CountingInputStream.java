@@ -0,0 +1,58 @@
+package cf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Counts the bytes read from a stream.</p>
+ *
+ * @author Fernando Ortega
+ */
+class CountingInputStream extends FilterInputStream {
+
+	/**
+	 * Bytes read
+	 */
+	private long count;
+
+	CountingInputStream (InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read () throws IOException {
+		int b = super.read();
+		if (b != -1) this.count++;
+		return b;
+	}
+
+	@Override
+	public int read (byte [] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) this.count += n;
+		return n;
+	}
+
+	@Override
+	public long skip (long n) throws IOException {
+		long skipped = super.skip(n);
+		this.count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported () {
+		return false;
+	}
+
+	/**
+	 * Returns the bytes read
+	 * @return Bytes read
+	 */
+	long getCount () {
+		return this.count;
+	}
+}
@@ -0,0 +1,276 @@
+package cf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import cf4j.utils.Randoms;
+
+/**
+ * <p>Runs k-fold cross validation over the loaded dataset. The ratings are partitioned into k folds and,
+ * for each fold, a new kernel is split from the loaded kernel using the ratings of the fold as test ratings
+ * and the other ratings as training ratings. The dataset is not read again and the loaded kernel is not
+ * modified: every fold kernel is built from the ratings that are already loaded.</p>
+ *
+ * <p>The fold of a rating depends only on the seed and the user and item codes, so each rating is test
+ * rating in exactly one fold.</p>
+ *
+ * <p>Example:</p>
+ * <pre>
+ * CrossValidation cv = new CrossValidation(5);
+ * cv.run(processor -&gt; {
+ *     processor.testUsersProcess(new UserSimilarities(...));
+ *     ...
+ *     processor.testUsersProcess(new MAE());
+ * }, "MAE");
+ * cv.print();
+ * </pre>
+ *
+ * <p>The folds are evaluated at the same time. Each fold runs in its own thread with its kernel bound to
+ * it (so Kernel.getInstance() and Processor.getInstance() work with the fold kernel) and it has its own
+ * Processor. Every fold kernel keeps its own copy of the ratings in the heap (unless the ratings are memory
+ * mapped), so setConcurrentFolds(...) can limit the number of folds evaluated at the same time.</p>
+ *
+ * @author Fernando Ortega
+ */
+public class CrossValidation {
+
+	/**
+	 * Number of folds
+	 */
+	private int numFolds;
+
+	/**
+	 * Seed of the partition
+	 */
+	private long seed;
+
+	/**
+	 * Quality measures names
+	 */
+	private String [] qualityMeasures = new String [0];
+
+	/**
+	 * Quality measures of each fold
+	 */
+	private double [][] results;
+
+	/**
+	 * Number of folds evaluated at the same time
+	 */
+	private int concurrentFolds;
+
+	/**
+	 * Creates a cross validation with a seed taken from Randoms
+	 * @param numFolds Number of folds
+	 */
+	public CrossValidation (int numFolds) {
+		this(numFolds, Randoms.nextSeed());
+	}
+
+	/**
+	 * Creates a cross validation
+	 * @param numFolds Number of folds
+	 * @param seed Seed of the partition of the ratings into folds
+	 */
+	public CrossValidation (int numFolds, long seed) {
+		if (numFolds < 2) throw new IllegalArgumentException("Number of folds must be at least 2");
+		this.numFolds = numFolds;
+		this.seed = seed;
+		this.concurrentFolds = numFolds;
+	}
+
+	/**
+	 * Returns the number of folds
+	 * @return Number of folds
+	 */
+	public int getNumberOfFolds () {
+		return this.numFolds;
+	}
+
+	/**
+	 * Returns the number of folds evaluated at the same time
+	 * @return Number of concurrent folds
+	 */
+	public int getConcurrentFolds () {
+		return this.concurrentFolds;
+	}
+
+	/**
+	 * Sets the number of folds evaluated at the same time. By default, all the folds are evaluated at the
+	 * same time.
+	 * @param concurrentFolds Number of concurrent folds (from 1 to numFolds)
+	 */
+	public void setConcurrentFolds (int concurrentFolds) {
+		if (concurrentFolds < 1) throw new IllegalArgumentException("Number of concurrent folds must be at least 1");
+		this.concurrentFolds = Math.min(concurrentFolds, this.numFolds);
+	}
+
+	/**
+	 * Returns the fold of a rating
+	 * @param userCode User code
+	 * @param itemCode Item code
+	 * @return Fold (from 0 to numFolds - 1)
+	 */
+	public int getFold (int userCode, int itemCode) {
+		long key = ((long) userCode << 32) | (itemCode & 0xFFFFFFFFL);
+		return (int) (Randoms.nextDouble(this.seed, key) * this.numFolds);
+	}
+
+	/**
+	 * Splits the kernel using the ratings of a fold as test ratings. It can be used to fill a
+	 * PrintableQualityMeasure with one repetition per fold.
+	 * @param fold Fold (from 0 to numFolds - 1)
+	 */
+	public void split (int fold) {
+		if (fold < 0 || fold >= this.numFolds) throw new IllegalArgumentException("Invalid fold: " + fold);
+		Kernel.getInstance().resplit((userCode, itemCode) -> this.getFold(userCode, itemCode) == fold);
+	}
+
+	/**
+	 * Runs an experiment for each fold. The experiment runs with the fold kernel bound to its thread, so
+	 * it must use Kernel.getInstance() and Processor.getInstance(). After the experiment, the quality
+	 * measures are taken from the fold kernel map.
+	 * @param experiment Experiment that computes the quality measures over the test users
+	 * @param qualityMeasures Names of the quality measures to be collected
+	 */
+	public void run (Runnable experiment, String... qualityMeasures) {
+		this.run(processor -> experiment.run(), qualityMeasures);
+	}
+
+	/**
+	 * Runs an experiment for each fold. The experiment receives the Processor of the fold kernel and it
+	 * runs with the fold kernel bound to its thread. The threads of the Processor instance are divided
+	 * between the folds evaluated at the same time. After the experiment, the quality measures are taken from
+	 * the fold kernel map.
+	 * @param experiment Experiment that computes the quality measures over the test users
+	 * @param qualityMeasures Names of the quality measures to be collected
+	 */
+	public void run (Consumer <Processor> experiment, String... qualityMeasures) {
+		Kernel kernel = Kernel.getInstance();
+		int threads = Math.max(1, Processor.getInstance().getThreads() / this.concurrentFolds);
+
+		double [][] results = new double [this.numFolds][qualityMeasures.length];
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.concurrentFolds);
+		try {
+			List <Future <?>> folds = new ArrayList <Future <?>> ();
+			for (int f = 0; f < this.numFolds; f++) {
+				int fold = f;
+				folds.add(executor.submit(() -> {
+					Kernel foldKernel = kernel.split((userCode, itemCode) -> this.getFold(userCode, itemCode) == fold);
+					Processor processor = new Processor(foldKernel, threads);
+					try {
+						foldKernel.run(() -> experiment.accept(processor));
+					} finally {
+						processor.shutdown();
+					}
+
+					for (int m = 0; m < qualityMeasures.length; m++) {
+						Object value = foldKernel.get(qualityMeasures[m]);
+						results[fold][m] = (value instanceof Double) ? (Double) value : Double.NaN;
+					}
+				}));
+			}
+
+			for (Future <?> fold : folds) fold.get();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Cross validation interrupted", e);
+
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		this.qualityMeasures = qualityMeasures;
+		this.results = results;
+	}
+
+	/**
+	 * Returns a quality measure of a fold
+	 * @param fold Fold (from 0 to numFolds - 1)
+	 * @param qualityMeasure Quality measure name
+	 * @return Quality measure value
+	 */
+	public double getQualityMeasure (int fold, String qualityMeasure) {
+		return this.results[fold][this.indexOf(qualityMeasure)];
+	}
+
+	/**
+	 * Returns the average of a quality measure over the folds. Folds in which the quality measure could
+	 * not be computed are ignored.
+	 * @param qualityMeasure Quality measure name
+	 * @return Averaged quality measure or NaN
+	 */
+	public double getAveragedQualityMeasure (String qualityMeasure) {
+		int m = this.indexOf(qualityMeasure);
+		double sum = 0;
+		int count = 0;
+		for (int fold = 0; fold < this.numFolds; fold++) {
+			if (!Double.isNaN(this.results[fold][m])) {
+				sum += this.results[fold][m];
+				count++;
+			}
+		}
+		return (count > 0) ? sum / count : Double.NaN;
+	}
+
+	/**
+	 * Returns a formatted String with the quality measures of each fold and their average
+	 * @param separator Field separator
+	 * @return String with the results
+	 */
+	public String toString (String separator) {
+		String s = "\nfold";
+		for (String qualityMeasure : this.qualityMeasures) s += separator + qualityMeasure;
+		s += "\n";
+		for (int fold = 0; fold < this.numFolds && this.results != null; fold++) {
+			s += (fold + 1);
+			for (int m = 0; m < this.qualityMeasures.length; m++) s += separator + this.results[fold][m];
+			s += "\n";
+		}
+		s += "average";
+		for (String qualityMeasure : this.qualityMeasures) {
+			s += separator + this.getAveragedQualityMeasure(qualityMeasure);
+		}
+		s += "\n";
+		return s;
+	}
+
+	/**
+	 * Returns a formatted String with the results. Uses space as separator.
+	 * @return String with the results
+	 */
+	public String toString () {
+		return this.toString(" ");
+	}
+
+	/**
+	 * Prints the quality measures of each fold and their average
+	 */
+	public void print () {
+		System.out.println(this.toString());
+	}
+
+	/**
+	 * Returns the position of a quality measure in the results
+	 * @param qualityMeasure Quality measure name
+	 * @return Position of the quality measure
+	 */
+	private int indexOf (String qualityMeasure) {
+		for (int m = 0; m < this.qualityMeasures.length; m++) {
+			if (this.qualityMeasures[m].equals(qualityMeasure)) return m;
+		}
+		throw new IllegalArgumentException("Unknown quality measure: " + qualityMeasure);
+	}
+}
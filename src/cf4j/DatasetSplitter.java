@@ -0,0 +1,59 @@
+package cf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * <p>Function that decides if an user or an item is of test when a dataset is split. It receives the
+ * code of the element and its ratings as primitive arrays, so no boxing is required to evaluate it.</p>
+ *
+ * <p>The arrays are views over the ratings of the dataset and must not be modified. Codes are sorted from
+ * low to high.</p>
+ *
+ * <p>Every splitter is also a BiFunction that receives the code and a map with the ratings, so it can be
+ * used wherever the boxed lambda functions are expected.</p>
+ *
+ * <p>Splitters that only use the code and the number of ratings should implement CountSplitter, so the
+ * Kernel does not read the ratings to evaluate them.</p>
+ *
+ * @author Fernando Ortega
+ * @see DatasetSplitters
+ */
+@FunctionalInterface
+public interface DatasetSplitter extends BiFunction <Integer, Map <Integer, Double>, Boolean> {
+
+	/**
+	 * Checks if an element is of test
+	 * @param code Code of the user or the item
+	 * @param codes Codes of the items rated by the user or the users that have rated the item
+	 * @param ratings Ratings overlapping with codes
+	 * @return True if element is test; False otherwise
+	 */
+	boolean isTest (int code, int [] codes, double [] ratings);
+
+	@Override
+	default Boolean apply (Integer code, Map <Integer, Double> ratings) {
+		int [] codes = new int [ratings.size()];
+		double [] values = new double [ratings.size()];
+
+		int i = 0;
+		for (Integer key : ratings.keySet()) codes[i++] = key;
+		Arrays.sort(codes);
+
+		for (i = 0; i < codes.length; i++) values[i] = ratings.get(codes[i]);
+
+		return this.isTest(code, codes, values);
+	}
+
+	/**
+	 * Adapts a lambda function that receives the ratings as a map. The map given to the function is
+	 * a read only view over the arrays of ratings.
+	 * @param filter Lambda function that receives the code and the ratings and return true if the element is of test
+	 * @return Splitter that evaluates the lambda function
+	 */
+	static DatasetSplitter of (BiFunction <Integer, Map <Integer, Double>, Boolean> filter) {
+		if (filter instanceof DatasetSplitter) return (DatasetSplitter) filter;
+		return (code, codes, ratings) -> filter.apply(code, new RatingsMap(codes, ratings));
+	}
+}
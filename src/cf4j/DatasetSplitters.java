@@ -1,8 +1,8 @@
 package cf4j;
 
-import java.util.List;
-import java.util.Map;
-import java.util.function.BiFunction;
+import java.util.Collection;
+
+import cf4j.utils.Randoms;
 
 /**
  * <p>This class contains different built-in lambda functions to split dataset into test and training sets</p>
@@ -16,8 +16,21 @@ public class DatasetSplitters {
 	 * @param probability Probability of the element to be defined as test.
 	 * @return True if element is test; False otherwise
 	 */
-	public static BiFunction <Integer, Map <Integer, Double>, Boolean> random (double probability) {
-		return (code, ratings) -> { return Math.random() <= probability; }; 
+	public static DatasetSplitter random (double probability) {
+		return DatasetSplitters.random(probability, Randoms.nextSeed());
+	}
+	
+	/**
+	 * Divides the set based on a seeded random probability. The random of each element depends only on the seed
+	 * and the element code, so the same seed always gives the same split.
+	 * @param probability Probability of the element to be defined as test.
+	 * @param seed Seed of the random numbers.
+	 * @return True if element is test; False otherwise
+	 * @see Randoms
+	 */
+	public static DatasetSplitter random (double probability, long seed) {
+		CountSplitter splitter = (code, numRatings) -> { return Randoms.nextDouble(seed, code) <= probability; };
+		return splitter;
 	}
 	
 	/**
@@ -26,8 +39,9 @@ public class DatasetSplitters {
 	 * @param minNumberOfRatings Minimum number of ratings of an element to be defined as test.
 	 * @return True if element is test; False otherwise
 	 */
-	public static BiFunction <Integer, Map <Integer, Double>, Boolean> minNumberOfRatings (int minNumberOfRatings) {
-		return (code, ratings) -> { return ratings.size() >= minNumberOfRatings; }; 
+	public static DatasetSplitter minNumberOfRatings (int minNumberOfRatings) {
+		CountSplitter splitter = (code, numRatings) -> { return numRatings >= minNumberOfRatings; };
+		return splitter;
 	}
 	
 	/**
@@ -37,8 +51,9 @@ public class DatasetSplitters {
 	 * @param maxNumberOfRatings Maximum number of ratings of an element to be defined as test.
 	 * @return True if element is test; False otherwise
 	 */
-	public static BiFunction <Integer, Map <Integer, Double>, Boolean> maxNumberOfRatings (int maxNumberOfRatings) {
-		return (code, ratings) -> { return ratings.size() <= maxNumberOfRatings; }; 
+	public static DatasetSplitter maxNumberOfRatings (int maxNumberOfRatings) {
+		CountSplitter splitter = (code, numRatings) -> { return numRatings <= maxNumberOfRatings; };
+		return splitter;
 	}
 	
 	/**
@@ -47,7 +62,23 @@ public class DatasetSplitters {
 	 * @param codes List of test codes.
 	 * @return True if element is test; False otherwise
 	 */
-	public static BiFunction <Integer, Map <Integer, Double>, Boolean> explicit (List <Integer> codes) {
-		return (code, ratings) -> { return codes.contains(code); }; 
+	public static DatasetSplitter explicit (Collection <Integer> codes) {
+		int [] array = new int [codes.size()];
+		int i = 0;
+		for (Integer code : codes) array[i++] = code;
+		return DatasetSplitters.explicit(array);
+	}
+	
+	/**
+	 * Divides the set based on an explicit array of codes. It the element code is included on the array, it will
+	 * be defined as test. Otherwise, the element will be defined as training. The codes are stored in a bit set
+	 * or a hash table, so each element is checked in constant time.
+	 * @param testCodes Array of test codes.
+	 * @return True if element is test; False otherwise
+	 */
+	public static DatasetSplitter explicit (int... testCodes) {
+		CodeSet set = CodeSet.of(testCodes);
+		CountSplitter splitter = (code, numRatings) -> { return set.contains(code); };
+		return splitter;
 	}
 }
@@ -0,0 +1,57 @@
+package cf4j;
+
+/**
+ * Attribute with a double value for each user or item. Values are 0 by default.
+ *
+ * @author Fernando Ortega
+ * @see Attributes
+ */
+public final class DoubleAttribute extends Attribute {
+
+	private static final long serialVersionUID = 20171018L;
+
+	/**
+	 * Values of the attribute
+	 */
+	private double [] values;
+
+	/**
+	 * Creates an attribute
+	 * @param key Key of the attribute
+	 * @param size Number of users or items
+	 */
+	DoubleAttribute (String key, int size) {
+		super(key);
+		this.values = new double [size];
+	}
+
+	/**
+	 * Returns the value of an user or an item
+	 * @param index User or item index
+	 * @return Value
+	 */
+	public double get (int index) {
+		return this.values[index];
+	}
+
+	/**
+	 * Writes the value of an user or an item
+	 * @param index User or item index
+	 * @param value Value
+	 */
+	public void set (int index, double value) {
+		this.values[index] = value;
+	}
+
+	@Override
+	public int size () {
+		return this.values.length;
+	}
+
+	@Override
+	void remap (int [] indexes, int size) {
+		double [] values = new double [size];
+		for (int i = 0; i < indexes.length; i++) values[indexes[i]] = this.values[i];
+		this.values = values;
+	}
+}
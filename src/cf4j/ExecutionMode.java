@@ -0,0 +1,31 @@
+package cf4j;
+
+/**
+ * Strategy used by the Processor to distribute the indexes of a Partible between its threads.
+ *
+ * @author Fernando Ortega
+ * @see Processor#setExecutionMode(ExecutionMode)
+ */
+public enum ExecutionMode {
+
+	/**
+	 * Indexes are split into one contiguous block per thread of the same size. It is the fastest
+	 * mode when every index takes the same time.
+	 */
+	BLOCKS,
+
+	/**
+	 * Indexes are split into one contiguous block per thread with the same cost instead of the same
+	 * size. The cost of an user or an item is its number of ratings (plus its number of test ratings
+	 * for test users and test items), which is proportional to the time that most processes take for
+	 * it. Processes without costs (Processor.process(...) without a cost function) use BLOCKS.
+	 */
+	BALANCED_BLOCKS,
+
+	/**
+	 * Indexes are split into chunks that are executed by a ForkJoinPool. Chunks are split again
+	 * while there are idle threads, which steal them, so every thread is busy until the last index
+	 * ends even if some indexes (users with many ratings, for example) take much longer than others.
+	 */
+	WORK_STEALING
+}
@@ -0,0 +1,57 @@
+package cf4j;
+
+/**
+ * Attribute with an int value for each user or item. Values are 0 by default.
+ *
+ * @author Fernando Ortega
+ * @see Attributes
+ */
+public final class IntAttribute extends Attribute {
+
+	private static final long serialVersionUID = 20171018L;
+
+	/**
+	 * Values of the attribute
+	 */
+	private int [] values;
+
+	/**
+	 * Creates an attribute
+	 * @param key Key of the attribute
+	 * @param size Number of users or items
+	 */
+	IntAttribute (String key, int size) {
+		super(key);
+		this.values = new int [size];
+	}
+
+	/**
+	 * Returns the value of an user or an item
+	 * @param index User or item index
+	 * @return Value
+	 */
+	public int get (int index) {
+		return this.values[index];
+	}
+
+	/**
+	 * Writes the value of an user or an item
+	 * @param index User or item index
+	 * @param value Value
+	 */
+	public void set (int index, int value) {
+		this.values[index] = value;
+	}
+
+	@Override
+	public int size () {
+		return this.values.length;
+	}
+
+	@Override
+	void remap (int [] indexes, int size) {
+		int [] values = new int [size];
+		for (int i = 0; i < indexes.length; i++) values[indexes[i]] = this.values[i];
+		this.values = values;
+	}
+}
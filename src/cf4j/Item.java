@@ -46,6 +46,16 @@ public class Item implements Serializable {
 	 */
 	protected double [] ratings;
 	
+	/**
+	 * Store of the ratings of the item if they are not held by the item (users and ratings are null)
+	 */
+	transient RatingsStore store;
+	
+	/**
+	 * Row of the item in the store
+	 */
+	transient int row;
+	
 	/**
 	 * Rating average of the item
 	 */
@@ -73,6 +83,24 @@ public class Item implements Serializable {
 		this.ratingStandardDeviation = Methods.arrayStandardDeviation(ratings);
 	}
 	
+	/**
+	 * Creates a new instance of an item whose ratings are kept in a store. The statistics are
+	 * computed reading the store, so the ratings are not copied.
+	 * @param itemCode Item code
+	 * @param itemIndex Item index
+	 * @param store Store of the ratings
+	 * @param row Row of the item in the store
+	 */
+	Item (int itemCode, int itemIndex, RatingsStore store, int row) {
+		this.itemCode = itemCode;
+		this.itemIndex = itemIndex;
+		this.map = new HashMap<String, Object>();
+		this.store = store;
+		this.row = row;
+		this.ratingAverage = store.average(row);
+		this.ratingStandardDeviation = store.standardDeviation(row);
+	}
+	
 	/**
 	 * Write a data in the item map.
 	 * @param key Key associated to the value
@@ -133,13 +161,65 @@ public class Item implements Serializable {
 		return map;
 	}
 	
+	/**
+	 * Replaces the ratings of the item and updates its statistics. After that, the ratings are held
+	 * by the item.
+	 * @param users Users that have rated this item
+	 * @param ratings Ratings of the users
+	 */
+	void setRatings (int [] users, double [] ratings) {
+		this.store = null;
+		this.users = users;
+		this.ratings = ratings;
+		this.ratingAverage = Methods.arrayAverage(ratings);
+		this.ratingStandardDeviation = Methods.arrayStandardDeviation(ratings);
+	}
+	
+	/**
+	 * Moves the ratings of the item to a store
+	 * @param store Store that contains the ratings of the item
+	 * @param row Row of the item in the store
+	 */
+	void setStore (RatingsStore store, int row) {
+		this.store = store;
+		this.row = row;
+		this.users = null;
+		this.ratings = null;
+	}
+	
+	/**
+	 * Changes the index of the item
+	 * @param itemIndex New item index
+	 */
+	void setItemIndex (int itemIndex) {
+		this.itemIndex = itemIndex;
+	}
+
 	/**
 	 * Get the users that have rated the item.
+	 * The ratings of the items loaded by the Kernel are kept in a store, so each call allocates a new
+	 * array with a copy of them. getUserAt(...) or getUsers(int []) should be used in loops.
 	 * @return Test users codes sorted from low to high. 
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getUserAt(...) or getUsers(int []) instead.
 	 */
+	@Deprecated
 	public int [] getUsers() {
+		if (this.store != null) return this.store.getCodes(this.row);
 		return this.users;
 	}
+
+	/**
+	 * Copies the users codes that have rated the item into an array without allocating a new one, so
+	 * it can be used in loops instead of getUsers().
+	 * @param users Array with at least getNumberOfRatings() positions
+	 * @return Number of users codes copied
+	 */
+	public int getUsers (int [] users) {
+		if (this.store != null) return this.store.getCodes(this.row, users);
+		System.arraycopy(this.users, 0, users, 0, this.users.length);
+		return this.users.length;
+	}
 	
 	/**
 	 * Returns the user code at index position. 
@@ -147,17 +227,48 @@ public class Item implements Serializable {
 	 * @return User code at index. 
 	 */
 	public int getUserAt(int index) {
-		return this.getUsers()[index];
+		if (this.store != null) return this.store.getCode(this.row, index);
+		return this.users[index];
+	}
+
+	/**
+	 * Returns the index at the Kernel users array of the user at index position. It must be used
+	 * instead of searching the user code at the Kernel.
+	 * @param index Index.
+	 * @return Kernel index of the user at index.
+	 */
+	public int getUserIndexAt(int index) {
+		int userIndex = (this.store != null) ? this.store.getIndex(this.row, index) : -1;
+		if (userIndex == -1) userIndex = Kernel.gi().getUserIndex(this.getUserAt(index));
+		return userIndex;
 	}
 
 	/**
 	 * Get the ratings of the users to the item. The indexes of the array overlaps
-	 * with indexes of the getUsers() array.
+	 * with indexes of the getUsers() array. The ratings of the items loaded by the Kernel are kept
+	 * in a store, so each call allocates a new array with a copy of them. getRatingAt(...) or
+	 * getRatings(double []) should be used in loops.
 	 * @return Training users ratings
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getRatingAt(...) or getRatings(double []) instead.
 	 */
+	@Deprecated
 	public double [] getRatings() {
+		if (this.store != null) return this.store.getRatings(this.row);
 		return this.ratings;
 	}
+
+	/**
+	 * Copies the ratings of the users to the item into an array without allocating a new one, so it
+	 * can be used in loops instead of getRatings().
+	 * @param ratings Array with at least getNumberOfRatings() positions
+	 * @return Number of ratings copied
+	 */
+	public int getRatings (double [] ratings) {
+		if (this.store != null) return this.store.getRatings(this.row, ratings);
+		System.arraycopy(this.ratings, 0, ratings, 0, this.ratings.length);
+		return this.ratings.length;
+	}
 	
 	/**
 	 * Returns the rating at index position. 
@@ -165,7 +276,8 @@ public class Item implements Serializable {
 	 * @return Rating at index. 
 	 */
 	public double getRatingAt(int index) {
-		return this.getRatings()[index];
+		if (this.store != null) return this.store.getRating(this.row, index);
+		return this.ratings[index];
 	}
 	
 	/**
@@ -174,6 +286,7 @@ public class Item implements Serializable {
 	 * @return User index in the user's item array if the user has rated the item or -1 if not
 	 */
 	public int getUserIndex (int user_code) {
+		if (this.store != null) return this.store.indexOf(this.row, user_code);
 		return Methods.getIndex(this.users, user_code);
 	}
 	
@@ -182,6 +295,7 @@ public class Item implements Serializable {
 	 * @return Number of ratings received
 	 */
 	public int getNumberOfRatings () {
+		if (this.store != null) return this.store.size(this.row);
 		return this.ratings.length;
 	}
 }
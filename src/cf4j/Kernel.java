@@ -1,28 +1,30 @@
 package cf4j;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.function.BiFunction;
 
+import cf4j.utils.InputTextFile;
+import cf4j.utils.RatingTokenizer;
+
 
 /**
  * <p>Class that manages all information of the Collaborative Filtering kernel. Contains the users and
  * items sets imported from the database.</p>
  *
- * <p>This class can not be instantiated. It implements the singleton pattern, so, when we want to use
- * it, we must use the getInstance() method.</p>
+ * <p>The default kernel is a singleton returned by the getInstance() method. Independent kernels can
+ * be created to run several experiments or datasets in the same JVM: a kernel bound to a thread
+ * (see bind(...) and run(...)) is returned by getInstance() in that thread, so the algorithms,
+ * that use getInstance(), work with it. The Processor binds its kernel to its threads.</p>
  * @author Fernando Ortega
  */
 public class Kernel implements Serializable {
@@ -36,6 +38,11 @@ public class Kernel implements Serializable {
 	 */
 	private static Kernel instance = null;
 
+	/**
+	 * Kernel bound to each thread
+	 */
+	private static final ThreadLocal <Kernel> bound = new ThreadLocal <Kernel> ();
+
 	/**
 	 * Users array
 	 */
@@ -46,12 +53,6 @@ public class Kernel implements Serializable {
 	 */
 	private Item [] items;
 
-	/**
-	 * Item copy array
-	 */
-
-	private Item [] itemsCopy;
-
 	/**
 	 * Test users array
 	 */
@@ -67,6 +68,12 @@ public class Kernel implements Serializable {
 	 */
 	private Map <String, Object> map = new HashMap<String, Object>();
 
+	/**
+	 * Typed attributes of the users and the items
+	 */
+	private Attributes usersAttributes = new Attributes(0);
+	private Attributes itemsAttributes = new Attributes(0);
+
 	/**
 	 * Maximum user code
 	 */
@@ -103,36 +110,184 @@ public class Kernel implements Serializable {
 	private double ratingAverage;
 
 	/**
-	 * Kernel constructor.
+	 * Load datasets in parallel using memory mapped chunks
+	 */
+	private boolean parallelLoading = false;
+
+	/**
+	 * Keep the ratings of binary datasets in memory mapped files
+	 */
+	private boolean mappedStorage = false;
+
+	/**
+	 * Precision of the ratings kept in memory
+	 */
+	private RatingStorage ratingStorage = RatingStorage.DOUBLE;
+
+	/**
+	 * Listener of the dataset loading
+	 */
+	private transient LoadListener loadListener = new ConsoleLoadListener();
+
+	/**
+	 * Stores that keep the full ratings of the users and items when the kernel has been built from a
+	 * memory mapped dataset. They are discarded when the ratings are modified.
 	 */
-	private Kernel () { }
+	private transient RatingsStore usersStore;
+	private transient RatingsStore itemsStore;
 
 	/**
-	 * Gets the single instance of the class.
-	 * @return Single instance
+	 * Creates an empty kernel independent of the single instance. It must be bound to the threads
+	 * that use it (see run(...)) or given to a Processor.
+	 */
+	public Kernel () { }
+
+	/**
+	 * Gets the kernel bound to the current thread or, if there is not any, the single instance of
+	 * the class.
+	 * @return Kernel of the current thread
 	 */
 	public static Kernel getInstance() {
+		Kernel kernel = Kernel.bound.get();
+		if (kernel != null) return kernel;
+
 		if (Kernel.instance == null)
 			Kernel.instance = new Kernel();
 		return Kernel.instance;
 	}
 
 	/**
-	 * Gets the single instance of the class.
-	 * @return Single instance
+	 * Gets the kernel bound to the current thread or, if there is not any, the single instance of
+	 * the class.
+	 * @return Kernel of the current thread
 	 */
 	public static Kernel gi () {
 		return Kernel.getInstance();
 	}
 
 	/**
-	 * Destroy the single instance of the class
+	 * Destroy the single instance of the class. Independent kernels are not affected.
 	 */
 	public static void destroyInstance() {
 		Kernel.instance = null;
 		System.gc();
 	}
 
+	/**
+	 * Binds a kernel to the current thread, so getInstance() returns it in this thread.
+	 * @param kernel Kernel to be bound or null to return to the single instance
+	 * @return Kernel previously bound to the thread or null
+	 */
+	public static Kernel bind (Kernel kernel) {
+		Kernel previous = Kernel.bound.get();
+		if (kernel == null) {
+			Kernel.bound.remove();
+		} else {
+			Kernel.bound.set(kernel);
+		}
+		return previous;
+	}
+
+	/**
+	 * Runs a task in the current thread with this kernel bound to it. The previous kernel is bound
+	 * again when the task ends. Example of two experiments running in parallel:
+	 * <pre>
+	 * Kernel a = new Kernel(), b = new Kernel();
+	 * new Thread(() -&gt; a.run(() -&gt; { a.open("a.dat"); ... })).start();
+	 * new Thread(() -&gt; b.run(() -&gt; { b.open("b.dat"); ... })).start();
+	 * </pre>
+	 * @param task Task that uses the kernel
+	 */
+	public void run (Runnable task) {
+		Kernel previous = Kernel.bind(this);
+		try {
+			task.run();
+		} finally {
+			Kernel.bind(previous);
+		}
+	}
+
+	/**
+	 * Enables or disables the parallel loading of datasets. If it is enabled, open(...) maps the
+	 * dataset file into memory and parses it in chunks using the Processor threads.
+	 * @param parallelLoading True to load the datasets in parallel
+	 */
+	public void setParallelLoading (boolean parallelLoading) {
+		this.parallelLoading = parallelLoading;
+	}
+
+	/**
+	 * Returns if datasets are loaded in parallel.
+	 * @return True if the parallel loading is enabled
+	 */
+	public boolean isParallelLoading () {
+		return this.parallelLoading;
+	}
+
+	/**
+	 * <p>Enables or disables the memory mapped storage of the ratings. When it is enabled, open(...)
+	 * requires a binary dataset (see BinaryDataset) and the ratings of the training users and items are
+	 * read from a memory mapped store file instead of being loaded into the heap. The store is created
+	 * next to the dataset the first time it is opened. It allows to use datasets larger than the heap
+	 * and to share the ratings between several JVMs through the operating system page cache.</p>
+	 * <p>Test users and test items read their training and test ratings from the store too: only the
+	 * positions of their test ratings are kept in the heap. Splitters that only use the number of ratings
+	 * (see CountSplitter) do not read the ratings, so the ratings are not copied into the heap to split
+	 * the dataset.</p>
+	 * @param mappedStorage True to map the ratings; False to load them into the heap
+	 */
+	public void setMappedStorage (boolean mappedStorage) {
+		this.mappedStorage = mappedStorage;
+	}
+
+	/**
+	 * <p>Sets the precision used to keep the ratings of users, items, test users and test items in memory.
+	 * FLOAT takes half the memory of DOUBLE and DICTIONARY, that keeps a byte code of each rating, takes an
+	 * eighth of it. The ratings are still read as doubles.</p>
+	 * <p>FLOAT rounds the ratings that are not exactly representable as floats and the exact values are
+	 * not kept. The averages and standard deviations of the users and items computed when the kernel is
+	 * loaded use the exact ratings, but resplit(...), addRatings(...) and a restored snapshot compute them
+	 * from the rounded ratings. DICTIONARY does not round the ratings unless it falls back to FLOAT.</p>
+	 * <p>It must be set before the kernel is loaded. Ratings of memory mapped datasets are not affected.</p>
+	 * @param ratingStorage Precision of the ratings (DOUBLE by default)
+	 */
+	public void setRatingStorage (RatingStorage ratingStorage) {
+		this.ratingStorage = ratingStorage;
+	}
+
+	/**
+	 * Returns the precision used to keep the ratings in memory
+	 * @return Precision of the ratings
+	 */
+	public RatingStorage getRatingStorage () {
+		return this.ratingStorage;
+	}
+
+	/**
+	 * Sets the listener that receives the progress and the metrics (time, throughput, bytes read and
+	 * heap used) of each phase of open(...). By default, a ConsoleLoadListener prints them.
+	 * @param loadListener Listener or null to disable the messages
+	 */
+	public void setLoadListener (LoadListener loadListener) {
+		this.loadListener = (loadListener != null) ? loadListener : new LoadListener() { };
+	}
+
+	/**
+	 * Returns the listener of the dataset loading
+	 * @return Load listener
+	 */
+	public LoadListener getLoadListener () {
+		return this.loadListener;
+	}
+
+	/**
+	 * Returns if the ratings of binary datasets are memory mapped
+	 * @return True if the mapped storage is enabled
+	 */
+	public boolean isMappedStorage () {
+		return this.mappedStorage;
+	}
+
 	/**
 	 * <p>Generates a kernel form a text file. The lines of the file must have the following format:</p>
 	 * <p>userCode::itemCode::rating</p>
@@ -180,262 +335,1061 @@ public class Kernel implements Serializable {
 	/**
 	 * <p>Generates a kernel form a text file. The lines of the file must have the following format:</p>
 	 * <p>userCode::itemCode::rating</p>
+	 * <p>Binary datasets created with BinaryDataset.convert(...) are detected automatically. In that
+	 * case, the separator is ignored. Text files compressed with gzip or deflate are detected too.</p>
 	 * @param filename File with the ratings
 	 * @param testUserFilter Lambda function that receives the user code and the user ratings and return true if the user is a test user and false otherwise
 	 * @param testItemFilter Lambda function that receives the item code and the item ratings and return true if the item is a test item and false otherwise
-	 * @param separator Separator char between file fields
+	 * @param separator Separator between file fields. It is matched literally (not as a regular expression)
 	 * @see DatasetSplitters
 	 */
 	public void open (String filename, BiFunction <Integer, Map <Integer, Double>, Boolean> testUserFilter, 
 			BiFunction <Integer, Map <Integer, Double>, Boolean> testItemFilter, String separator) {
+		this.open(filename, DatasetSplitter.of(testUserFilter), DatasetSplitter.of(testItemFilter), separator);
+	}
+
+	/**
+	 * <p>Generates a kernel form a text file. The lines of the file must have the following format:</p>
+	 * <p>userCode::itemCode::rating</p>
+	 * <p>Binary datasets created with BinaryDataset.convert(...) are detected automatically. In that
+	 * case, the separator is ignored. Text files compressed with gzip or deflate are detected too.</p>
+	 * @param filename File with the ratings
+	 * @param testUserFilter Splitter that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Splitter that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param separator Separator between file fields. It is matched literally (not as a regular expression)
+	 * @throws UncheckedIOException If the dataset can not be read. The error is reported to the load listener before.
+	 * @see DatasetSplitters
+	 */
+	public void open (String filename, DatasetSplitter testUserFilter, DatasetSplitter testItemFilter, String separator) {
 
-		System.out.println("\nLoading dataset...");
+		this.loadListener.loadStarted(filename);
 
-		this.maxItemCode = Integer.MIN_VALUE;
-		this.minItemCode = Integer.MAX_VALUE;
-		this.maxUserCode = Integer.MIN_VALUE;
-		this.minUserCode = Integer.MAX_VALUE;
-		this.maxRating = Byte.MIN_VALUE;
-		this.minRating = Byte.MAX_VALUE;
+		LoadProfiler profiler = new LoadProfiler(this.loadListener);
+		profiler.start(LoadPhase.PARSE);
 
-		TreeMap <Integer, TreeMap <Integer, Double>> usersRatings = new TreeMap <Integer, TreeMap <Integer, Double>> ();
-		TreeMap <Integer, TreeMap <Integer, Double>> itemsRatings = new TreeMap <Integer, TreeMap <Integer, Double>> ();
+		RatingsSource ratings = null;
 
 		try {
-
-			// Dataset reader
-			BufferedReader dataset = new BufferedReader (new FileReader (new File (filename)));
-
-			String line = ""; int numLines = 0;
-			while ((line = dataset.readLine()) != null) {
-
-				numLines++;
-				if (numLines % 1000000  == 0) System.out.print(".");
-				if (numLines % 10000000 == 0) System.out.println(numLines + " ratings");
-
-				// Parse line
-				String [] s = line.split(separator);
-				int userCode = Integer.parseInt(s[0]);
-				int itemCode = Integer.parseInt(s[1]);
-				double rating = Double.parseDouble(s[2]);
-
-				// Update stats
-				if (itemCode < this.minItemCode) this.minItemCode = itemCode;
-				if (itemCode > this.maxItemCode) this.maxItemCode = itemCode;
-				if (userCode < this.minUserCode) this.minUserCode = userCode;
-				if (userCode > this.maxUserCode) this.maxUserCode = userCode;
-				if (rating < this.minRating) this.minRating = rating;
-				if (rating > this.maxRating) this.maxRating = rating;
-
-				// Store rating
-				if (!usersRatings.containsKey(userCode)) usersRatings.put(userCode, new TreeMap <Integer, Double> ());
-				usersRatings.get(userCode).put(itemCode, rating);
-				
-				if (!itemsRatings.containsKey(itemCode)) itemsRatings.put(itemCode, new TreeMap <Integer, Double> ());
-				itemsRatings.get(itemCode).put(userCode, rating);
+			if (this.mappedStorage) {
+				ratings = MappedRatings.open(filename);
+			} else {
+				RatingsBuilder builder = new RatingsBuilder();
+				if (BinaryDataset.isBinaryDataset(filename)) {
+					BinaryDataset.read(filename, builder);
+				} else if (StreamDatasetReader.isCompressed(filename)) {
+					StreamDatasetReader.read(new FileInputStream(filename), separator, builder);
+				} else if (this.parallelLoading) {
+					MappedDatasetReader.read(filename, separator, builder);
+				} else {
+					this.readTextFile(filename, separator, builder, profiler);
+				}
+				ratings = builder;
 			}
+		} catch (Exception e) {
+			throw this.loadFailed(filename, e);
+		}
+
+		profiler.finish(ratings.getNumberOfRatings(), new File(filename).length());
+
+		this.build(ratings, testUserFilter, testItemFilter, null, profiler);
+
+		this.loadListener.loadFinished(filename);
+	}
+
+	/**
+	 * <p>Generates a kernel from a stream. The lines of the stream must have the following format:</p>
+	 * <p>userCode::itemCode::rating</p>
+	 * <p>Streams compressed with gzip or deflate are detected automatically and decompressed in a
+	 * separate thread while the lines are parsed. The stream is read until the end and closed.</p>
+	 * @param in Stream with the ratings
+	 * @param testUserFilter Lambda function that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Lambda function that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param separator Separator between fields. It is matched literally (not as a regular expression)
+	 * @see DatasetSplitters
+	 */
+	public void open (InputStream in, BiFunction <Integer, Map <Integer, Double>, Boolean> testUserFilter, 
+			BiFunction <Integer, Map <Integer, Double>, Boolean> testItemFilter, String separator) {
+		this.open(in, DatasetSplitter.of(testUserFilter), DatasetSplitter.of(testItemFilter), separator);
+	}
+
+	/**
+	 * <p>Generates a kernel from a stream. The lines of the stream must have the following format:</p>
+	 * <p>userCode::itemCode::rating</p>
+	 * <p>Streams compressed with gzip or deflate are detected automatically and decompressed in a
+	 * separate thread while the lines are parsed. The stream is read until the end and closed.</p>
+	 * @param in Stream with the ratings
+	 * @param testUserFilter Splitter that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Splitter that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param separator Separator between fields. It is matched literally (not as a regular expression)
+	 * @throws UncheckedIOException If the stream can not be read. The error is reported to the load listener before.
+	 * @see DatasetSplitters
+	 */
+	public void open (InputStream in, DatasetSplitter testUserFilter, DatasetSplitter testItemFilter, String separator) {
+
+		this.loadListener.loadStarted("stream");
 
-			dataset.close();
+		LoadProfiler profiler = new LoadProfiler(this.loadListener);
+		profiler.start(LoadPhase.PARSE);
 
+		RatingsBuilder ratings = new RatingsBuilder();
+		CountingInputStream counter = new CountingInputStream(in);
+
+		try {
+			StreamDatasetReader.read(counter, separator, ratings);
 		} catch (Exception e) {
-			System.out.println("An error has occurred while loading database");
-			e.printStackTrace();
-			System.exit(1);
+			throw this.loadFailed("stream", e);
 		}
 
-		System.out.println("\nSpliting users & items into training and test sets...");
+		profiler.finish(ratings.getNumberOfRatings(), counter.getCount());
+
+		this.build(ratings, testUserFilter, testItemFilter, null, profiler);
+
+		this.loadListener.loadFinished("stream");
+	}
+
+	/**
+	 * <p>Generates a kernel from a channel. The lines of the channel must have the following format:</p>
+	 * <p>userCode::itemCode::rating</p>
+	 * <p>Channels compressed with gzip or deflate are detected automatically and decompressed in a
+	 * separate thread while the lines are parsed. The channel is read until the end and closed.</p>
+	 * @param channel Channel with the ratings
+	 * @param testUserFilter Lambda function that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Lambda function that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param separator Separator between fields. It is matched literally (not as a regular expression)
+	 * @see DatasetSplitters
+	 */
+	public void open (ReadableByteChannel channel, BiFunction <Integer, Map <Integer, Double>, Boolean> testUserFilter, 
+			BiFunction <Integer, Map <Integer, Double>, Boolean> testItemFilter, String separator) {
+		this.open(Channels.newInputStream(channel), testUserFilter, testItemFilter, separator);
+	}
+
+	/**
+	 * <p>Generates a kernel from a channel. The lines of the channel must have the following format:</p>
+	 * <p>userCode::itemCode::rating</p>
+	 * <p>Channels compressed with gzip or deflate are detected automatically and decompressed in a
+	 * separate thread while the lines are parsed. The channel is read until the end and closed.</p>
+	 * @param channel Channel with the ratings
+	 * @param testUserFilter Splitter that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Splitter that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param separator Separator between fields. It is matched literally (not as a regular expression)
+	 * @throws UncheckedIOException If the channel can not be read. The error is reported to the load listener before.
+	 * @see DatasetSplitters
+	 */
+	public void open (ReadableByteChannel channel, DatasetSplitter testUserFilter, DatasetSplitter testItemFilter, String separator) {
+		this.open(Channels.newInputStream(channel), testUserFilter, testItemFilter, separator);
+	}
+
+	/**
+	 * Reports an error of the dataset loading to the load listener
+	 * @param source File name of the dataset or "stream"
+	 * @param error Error that stopped the loading
+	 * @return Unchecked exception to be thrown: an UncheckedIOException if the error is an IOException
+	 */
+	private RuntimeException loadFailed (String source, Exception error) {
+		this.loadListener.loadFailed(source, error);
+		if (error instanceof IOException) return new UncheckedIOException("An error has occurred while loading '" + source + "'", (IOException) error);
+		if (error instanceof RuntimeException) return (RuntimeException) error;
+		return new RuntimeException("An error has occurred while loading '" + source + "'", error);
+	}
+
+	/**
+	 * <p>Splits again the loaded ratings into training and test sets. The dataset is not read again:
+	 * the training and test ratings of the current users and items are merged and split with
+	 * the new percentages.</p>
+	 * <p>Users and items are created again, so the data stored in them and in their attributes
+	 * (similarities, neighbors, predictions, models...) is lost.</p>
+	 * @param testUsersPercent Percentage of users that will be of test
+	 * @param testItemsPercent Percentage of items that will be of test
+	 */
+	public void resplit (double testUsersPercent, double testItemsPercent) {
+		this.resplit(DatasetSplitters.random(testUsersPercent), DatasetSplitters.random(testItemsPercent));
+	}
+
+	/**
+	 * <p>Splits again the loaded ratings into training and test sets. The dataset is not read again:
+	 * the training and test ratings of the current users and items are merged and split with
+	 * the new splitters. The ratings of the users and items that are not of test are not copied.</p>
+	 * <p>Users and items are created again, so the data stored in them and in their attributes
+	 * (similarities, neighbors, predictions, models...) is lost.</p>
+	 * @param testUserFilter Splitter that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Splitter that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @see DatasetSplitters
+	 */
+	public void resplit (DatasetSplitter testUserFilter, DatasetSplitter testItemFilter) {
+		if (this.users == null) throw new IllegalStateException("The kernel has not been loaded");
 
-		// Setting test users
-		TreeSet <Integer> testUsersSet = new TreeSet <Integer> ();
-		for (int userCode : usersRatings.keySet()) {
-			Map <Integer, Double> ratings = usersRatings.get(userCode);
-			if (testUserFilter.apply(userCode, ratings)) testUsersSet.add(userCode);
+		RatingsSource ratings = new KernelRatings(this.users, this.items, this.minRating, this.maxRating,
+				this.usersStore, this.itemsStore);
+
+		this.build(ratings, testUserFilter, testItemFilter, null, new LoadProfiler(this.loadListener));
+	}
+
+	/**
+	 * Splits again the loaded ratings selecting the test ratings one by one. Users and items with any test
+	 * rating are test users and test items.
+	 * @param testRatingFilter Filter that receives the user code and the item code of a rating and returns true if it is a test rating
+	 */
+	void resplit (RatingSplitter testRatingFilter) {
+		if (this.users == null) throw new IllegalStateException("The kernel has not been loaded");
+
+		RatingsSource ratings = new KernelRatings(this.users, this.items, this.minRating, this.maxRating,
+				this.usersStore, this.itemsStore);
+
+		DatasetSplitter all = (code, codes, values) -> true;
+		this.build(ratings, all, all, testRatingFilter, new LoadProfiler(this.loadListener));
+	}
+
+	/**
+	 * Creates a new kernel with the loaded ratings split selecting the test ratings one by one. This
+	 * kernel is only read, so several kernels can be split from it at the same time. The memory mapped
+	 * stores are shared by the new kernel.
+	 * @param testRatingFilter Filter that receives the user code and the item code of a rating and returns true if it is a test rating
+	 * @return New kernel with the same ratings and the new split
+	 */
+	Kernel split (RatingSplitter testRatingFilter) {
+		if (this.users == null) throw new IllegalStateException("The kernel has not been loaded");
+
+		RatingsSource ratings = new KernelRatings(this.users, this.items, this.minRating, this.maxRating,
+				this.usersStore, this.itemsStore);
+
+		Kernel kernel = new Kernel();
+		kernel.parallelLoading = this.parallelLoading;
+		kernel.mappedStorage = this.mappedStorage;
+		kernel.ratingStorage = this.ratingStorage;
+		kernel.loadListener = new LoadListener() { };
+
+		DatasetSplitter all = (code, codes, values) -> true;
+		kernel.run(() -> kernel.build(ratings, all, all, testRatingFilter, new LoadProfiler(kernel.loadListener)));
+		return kernel;
+	}
+
+	/**
+	 * Reads a ratings text file line by line. The file is read twice: first to count the ratings
+	 * of each user and item and then to store them.
+	 * @param filename File with the ratings
+	 * @param separator Separator char between file fields
+	 * @param ratings Builder where the ratings are collected
+	 * @param profiler Profiler that reports the progress
+	 * @throws Exception If the file can not be read or parsed
+	 */
+	private void readTextFile (String filename, String separator, RatingsBuilder ratings, LoadProfiler profiler) throws Exception {
+
+		RatingTokenizer tokenizer = new RatingTokenizer(separator);
+
+		// First pass: count the ratings of each user and item
+		InputTextFile dataset = new InputTextFile(filename);
+
+		int numLines = 0;
+		while (dataset.readRating(tokenizer)) {
+
+			numLines++;
+			if (numLines % 1000000 == 0) profiler.progress(numLines);
+
+			ratings.count(tokenizer.getUserCode(), tokenizer.getItemCode());
+		}
+
+		dataset.close();
+
+		ratings.allocate();
+
+		// Second pass: store the ratings into the preallocated arrays
+		dataset = new InputTextFile(filename);
+
+		while (dataset.readRating(tokenizer)) {
+			ratings.add(tokenizer.getUserCode(), tokenizer.getItemCode(), tokenizer.getRating());
+		}
+
+		dataset.close();
+
+		ratings.finish();
+	}
+
+	/**
+	 * Generates the users and items sets from the collected ratings splitting them into training and
+	 * test sets.
+	 * @param ratings Ratings of the dataset
+	 * @param testUserFilter Splitter that receives the user code and the user ratings and return true if the user is a test user and false otherwise
+	 * @param testItemFilter Splitter that receives the item code and the item ratings and return true if the item is a test item and false otherwise
+	 * @param testRatingFilter Filter of the ratings of test users and test items that are test ratings or null if all of them are
+	 * @param profiler Profiler that measures the phases
+	 */
+	private void build (RatingsSource ratings, DatasetSplitter testUserFilter, DatasetSplitter testItemFilter,
+			RatingSplitter testRatingFilter, LoadProfiler profiler) {
+
+		int [] userCodes = ratings.getUserCodes();
+		int [] itemCodes = ratings.getItemCodes();
+
+		this.minUserCode = (userCodes.length > 0) ? userCodes[0] : Integer.MAX_VALUE;
+		this.maxUserCode = (userCodes.length > 0) ? userCodes[userCodes.length - 1] : Integer.MIN_VALUE;
+		this.minItemCode = (itemCodes.length > 0) ? itemCodes[0] : Integer.MAX_VALUE;
+		this.maxItemCode = (itemCodes.length > 0) ? itemCodes[itemCodes.length - 1] : Integer.MIN_VALUE;
+		this.minRating = ratings.getMinRating();
+		this.maxRating = ratings.getMaxRating();
+
+		RatingsStore usersStore = ratings.getUsersStore();
+		RatingsStore itemsStore = ratings.getItemsStore();
+
+		this.usersStore = usersStore;
+		this.itemsStore = itemsStore;
+
+		long numRatings = ratings.getNumberOfRatings();
+
+		profiler.start(LoadPhase.SPLIT);
+
+		// Setting test users. Count splitters do not need the ratings, so they are not read
+		boolean [] testUsersSet = new boolean [userCodes.length];
+		for (int u = 0; u < userCodes.length; u++) {
+			testUsersSet[u] = (testUserFilter instanceof CountSplitter)
+					? ((CountSplitter) testUserFilter).isTest(userCodes[u], ratings.getNumberOfUserRatings(u))
+					: testUserFilter.isTest(userCodes[u], ratings.getUserItems(u), ratings.getUserRatings(u));
 		}
 
 		// Setting test items
-		TreeSet <Integer> testItemsTest = new TreeSet <Integer> ();
-		for (int itemCode : itemsRatings.keySet()) {
-			Map <Integer, Double> ratings = itemsRatings.get(itemCode);
-			if (testItemFilter.apply(itemCode, ratings)) testItemsTest.add(itemCode);
+		boolean [] testItemsSet = new boolean [itemCodes.length];
+		for (int i = 0; i < itemCodes.length; i++) {
+			testItemsSet[i] = (testItemFilter instanceof CountSplitter)
+					? ((CountSplitter) testItemFilter).isTest(itemCodes[i], ratings.getNumberOfItemRatings(i))
+					: testItemFilter.isTest(itemCodes[i], ratings.getItemUsers(i), ratings.getItemRatings(i));
 		}
 
-		System.out.println("\nGenerating users sets...");
+		profiler.finish(numRatings, 0);
 
-		int averageCount = 0;
+		// Positions of the training and test ratings of the stored test users and test items
+		int [] trainingPositions = new int [0];
+		int [] testPositions = new int [0];
+
+		profiler.start(LoadPhase.USERS);
 
-		this.users = new User [usersRatings.size()];
-		int userIndex = 0;
+		this.ratingAverage = 0;
+		int averageCount = 0;
 
-		this.testUsers = new TestUser [testUsersSet.size()];
+		this.users = new User [userCodes.length];
+		TestUser [] testUsers = new TestUser [userCodes.length];
 		int testUserIndex = 0;
 
-		for (int userCode : usersRatings.keySet()) {
+		// Training and test ratings of the stored test users are selected from the store (see SelectionStore)
+		SelectionStore usersTraining = (usersStore != null) ? new SelectionStore(usersStore) : null;
+		SelectionStore usersTest = (usersStore != null) ? new SelectionStore(usersStore) : null;
 
-			User user;
+		for (int userIndex = 0; userIndex < userCodes.length; userIndex++) {
 
-			// Is test user
-			if (testUsersSet.contains(userCode)) {
+			int userCode = userCodes[userIndex];
+			int [] items = null;
 
-				// Splitting ratings into test & training ratings
-				TreeSet <Integer> training = new TreeSet <Integer> ();
-				TreeSet <Integer> test = new TreeSet <Integer> ();
-				for (int itemCode : usersRatings.get(userCode).keySet()) {
-					if (testItemsTest.contains(itemCode)) test.add(itemCode);
-					else training.add(itemCode);
-				}
+			User user;
 
-				// Setting training ratings arrays
-				int [] itemsArray = new int [training.size()];
-				double [] ratingsArray = new double [training.size()];
-				int i = 0; for (int itemCode : training) {
-					itemsArray[i] = itemCode;
-					ratingsArray[i] = usersRatings.get(userCode).get(itemCode);
-					i++;
+			// Count the test ratings of test users. The positions of the test ratings of stored users
+			// are selected reading only their codes
+			int numTest = 0;
+			if (testUsersSet[userIndex] && usersStore != null) {
+				int size = usersStore.size(userIndex);
+				if (trainingPositions.length < size) {
+					trainingPositions = new int [size];
+					testPositions = new int [size];
 				}
 
-				// Settings test ratings arrays
-				int [] testItemsArray = new int [test.size()];
-				double [] testRatingsArray = new double [test.size()];
-				i = 0; for (int itemCode : test) {
-					testItemsArray[i] = itemCode;
-					testRatingsArray[i] = usersRatings.get(userCode).get(itemCode);
-					i++;
+				for (int pos = 0; pos < size; pos++) {
+					int itemCode = usersStore.getCode(userIndex, pos);
+					if (testItemsSet[ratings.getItemIndex(itemCode)] && (testRatingFilter == null || testRatingFilter.isTest(userCode, itemCode))) {
+						testPositions[numTest++] = pos;
+					} else {
+						trainingPositions[pos - numTest] = pos;
+					}
+				}
+			} else if (testUsersSet[userIndex]) {
+				items = ratings.getUserItems(userIndex);
+				for (int itemCode : items) {
+					if (testItemsSet[ratings.getItemIndex(itemCode)] && (testRatingFilter == null || testRatingFilter.isTest(userCode, itemCode))) numTest++;
 				}
+			}
 
-				// If user did not have rated any test item, discard him
-				if (test.size() == 0) {
-					user = new User(userCode, userIndex, itemsArray, ratingsArray);
-					
-				// It not, create new testUser instance
+			// Training user or test user without test items: all the ratings are training ratings
+			if (numTest == 0) {
+				if (usersStore != null) {
+					user = new User(userCode, userIndex, usersStore, userIndex);
 				} else {
-					user = new TestUser(userCode, userIndex, itemsArray, ratingsArray, testUserIndex, testItemsArray, testRatingsArray);
-
-					// Add user to test users
-					this.testUsers[testUserIndex] = (TestUser) user;
-					testUserIndex++;
+					user = new User(userCode, userIndex, ratings.getUserItems(userIndex), ratings.getUserRatings(userIndex));
 				}
 
-			// Is training user
-			} else {
+			// Stored test user: the selected positions are kept instead of the ratings
+			} else if (usersStore != null) {
+				int row = usersTraining.add(userIndex, trainingPositions, usersStore.size(userIndex) - numTest);
+				usersTest.add(userIndex, testPositions, numTest);
+
+				user = new TestUser(userCode, userIndex, usersTraining, row, testUserIndex, usersTest);
 
-				// Setting rating arrays
-				int [] itemsArray = new int [usersRatings.get(userCode).keySet().size()];
-				double [] ratingsArray = new double [usersRatings.get(userCode).keySet().size()];
-				int i = 0; for (int item_code : usersRatings.get(userCode).keySet()) {
-					itemsArray[i] = item_code;
-					ratingsArray[i] = usersRatings.get(userCode).get(item_code);
-					i++;
+				// Add user to test users
+				testUsers[testUserIndex] = (TestUser) user;
+				testUserIndex++;
+
+			// Test user: splitting ratings into test & training ratings
+			} else {
+				double [] values = ratings.getUserRatings(userIndex);
+				int [] itemsArray = new int [items.length - numTest];
+				double [] ratingsArray = new double [items.length - numTest];
+				int [] testItemsArray = new int [numTest];
+				double [] testRatingsArray = new double [numTest];
+
+				int training = 0, test = 0;
+				for (int i = 0; i < items.length; i++) {
+					if (testItemsSet[ratings.getItemIndex(items[i])] && (testRatingFilter == null || testRatingFilter.isTest(userCode, items[i]))) {
+						testItemsArray[test] = items[i];
+						testRatingsArray[test] = values[i];
+						test++;
+					} else {
+						itemsArray[training] = items[i];
+						ratingsArray[training] = values[i];
+						training++;
+					}
 				}
 
-				// New user instance
-				user = new User(userCode, userIndex, itemsArray, ratingsArray);
+				user = new TestUser(userCode, userIndex, itemsArray, ratingsArray, testUserIndex, testItemsArray, testRatingsArray);
+
+				// Add user to test users
+				testUsers[testUserIndex] = (TestUser) user;
+				testUserIndex++;
 			}
 
 			// Add user to training users
 			this.users[userIndex] = user;
-			userIndex++;
- 
+
 			if (user.getNumberOfRatings() > 0) {
 				this.ratingAverage += user.getRatingAverage() * user.getNumberOfRatings();
 				averageCount += user.getNumberOfRatings();
-			}	
+			}
 		}
 
 		this.ratingAverage /= averageCount;
-		
+
 		// Remove gaps from testUser array
-		TestUser [] testUsersTemp = new TestUser [testUserIndex];
-		for (int i = 0; i < testUserIndex; i++) {
-			testUsersTemp[i] = this.testUsers[i];
-		}
-		this.testUsers = testUsersTemp;
-		
+		this.testUsers = Arrays.copyOf(testUsers, testUserIndex);
 
-		System.out.println("\nGenerating items sets...");
+		profiler.finish(numRatings, 0);
 
-		this.items = new Item [itemsRatings.size()];
-		this.itemsCopy = new Item [itemsRatings.size()];
-		int itemIndex = 0;
+		profiler.start(LoadPhase.ITEMS);
 
-		this.testItems = new TestItem [testItemsTest.size()];
+		this.items = new Item [itemCodes.length];
+		TestItem [] testItems = new TestItem [itemCodes.length];
 		int testItemIndex = 0;
 
-		for (int itemCode : itemsRatings.keySet()) {
+		SelectionStore itemsTraining = (itemsStore != null) ? new SelectionStore(itemsStore) : null;
+		SelectionStore itemsTest = (itemsStore != null) ? new SelectionStore(itemsStore) : null;
 
-			Item item;
+		for (int itemIndex = 0; itemIndex < itemCodes.length; itemIndex++) {
 
-			// Is test item
-			if (testItemsTest.contains(itemCode)) {
+			int itemCode = itemCodes[itemIndex];
+			int [] users = null;
 
-				// Splitting ratings into test & training ratings
-				TreeSet <Integer> training = new TreeSet <Integer> ();
-				TreeSet <Integer> test = new TreeSet <Integer> ();
-				for (int userCode : itemsRatings.get(itemCode).keySet()) {
-					if (testUsersSet.contains(userCode)) test.add(userCode);
-					else training.add(userCode);
-				}
+			Item item;
 
-				// Setting training ratings arrays
-				int [] usersArray = new int [training.size()];
-				double [] ratingsArray = new double [training.size()];
-				int i = 0; for (int userCode : training) {
-					usersArray[i] = userCode;
-					ratingsArray[i] = itemsRatings.get(itemCode).get(userCode);
-					i++;
+			// Count the test ratings of test items. The positions of the test ratings of stored items
+			// are selected reading only their codes
+			int numTest = 0;
+			if (testItemsSet[itemIndex] && itemsStore != null) {
+				int size = itemsStore.size(itemIndex);
+				if (trainingPositions.length < size) {
+					trainingPositions = new int [size];
+					testPositions = new int [size];
 				}
 
-				// Settings test ratings arrays
-				int [] testUsersArray = new int [test.size()];
-				double [] testRatingsArray = new double [test.size()];
-				i = 0; for (int userCode : test) {
-					testUsersArray[i] = userCode;
-					testRatingsArray[i] = itemsRatings.get(itemCode).get(userCode);
-					i++;
+				for (int pos = 0; pos < size; pos++) {
+					int userCode = itemsStore.getCode(itemIndex, pos);
+					if (testUsersSet[ratings.getUserIndex(userCode)] && (testRatingFilter == null || testRatingFilter.isTest(userCode, itemCode))) {
+						testPositions[numTest++] = pos;
+					} else {
+						trainingPositions[pos - numTest] = pos;
+					}
+				}
+			} else if (testItemsSet[itemIndex]) {
+				users = ratings.getItemUsers(itemIndex);
+				for (int userCode : users) {
+					if (testUsersSet[ratings.getUserIndex(userCode)] && (testRatingFilter == null || testRatingFilter.isTest(userCode, itemCode))) numTest++;
 				}
+			}
 
-				// If item did not have received any rating, discard it
-				if (test.size() == 0) {
-					item = new Item(itemCode, itemIndex, usersArray, ratingsArray);
-					
-				// It not, create new testUser instance
+			// Training item or test item without test users: all the ratings are training ratings
+			if (numTest == 0) {
+				if (itemsStore != null) {
+					item = new Item(itemCode, itemIndex, itemsStore, itemIndex);
 				} else {
-					item = new TestItem(itemCode, itemIndex, usersArray, ratingsArray, testItemIndex, testUsersArray, testRatingsArray);
-
-					// Add item to test items
-					this.testItems[testItemIndex] = (TestItem) item;
-					testItemIndex++;
+					item = new Item(itemCode, itemIndex, ratings.getItemUsers(itemIndex), ratings.getItemRatings(itemIndex));
 				}
 
-			// Is training item
-			} else {
+			// Stored test item: the selected positions are kept instead of the ratings
+			} else if (itemsStore != null) {
+				int row = itemsTraining.add(itemIndex, trainingPositions, itemsStore.size(itemIndex) - numTest);
+				itemsTest.add(itemIndex, testPositions, numTest);
+
+				item = new TestItem(itemCode, itemIndex, itemsTraining, row, testItemIndex, itemsTest);
 
-				// Setting rating arrays
-				int [] usersArrays = new int [itemsRatings.get(itemCode).keySet().size()];
-				double [] ratingsArrays = new double [itemsRatings.get(itemCode).keySet().size()];
-				int i = 0; for (int userCode : itemsRatings.get(itemCode).keySet()) {
-					usersArrays[i] = userCode;
-					ratingsArrays[i] = itemsRatings.get(itemCode).get(userCode);
-					i++;
+				// Add item to test items
+				testItems[testItemIndex] = (TestItem) item;
+				testItemIndex++;
+
+			// Test item: splitting ratings into test & training ratings
+			} else {
+				double [] values = ratings.getItemRatings(itemIndex);
+				int [] usersArray = new int [users.length - numTest];
+				double [] ratingsArray = new double [users.length - numTest];
+				int [] testUsersArray = new int [numTest];
+				double [] testRatingsArray = new double [numTest];
+
+				int training = 0, test = 0;
+				for (int u = 0; u < users.length; u++) {
+					if (testUsersSet[ratings.getUserIndex(users[u])] && (testRatingFilter == null || testRatingFilter.isTest(users[u], itemCode))) {
+						testUsersArray[test] = users[u];
+						testRatingsArray[test] = values[u];
+						test++;
+					} else {
+						usersArray[training] = users[u];
+						ratingsArray[training] = values[u];
+						training++;
+					}
 				}
 
-				// New item instance
-				item = new Item(itemCode, itemIndex, usersArrays, ratingsArrays);
+				item = new TestItem(itemCode, itemIndex, usersArray, ratingsArray, testItemIndex, testUsersArray, testRatingsArray);
+
+				// Add item to test items
+				testItems[testItemIndex] = (TestItem) item;
+				testItemIndex++;
 			}
 
 			// Add item to training items
 			this.items[itemIndex] = item;
-			this.itemsCopy[itemIndex] = item;
-			itemIndex++;
 		}
-		
+
 		// Remove gaps from testItems array
-		TestItem [] testItemsTemp = new TestItem [testItemIndex];
-		for (int i = 0; i < testItemIndex; i++) {
-			testItemsTemp[i] = this.testItems[i];
+		this.testItems = Arrays.copyOf(testItems, testItemIndex);
+
+		this.usersAttributes = new Attributes(this.users.length);
+		this.itemsAttributes = new Attributes(this.items.length);
+
+		this.packRatings();
+
+		profiler.finish(numRatings, 0);
+	}
+
+	/**
+	 * <p>Adds new ratings to the kernel without reloading the dataset. Only the users and items that
+	 * receive ratings are updated. If an user has already rated an item, the rating is replaced.</p>
+	 * <p>If the user has already rated the item, the new rating replaces the old one as a training or test
+	 * rating, the same as the old one. Otherwise, the new rating is a test rating if its user is a test user
+	 * and its item is a test item, and a training rating if not. So a pair user-item is never both a training
+	 * and a test rating. New users and items are training users and items. Inserting new users or
+	 * items changes the indexes of the following users or items, so the results computed before
+	 * (similarities, neighbors, models...) must be computed again.</p>
+	 * @param userCodes Users codes of the ratings
+	 * @param itemCodes Items codes of the ratings
+	 * @param ratings Ratings values. The indexes of this array overlaps with the indexes of the codes
+	 */
+	public void addRatings (int [] userCodes, int [] itemCodes, double [] ratings) {
+		if (userCodes.length != itemCodes.length || userCodes.length != ratings.length) {
+			throw new IllegalArgumentException("Codes and ratings arrays must have the same length");
+		}
+		if (ratings.length == 0) return;
+
+		// Modified users and items are not held by the stores anymore
+		this.usersStore = null;
+		this.itemsStore = null;
+
+		// Group the new ratings by user and by item
+		RatingsBuilder batch = new RatingsBuilder();
+		for (int r = 0; r < ratings.length; r++) batch.count(userCodes[r], itemCodes[r]);
+		batch.allocate();
+		for (int r = 0; r < ratings.length; r++) batch.add(userCodes[r], itemCodes[r], ratings[r]);
+		batch.finish();
+
+		// Training ratings summation to update the rating average
+		long numRatings = 0;
+		for (User user : this.users) numRatings += user.getNumberOfRatings();
+		double summation = (numRatings > 0) ? this.ratingAverage * numRatings : 0;
+
+		this.insertUsers(batch.getUserCodes());
+		this.insertItems(batch.getItemCodes());
+
+		// Update users
+		int [] batchUserCodes = batch.getUserCodes();
+		for (int b = 0; b < batchUserCodes.length; b++) {
+			User user = this.getUserByCode(batchUserCodes[b]);
+			int [] items = batch.getUserItems(b);
+			double [] values = batch.getUserRatings(b);
+
+			boolean [] test = new boolean [items.length];
+			for (int i = 0; i < items.length; i++) test[i] = Kernel.isTestRating(user, this.getItemByCode(items[i]));
+
+			if (user.getNumberOfRatings() > 0) {
+				summation -= user.getRatingAverage() * user.getNumberOfRatings();
+				numRatings -= user.getNumberOfRatings();
+			}
+
+			RatingsRow training = RatingsRow.select(items, values, test, false);
+			training = RatingsRow.merge(RatingsRow.training(user), training);
+			user.setRatings(training.codes, training.ratings);
+
+			if (user.getNumberOfRatings() > 0) {
+				summation += user.getRatingAverage() * user.getNumberOfRatings();
+				numRatings += user.getNumberOfRatings();
+			}
+
+			RatingsRow testRow = RatingsRow.select(items, values, test, true);
+			if (testRow.codes.length > 0) {
+				TestUser testUser = (TestUser) user;
+				testRow = RatingsRow.merge(RatingsRow.test(testUser), testRow);
+				testUser.setTestRatings(testRow.codes, testRow.ratings);
+			}
+		}
+
+		// Update items
+		int [] batchItemCodes = batch.getItemCodes();
+		for (int b = 0; b < batchItemCodes.length; b++) {
+			Item item = this.getItemByCode(batchItemCodes[b]);
+			int [] users = batch.getItemUsers(b);
+			double [] values = batch.getItemRatings(b);
+
+			// Users were updated before, so the pairs are found where the new ratings have been added
+			boolean [] test = new boolean [users.length];
+			for (int u = 0; u < users.length; u++) test[u] = Kernel.isTestRating(this.getUserByCode(users[u]), item);
+
+			RatingsRow training = RatingsRow.select(users, values, test, false);
+			training = RatingsRow.merge(RatingsRow.training(item), training);
+			item.setRatings(training.codes, training.ratings);
+
+			RatingsRow testRow = RatingsRow.select(users, values, test, true);
+			if (testRow.codes.length > 0) {
+				TestItem testItem = (TestItem) item;
+				testRow = RatingsRow.merge(RatingsRow.test(testItem), testRow);
+				testItem.setTestRatings(testRow.codes, testRow.ratings);
+			}
+		}
+
+		this.ratingAverage = summation / numRatings;
+		this.minUserCode = this.users[0].getUserCode();
+		this.maxUserCode = this.users[this.users.length - 1].getUserCode();
+		this.minItemCode = this.items[0].getItemCode();
+		this.maxItemCode = this.items[this.items.length - 1].getItemCode();
+		this.minRating = Math.min(this.minRating, batch.getMinRating());
+		this.maxRating = Math.max(this.maxRating, batch.getMaxRating());
+
+		this.packRatings();
+	}
+
+	/**
+	 * Returns if a rating added to a pair user-item is a test rating. Pairs already rated keep their
+	 * training or test side. New pairs are test ratings if the user is a test user and the item is a
+	 * test item.
+	 * @param user User
+	 * @param item Item
+	 * @return true if the rating is a test rating
+	 */
+	private static boolean isTestRating (User user, Item item) {
+		int itemCode = item.getItemCode();
+		if (user.getItemIndex(itemCode) != -1) return false;
+		if (!(user instanceof TestUser)) return false;
+		if (((TestUser) user).getTestItemIndex(itemCode) != -1) return true;
+		return item instanceof TestItem;
+	}
+
+	/**
+	 * Inserts the users that do not exist keeping the users array sorted by code
+	 * @param userCodes Users codes sorted from low to high
+	 */
+	private void insertUsers (int [] userCodes) {
+		int numNew = 0;
+		for (int userCode : userCodes) if (this.getUserIndex(userCode) == -1) numNew++;
+		if (numNew == 0) return;
+
+		User [] users = new User [this.users.length + numNew];
+		int [] indexes = new int [this.users.length];
+		int u = 0, c = 0, index = 0;
+		while (u < this.users.length || c < userCodes.length) {
+			if (c == userCodes.length || (u < this.users.length && this.users[u].getUserCode() <= userCodes[c])) {
+				if (c < userCodes.length && this.users[u].getUserCode() == userCodes[c]) c++;
+				indexes[u] = index;
+				users[index] = this.users[u++];
+				users[index].setUserIndex(index);
+			} else {
+				users[index] = new User(userCodes[c++], index, new int [0], new double [0]);
+			}
+			index++;
+		}
+		this.users = users;
+		this.usersAttributes.remap(indexes, users.length);
+	}
+
+	/**
+	 * Inserts the items that do not exist keeping the items array sorted by code
+	 * @param itemCodes Items codes sorted from low to high
+	 */
+	private void insertItems (int [] itemCodes) {
+		int numNew = 0;
+		for (int itemCode : itemCodes) if (this.getItemIndex(itemCode) == -1) numNew++;
+		if (numNew == 0) return;
+
+		Item [] items = new Item [this.items.length + numNew];
+		int [] indexes = new int [this.items.length];
+		int i = 0, c = 0, index = 0;
+		while (i < this.items.length || c < itemCodes.length) {
+			if (c == itemCodes.length || (i < this.items.length && this.items[i].getItemCode() <= itemCodes[c])) {
+				if (c < itemCodes.length && this.items[i].getItemCode() == itemCodes[c]) c++;
+				indexes[i] = index;
+				items[index] = this.items[i++];
+				items[index].setItemIndex(index);
+			} else {
+				items[index] = new Item(itemCodes[c++], index, new int [0], new double [0]);
+			}
+			index++;
+		}
+		this.items = items;
+		this.itemsAttributes.remap(indexes, items.length);
+	}
+
+	/**
+	 * Codes and ratings of an user or an item
+	 */
+	private static class RatingsRow {
+
+		private int [] codes;
+
+		private double [] ratings;
+
+		RatingsRow (int [] codes, double [] ratings) {
+			this.codes = codes;
+			this.ratings = ratings;
+		}
+
+		/**
+		 * Selects the ratings marked (or not marked) as test ratings
+		 * @param codes Codes
+		 * @param ratings Ratings
+		 * @param test Test marks
+		 * @param value Mark of the ratings selected
+		 * @return Ratings selected
+		 */
+		static RatingsRow select (int [] codes, double [] ratings, boolean [] test, boolean value) {
+			int n = 0;
+			for (boolean t : test) if (t == value) n++;
+
+			RatingsRow row = new RatingsRow(new int [n], new double [n]);
+			for (int i = 0, j = 0; i < codes.length; i++) {
+				if (test[i] == value) {
+					row.codes[j] = codes[i];
+					row.ratings[j] = ratings[i];
+					j++;
+				}
+			}
+			return row;
+		}
+
+		/**
+		 * Reads the training ratings of an user
+		 * @param user User
+		 * @return Training ratings
+		 */
+		static RatingsRow training (User user) {
+			RatingsRow row = new RatingsRow(new int [user.getNumberOfRatings()], new double [user.getNumberOfRatings()]);
+			user.getItems(row.codes);
+			user.getRatings(row.ratings);
+			return row;
+		}
+
+		/**
+		 * Reads the training ratings of an item
+		 * @param item Item
+		 * @return Training ratings
+		 */
+		static RatingsRow training (Item item) {
+			RatingsRow row = new RatingsRow(new int [item.getNumberOfRatings()], new double [item.getNumberOfRatings()]);
+			item.getUsers(row.codes);
+			item.getRatings(row.ratings);
+			return row;
+		}
+
+		/**
+		 * Reads the test ratings of a test user
+		 * @param testUser Test user
+		 * @return Test ratings
+		 */
+		static RatingsRow test (TestUser testUser) {
+			int n = testUser.getNumberOfTestRatings();
+			RatingsRow row = new RatingsRow(new int [n], new double [n]);
+			testUser.getTestItems(row.codes);
+			testUser.getTestRatings(row.ratings);
+			return row;
+		}
+
+		/**
+		 * Reads the test ratings of a test item
+		 * @param testItem Test item
+		 * @return Test ratings
+		 */
+		static RatingsRow test (TestItem testItem) {
+			int n = testItem.getNumberOfTestRatings();
+			RatingsRow row = new RatingsRow(new int [n], new double [n]);
+			testItem.getTestUsers(row.codes);
+			testItem.getTestRatings(row.ratings);
+			return row;
+		}
+
+		/**
+		 * Merges two sorted rows. If a code is in both rows, the rating of the second one is kept.
+		 * @param row First row
+		 * @param newRow Second row
+		 * @return Merged row
+		 */
+		static RatingsRow merge (RatingsRow row, RatingsRow newRow) {
+			int [] codes = row.codes, newCodes = newRow.codes;
+			double [] ratings = row.ratings, newRatings = newRow.ratings;
+
+			int [] mergedCodes = new int [codes.length + newCodes.length];
+			double [] mergedRatings = new double [codes.length + newCodes.length];
+
+			int i = 0, j = 0, n = 0;
+			while (i < codes.length || j < newCodes.length) {
+				if (j == newCodes.length || (i < codes.length && codes[i] < newCodes[j])) {
+					mergedCodes[n] = codes[i];
+					mergedRatings[n++] = ratings[i++];
+				} else {
+					if (i < codes.length && codes[i] == newCodes[j]) i++;
+					mergedCodes[n] = newCodes[j];
+					mergedRatings[n++] = newRatings[j++];
+				}
+			}
+
+			return new RatingsRow(Arrays.copyOf(mergedCodes, n), Arrays.copyOf(mergedRatings, n));
+		}
+	}
+
+	/**
+	 * Sets the users and items of the kernel. Test users and test items are taken from them.
+	 * @param users Users array
+	 * @param items Items array
+	 * @param minUserCode Minimum user code
+	 * @param maxUserCode Maximum user code
+	 * @param minItemCode Minimum item code
+	 * @param maxItemCode Maximum item code
+	 * @param minRating Minimum rating
+	 * @param maxRating Maximum rating
+	 * @param ratingAverage Rating average
+	 */
+	void restore (User [] users, Item [] items, int minUserCode, int maxUserCode, int minItemCode, int maxItemCode,
+			double minRating, double maxRating, double ratingAverage) {
+
+		this.users = users;
+		this.items = items;
+		this.usersStore = null;
+		this.itemsStore = null;
+		this.usersAttributes = new Attributes(users.length);
+		this.itemsAttributes = new Attributes(items.length);
+		this.minUserCode = minUserCode;
+		this.maxUserCode = maxUserCode;
+		this.minItemCode = minItemCode;
+		this.maxItemCode = maxItemCode;
+		this.minRating = minRating;
+		this.maxRating = maxRating;
+		this.ratingAverage = ratingAverage;
+
+		int numTestUsers = 0;
+		for (User user : users) if (user instanceof TestUser) numTestUsers++;
+		this.testUsers = new TestUser [numTestUsers];
+		for (User user : users) {
+			if (user instanceof TestUser) this.testUsers[((TestUser) user).getTestUserIndex()] = (TestUser) user;
+		}
+
+		int numTestItems = 0;
+		for (Item item : items) if (item instanceof TestItem) numTestItems++;
+		this.testItems = new TestItem [numTestItems];
+		for (Item item : items) {
+			if (item instanceof TestItem) this.testItems[((TestItem) item).getTestItemIndex()] = (TestItem) item;
 		}
-		this.testItems = testItemsTemp;
 
-		System.out.println("\n'" + filename + "' dataset loaded succesfully");
+		this.packRatings();
+	}
+
+	/**
+	 * Packs the ratings of the users and items into shared matrices (see RatingsMatrix) with the
+	 * precision set by setRatingStorage(...): one for the training ratings, whose rows are the users
+	 * and whose columns are the items, and one for the test ratings, whose rows are the test users and
+	 * whose columns are the test items. Users and items become views over the matrices, which also
+	 * keep the kernel indexes of the rated users and items. It must be called whenever the users or
+	 * the items change.
+	 * <p>Memory mapped users and items are not modified. In that case, the training ratings of the other
+	 * users and items are packed by rows only, because the transposition of the users ratings would not
+	 * contain the ratings of the mapped users. Test ratings of memory mapped test users and test items
+	 * are not modified either and they are packed in the same way.</p>
+	 */
+	private void packRatings () {
+		RatingStorage storage = this.ratingStorage;
+		double [] dictionary = null;
+
+		if (storage == RatingStorage.DICTIONARY) {
+			dictionary = this.getRatingsDictionary();
+			if (dictionary == null) storage = RatingStorage.FLOAT;
+		}
+
+		int [] userCodes = new int [this.users.length];
+		int [] userIndexes = new int [this.users.length];
+		for (int u = 0; u < userCodes.length; u++) {
+			userCodes[u] = this.users[u].getUserCode();
+			userIndexes[u] = u;
+		}
+
+		int [] itemCodes = new int [this.items.length];
+		int [] itemIndexes = new int [this.items.length];
+		for (int i = 0; i < itemCodes.length; i++) {
+			itemCodes[i] = this.items[i].getItemCode();
+			itemIndexes[i] = i;
+		}
+
+		// Training ratings
+		boolean mapped = false;
+		for (User user : this.users) mapped |= user.store != null && user.store.isMapped();
+		for (Item item : this.items) mapped |= item.store != null && item.store.isMapped();
+
+		int [][] codes = new int [this.users.length][];
+		double [][] ratings = new double [this.users.length][];
+		for (User user : this.users) {
+			boolean skip = user.store != null && user.store.isMapped();
+			RatingsRow row = skip ? new RatingsRow(new int [0], new double [0]) : RatingsRow.training(user);
+			codes[user.getUserIndex()] = row.codes;
+			ratings[user.getUserIndex()] = row.ratings;
+		}
+
+		RatingsMatrix matrix = new RatingsMatrix(codes, ratings, userCodes, userIndexes, itemCodes, null,
+				this.items.length, storage, dictionary, !mapped);
+
+		for (User user : this.users) {
+			if (user.store == null || !user.store.isMapped()) user.setStore(matrix.getRows(), user.getUserIndex());
+		}
+
+		if (mapped) {
+			codes = new int [this.items.length][];
+			ratings = new double [this.items.length][];
+			for (Item item : this.items) {
+				boolean skip = item.store != null && item.store.isMapped();
+				RatingsRow row = skip ? new RatingsRow(new int [0], new double [0]) : RatingsRow.training(item);
+				codes[item.getItemIndex()] = row.codes;
+				ratings[item.getItemIndex()] = row.ratings;
+			}
+			matrix = new RatingsMatrix(codes, ratings, itemCodes, itemIndexes, userCodes, null,
+					this.users.length, storage, dictionary, false);
+		}
+
+		for (Item item : this.items) {
+			if (item.store == null || !item.store.isMapped()) {
+				item.setStore(mapped ? matrix.getRows() : matrix.getColumns(), item.getItemIndex());
+			}
+		}
+
+		// Test ratings
+		boolean testMapped = false;
+		for (TestUser testUser : this.testUsers) testMapped |= testUser.testStore != null && testUser.testStore.isMapped();
+		for (TestItem testItem : this.testItems) testMapped |= testItem.testStore != null && testItem.testStore.isMapped();
+
+		int [] testItemIndexes = new int [this.items.length];
+		for (TestItem testItem : this.testItems) testItemIndexes[testItem.getItemIndex()] = testItem.getTestItemIndex();
+
+		codes = new int [this.testUsers.length][];
+		ratings = new double [this.testUsers.length][];
+		int [] testUserCodes = new int [this.testUsers.length];
+		int [] testUserIndexes = new int [this.testUsers.length];
+		for (TestUser testUser : this.testUsers) {
+			int t = testUser.getTestUserIndex();
+			boolean skip = testUser.testStore != null && testUser.testStore.isMapped();
+			RatingsRow row = skip ? new RatingsRow(new int [0], new double [0]) : RatingsRow.test(testUser);
+			codes[t] = row.codes;
+			ratings[t] = row.ratings;
+			testUserCodes[t] = testUser.getUserCode();
+			testUserIndexes[t] = testUser.getUserIndex();
+		}
+
+		RatingsMatrix testMatrix = new RatingsMatrix(codes, ratings, testUserCodes, testUserIndexes, itemCodes,
+				testItemIndexes, this.testItems.length, storage, dictionary, !testMapped);
+
+		for (TestUser testUser : this.testUsers) {
+			if (testUser.testStore == null || !testUser.testStore.isMapped()) testUser.setTestStore(testMatrix.getRows());
+		}
+
+		if (testMapped) {
+			codes = new int [this.testItems.length][];
+			ratings = new double [this.testItems.length][];
+			int [] testItemCodes = new int [this.testItems.length];
+			int [] testItemKernelIndexes = new int [this.testItems.length];
+			for (TestItem testItem : this.testItems) {
+				int t = testItem.getTestItemIndex();
+				boolean skip = testItem.testStore != null && testItem.testStore.isMapped();
+				RatingsRow row = skip ? new RatingsRow(new int [0], new double [0]) : RatingsRow.test(testItem);
+				codes[t] = row.codes;
+				ratings[t] = row.ratings;
+				testItemCodes[t] = testItem.getItemCode();
+				testItemKernelIndexes[t] = testItem.getItemIndex();
+			}
+			testMatrix = new RatingsMatrix(codes, ratings, testItemCodes, testItemKernelIndexes, userCodes, null,
+					this.users.length, storage, dictionary, false);
+		}
+
+		for (TestItem testItem : this.testItems) {
+			if (testItem.testStore == null || !testItem.testStore.isMapped()) {
+				testItem.setTestStore(testMapped ? testMatrix.getRows() : testMatrix.getColumns());
+			}
+		}
+	}
+
+	/**
+	 * Collects the different ratings that are not memory mapped
+	 * @return Different ratings sorted from low to high or null if there are too many
+	 */
+	private double [] getRatingsDictionary () {
+		double [] dictionary = new double [RatingsMatrix.DICTIONARY_SIZE];
+		int size = 0;
+
+		for (User user : this.users) {
+			if (user.store == null || !user.store.isMapped()) {
+				for (int j = 0; j < user.getNumberOfRatings(); j++) size = Kernel.addToDictionary(user.getRatingAt(j), dictionary, size);
+			}
+			if (user instanceof TestUser) {
+				TestUser testUser = (TestUser) user;
+				if (testUser.testStore == null || !testUser.testStore.isMapped()) {
+					for (int j = 0; j < testUser.getNumberOfTestRatings(); j++) size = Kernel.addToDictionary(testUser.getTestRatingAt(j), dictionary, size);
+				}
+			}
+			if (size == -1) return null;
+		}
+
+		// Training and test ratings of mapped users may be held by items and test items
+		for (Item item : this.items) {
+			if (item.store == null || !item.store.isMapped()) {
+				for (int j = 0; j < item.getNumberOfRatings(); j++) size = Kernel.addToDictionary(item.getRatingAt(j), dictionary, size);
+			}
+			if (item instanceof TestItem) {
+				TestItem testItem = (TestItem) item;
+				if (testItem.testStore == null || !testItem.testStore.isMapped()) {
+					for (int j = 0; j < testItem.getNumberOfTestRatings(); j++) size = Kernel.addToDictionary(testItem.getTestRatingAt(j), dictionary, size);
+				}
+			}
+			if (size == -1) return null;
+		}
+
+		return Arrays.copyOf(dictionary, size);
+	}
+
+	/**
+	 * Adds a rating to a dictionary
+	 * @param rating Rating to be added
+	 * @param dictionary Different ratings sorted from low to high
+	 * @param size Size of the dictionary
+	 * @return New size of the dictionary or -1 if the rating does not fit in it
+	 */
+	private static int addToDictionary (double rating, double [] dictionary, int size) {
+		if (size == -1) return -1;
+		int index = Arrays.binarySearch(dictionary, 0, size, rating);
+		if (index < 0) {
+			if (size == dictionary.length) return -1;
+			index = -index - 1;
+			System.arraycopy(dictionary, index, dictionary, index + 1, size - index);
+			dictionary[index] = rating;
+			size++;
+		}
+		return size;
 	}
 
 	/**
@@ -467,17 +1421,54 @@ public class Kernel implements Serializable {
 	}
 
 	/**
-	 * Save the Kernel on a binary file
+	 * Returns the typed attributes of the users. Their values are indexed by the user index.
+	 * @return Attributes of the users
+	 */
+	public Attributes getUsersAttributes () {
+		return this.usersAttributes;
+	}
+
+	/**
+	 * Returns the typed attributes of the items. Their values are indexed by the item index.
+	 * @return Attributes of the items
+	 */
+	public Attributes getItemsAttributes () {
+		return this.itemsAttributes;
+	}
+
+	/**
+	 * Sets the typed attributes of the users and the items
+	 * @param usersAttributes Attributes of the users
+	 * @param itemsAttributes Attributes of the items
+	 */
+	void setAttributes (Attributes usersAttributes, Attributes itemsAttributes) {
+		this.usersAttributes = usersAttributes;
+		this.itemsAttributes = itemsAttributes;
+	}
+
+	/**
+	 * Save the Kernel on a binary file. The ratings, the training and test sets, the maps of the
+	 * kernel, users and items and the typed attributes are stored. Memory mapped kernels are stored into the file too, so
+	 * they are restored into the heap.
 	 * @param filename File name
 	 * @return True if no error exits or False in other case
 	 */
 	public boolean writeKernel (String filename) {
+		return this.writeKernel(filename, false);
+	}
+
+	/**
+	 * Save the Kernel on a binary file. A compressed file stores codes as varints and ratings as
+	 * indexes of a dictionary of the distinct ratings. It is several times smaller, so it is faster
+	 * to read from slow or network disks. readKernel(...) detects compressed files automatically.
+	 * @param filename File name
+	 * @param compressed True to compress the file
+	 * @return True if no error exits or False in other case
+	 */
+	public boolean writeKernel (String filename, boolean compressed) {
 		System.out.println("\nStoring kernel...");
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
-			oos.writeObject(this);
-			oos.flush();
-			oos.close();
+			KernelSnapshot.write(this, filename, compressed);
 			System.out.println("\nKernel stored successfully");
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -488,17 +1479,19 @@ public class Kernel implements Serializable {
 	}
 
 	/**
-	 * Retrieve the Kernel from a binary file
+	 * Retrieve the Kernel from a binary file. The ratings, the maps and the attributes of this kernel
+	 * are replaced by the stored ones; its settings (rating storage, listener...) are kept.
 	 * @param filename File name
 	 * @return True if no error exits or False in other case
 	 */
 	public boolean readKernel (String filename) {
 		System.out.println("\nLoading kernel...");
 		try {
-			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)));
-			Kernel.instance = (Kernel) ois.readObject();
+			Kernel kernel = new Kernel();
+			kernel.ratingStorage = this.ratingStorage;
+			KernelSnapshot.read(filename, kernel);
+			this.copy(kernel);
 			System.out.println("\nKernel loaded successfully");
-			ois.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.out.println("An error has occurred while loading kernel");
@@ -507,6 +1500,29 @@ public class Kernel implements Serializable {
 		return true;
 	}
 
+	/**
+	 * Takes the ratings, the maps and the attributes of other kernel
+	 * @param kernel Kernel whose data is taken
+	 */
+	private void copy (Kernel kernel) {
+		this.users = kernel.users;
+		this.items = kernel.items;
+		this.testUsers = kernel.testUsers;
+		this.testItems = kernel.testItems;
+		this.map = kernel.map;
+		this.usersAttributes = kernel.usersAttributes;
+		this.itemsAttributes = kernel.itemsAttributes;
+		this.usersStore = kernel.usersStore;
+		this.itemsStore = kernel.itemsStore;
+		this.minUserCode = kernel.minUserCode;
+		this.maxUserCode = kernel.maxUserCode;
+		this.minItemCode = kernel.minItemCode;
+		this.maxItemCode = kernel.maxItemCode;
+		this.minRating = kernel.minRating;
+		this.maxRating = kernel.maxRating;
+		this.ratingAverage = kernel.ratingAverage;
+	}
+
 	/**
 	 * Writes on the Kernel map the average value of a key present in the users map. If one test
 	 * user don not have the value, he will be ignored. The NaN values will be ignored.
@@ -557,11 +1573,12 @@ public class Kernel implements Serializable {
 	}
 
 	/**
-	 * Returns the array of items copy
+	 * Returns the array of items copy. The copies have always been the items themselves, so the
+	 * items array is returned instead of keeping a duplicate of it.
 	 * @return Items sorted from low item code to high item code.
 	 */
 	public Item[] getItemsCopy() {
-		return this.itemsCopy;
+		return this.items;
 	}
 
 	/**
@@ -652,7 +1669,7 @@ public class Kernel implements Serializable {
 	 * @return Index if the item exists or -1 if not
 	 */
 	public int getItemCopyIndex (int itemCode) {
-		return this.getIndex(this.itemsCopy, itemCode);
+		return this.getIndex(this.items, itemCode);
 	}
 
 	/**
@@ -794,7 +1811,7 @@ public class Kernel implements Serializable {
 	public Item getItemCopyByCode (int itemCode) {
 		int index = this.getItemCopyIndex(itemCode);
 		if (index == -1) return null;
-		else return this.itemsCopy[index];
+		else return this.items[index];
 	}
 	
 	/**
@@ -814,7 +1831,7 @@ public class Kernel implements Serializable {
 	 */
 	public Item getItemCopyByIndex (int itemIndex) {
 		if (itemIndex >= this.getNumberOfItems()) return null;
-		else return this.itemsCopy[itemIndex];
+		else return this.items[itemIndex];
 	}
 
 
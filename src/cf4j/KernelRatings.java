@@ -0,0 +1,265 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Ratings of a loaded kernel seen as a dataset, so the kernel can be split again without reading
+ * the dataset. The rows of the users and items are read on demand through their buffer accessors: the
+ * training ratings are copied into a new row and, for test users and test items, the test ratings are
+ * merged into it. Each row is read once even if its codes and its ratings are requested one after the
+ * other.</p>
+ *
+ * @author Fernando Ortega
+ */
+class KernelRatings implements RatingsSource {
+
+	/**
+	 * Users and items of the kernel
+	 */
+	private User [] users;
+	private Item [] items;
+
+	/**
+	 * Users and items codes
+	 */
+	private int [] userCodes;
+	private int [] itemCodes;
+
+	/**
+	 * Rating range of the kernel
+	 */
+	private double minRating;
+	private double maxRating;
+
+	/**
+	 * Stores of the kernel or null if the ratings are held by the users and items
+	 */
+	private RatingsStore usersStore;
+	private RatingsStore itemsStore;
+
+	/**
+	 * Last read user (codes and ratings are requested one after the other)
+	 */
+	private int mergedUser = -1;
+	private int [] mergedUserItems;
+	private double [] mergedUserRatings;
+
+	/**
+	 * Last read item
+	 */
+	private int mergedItem = -1;
+	private int [] mergedItemUsers;
+	private double [] mergedItemRatings;
+
+	/**
+	 * Buffers of the test ratings that are merged
+	 */
+	private int [] testCodes = new int [0];
+	private double [] testRatings = new double [0];
+
+	/**
+	 * Creates a view over the ratings of a kernel
+	 * @param users Users of the kernel
+	 * @param items Items of the kernel
+	 * @param minRating Minimum rating
+	 * @param maxRating Maximum rating
+	 * @param usersStore Store of the users ratings (it must contain the test ratings too) or null
+	 * @param itemsStore Store of the items ratings (it must contain the test ratings too) or null
+	 */
+	KernelRatings (User [] users, Item [] items, double minRating, double maxRating,
+			RatingsStore usersStore, RatingsStore itemsStore) {
+
+		this.users = users;
+		this.items = items;
+		this.minRating = minRating;
+		this.maxRating = maxRating;
+		this.usersStore = usersStore;
+		this.itemsStore = itemsStore;
+
+		this.userCodes = new int [users.length];
+		for (int u = 0; u < users.length; u++) this.userCodes[u] = users[u].getUserCode();
+
+		this.itemCodes = new int [items.length];
+		for (int i = 0; i < items.length; i++) this.itemCodes[i] = items[i].getItemCode();
+	}
+
+	@Override
+	public int [] getUserCodes () {
+		return this.userCodes;
+	}
+
+	@Override
+	public int [] getItemCodes () {
+		return this.itemCodes;
+	}
+
+	@Override
+	public int getUserIndex (int userCode) {
+		int index = Arrays.binarySearch(this.userCodes, userCode);
+		return (index < 0) ? -1 : index;
+	}
+
+	@Override
+	public int getItemIndex (int itemCode) {
+		int index = Arrays.binarySearch(this.itemCodes, itemCode);
+		return (index < 0) ? -1 : index;
+	}
+
+	@Override
+	public int [] getUserItems (int userIndex) {
+		this.mergeUser(userIndex);
+		return this.mergedUserItems;
+	}
+
+	@Override
+	public double [] getUserRatings (int userIndex) {
+		this.mergeUser(userIndex);
+		return this.mergedUserRatings;
+	}
+
+	@Override
+	public int [] getItemUsers (int itemIndex) {
+		this.mergeItem(itemIndex);
+		return this.mergedItemUsers;
+	}
+
+	@Override
+	public double [] getItemRatings (int itemIndex) {
+		this.mergeItem(itemIndex);
+		return this.mergedItemRatings;
+	}
+
+	@Override
+	public int getNumberOfUserRatings (int userIndex) {
+		User user = this.users[userIndex];
+		if (!(user instanceof TestUser)) return user.getNumberOfRatings();
+		return user.getNumberOfRatings() + ((TestUser) user).getNumberOfTestRatings();
+	}
+
+	@Override
+	public int getNumberOfItemRatings (int itemIndex) {
+		Item item = this.items[itemIndex];
+		if (!(item instanceof TestItem)) return item.getNumberOfRatings();
+		return item.getNumberOfRatings() + ((TestItem) item).getNumberOfTestRatings();
+	}
+
+	@Override
+	public long getNumberOfRatings () {
+		long numRatings = 0;
+		for (User user : this.users) {
+			numRatings += user.getNumberOfRatings();
+			if (user instanceof TestUser) numRatings += ((TestUser) user).getNumberOfTestRatings();
+		}
+		return numRatings;
+	}
+
+	@Override
+	public double getMinRating () {
+		return this.minRating;
+	}
+
+	@Override
+	public double getMaxRating () {
+		return this.maxRating;
+	}
+
+	@Override
+	public RatingsStore getUsersStore () {
+		return this.usersStore;
+	}
+
+	@Override
+	public RatingsStore getItemsStore () {
+		return this.itemsStore;
+	}
+
+	/**
+	 * Reads the training ratings of an user merged with its test ratings if it is a test user
+	 * @param userIndex User index
+	 */
+	private void mergeUser (int userIndex) {
+		if (this.mergedUser == userIndex) return;
+
+		User user = this.users[userIndex];
+		int numRatings = user.getNumberOfRatings();
+		int numTestRatings = (user instanceof TestUser) ? ((TestUser) user).getNumberOfTestRatings() : 0;
+
+		int [] codes = new int [numRatings + numTestRatings];
+		double [] ratings = new double [codes.length];
+		user.getItems(codes);
+		user.getRatings(ratings);
+
+		if (numTestRatings > 0) {
+			this.ensureTestBuffers(numTestRatings);
+			((TestUser) user).getTestItems(this.testCodes);
+			((TestUser) user).getTestRatings(this.testRatings);
+			this.merge(codes, ratings, numRatings, numTestRatings);
+		}
+
+		this.mergedUser = userIndex;
+		this.mergedUserItems = codes;
+		this.mergedUserRatings = ratings;
+	}
+
+	/**
+	 * Reads the training ratings of an item merged with its test ratings if it is a test item
+	 * @param itemIndex Item index
+	 */
+	private void mergeItem (int itemIndex) {
+		if (this.mergedItem == itemIndex) return;
+
+		Item item = this.items[itemIndex];
+		int numRatings = item.getNumberOfRatings();
+		int numTestRatings = (item instanceof TestItem) ? ((TestItem) item).getNumberOfTestRatings() : 0;
+
+		int [] codes = new int [numRatings + numTestRatings];
+		double [] ratings = new double [codes.length];
+		item.getUsers(codes);
+		item.getRatings(ratings);
+
+		if (numTestRatings > 0) {
+			this.ensureTestBuffers(numTestRatings);
+			((TestItem) item).getTestUsers(this.testCodes);
+			((TestItem) item).getTestRatings(this.testRatings);
+			this.merge(codes, ratings, numRatings, numTestRatings);
+		}
+
+		this.mergedItem = itemIndex;
+		this.mergedItemUsers = codes;
+		this.mergedItemRatings = ratings;
+	}
+
+	/**
+	 * Grows the test buffers if they are too small
+	 * @param numTestRatings Number of test ratings
+	 */
+	private void ensureTestBuffers (int numTestRatings) {
+		if (this.testCodes.length < numTestRatings) {
+			this.testCodes = new int [numTestRatings];
+			this.testRatings = new double [numTestRatings];
+		}
+	}
+
+	/**
+	 * Merges the test buffers into a row whose first positions hold the training ratings. Both parts
+	 * are disjoint and sorted by code, so they are merged from the end without another array.
+	 * @param codes Row codes
+	 * @param ratings Row ratings
+	 * @param numRatings Number of training ratings at the beginning of the row
+	 * @param numTestRatings Number of test ratings in the test buffers
+	 */
+	private void merge (int [] codes, double [] ratings, int numRatings, int numTestRatings) {
+		int a = numRatings - 1, b = numTestRatings - 1, r = numRatings + numTestRatings - 1;
+		while (b >= 0) {
+			if (a >= 0 && codes[a] > this.testCodes[b]) {
+				codes[r] = codes[a];
+				ratings[r--] = ratings[a--];
+			} else {
+				codes[r] = this.testCodes[b];
+				ratings[r--] = this.testRatings[b--];
+			}
+		}
+	}
+}
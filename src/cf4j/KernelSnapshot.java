@@ -0,0 +1,475 @@
+package cf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Binary snapshot of the Kernel. The ratings are written as blocks of primitive values, so a
+ * snapshot is written and restored at disk speed. The snapshot contains:</p>
+ * <ol>
+ * 		<li>Header: magic number, format version, encoding flags, codes ranges, ratings range, rating
+ * 		average and dictionary of ratings (only if ratings are encoded with the dictionary).</li>
+ * 		<li>Users: codes, number of training and test ratings of each user and the items and ratings of
+ * 		each user (training ratings followed by test ratings). Users with test ratings are test
+ * 		users.</li>
+ * 		<li>Items: same layout than users.</li>
+ * 		<li>Attributes: maps of the kernel, users and items that are not empty and typed attributes of
+ * 		the users and items. They are written with Java serialization because maps can contain any type
+ * 		of object.</li>
+ * </ol>
+ *
+ * <p>Compressed snapshots reduce the size of the file (and the time to read it from slow disks)
+ * with two encodings:</p>
+ * <ul>
+ * 		<li>Codes and counts are written as varints. Codes are sorted, so only the difference with the
+ * 		previous code is written.</li>
+ * 		<li>Ratings are written as one byte index to a dictionary of distinct ratings if there are
+ * 		less than 256 distinct ratings (rating scales usually have a few values). Otherwise, they are
+ * 		written as doubles.</li>
+ * </ul>
+ * <p>Version 1 snapshots (not compressed and without flags) and version 2 snapshots (without typed
+ * attributes) can be read too.</p>
+ *
+ * @author Fernando Ortega
+ */
+class KernelSnapshot {
+
+	/**
+	 * Magic number: "CF4K" in ASCII
+	 */
+	static final int MAGIC = 0x4346344B;
+
+	/**
+	 * Format version
+	 */
+	static final int VERSION = 3;
+
+	/**
+	 * Flag: codes and counts are written as varints
+	 */
+	private static final int VARINT_CODES = 1;
+
+	/**
+	 * Flag: ratings are written as indexes of the ratings dictionary
+	 */
+	private static final int DICTIONARY_RATINGS = 2;
+
+	/**
+	 * Maximum size of the ratings dictionary
+	 */
+	private static final int DICTIONARY_SIZE = 256;
+
+	/**
+	 * Writes a snapshot of a kernel
+	 * @param kernel Kernel
+	 * @param filename Snapshot file
+	 * @param compressed True to compress codes and ratings
+	 * @throws IOException If the file can not be written
+	 */
+	static void write (Kernel kernel, String filename, boolean compressed) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ChannelOutput out = new ChannelOutput(channel);
+
+			double [] dictionary = compressed ? KernelSnapshot.ratingsDictionary(kernel) : null;
+
+			int flags = 0;
+			if (compressed) flags |= VARINT_CODES;
+			if (dictionary != null) flags |= DICTIONARY_RATINGS;
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(flags);
+			out.writeInt(kernel.getMinUserCode());
+			out.writeInt(kernel.getMaxUserCode());
+			out.writeInt(kernel.getMinItemCode());
+			out.writeInt(kernel.getMaxItemCode());
+			out.writeDouble(kernel.getMinRating());
+			out.writeDouble(kernel.getMaxRating());
+			out.writeDouble(kernel.getRatingAverage());
+
+			if (dictionary != null) {
+				out.writeInt(dictionary.length);
+				for (double rating : dictionary) out.writeDouble(rating);
+			}
+
+			// Users
+			User [] users = kernel.getUsers();
+			int [] codes = new int [users.length];
+			int [] numRatings = new int [users.length];
+			int [] numTestRatings = new int [users.length];
+			int maxRatings = 0;
+			for (int u = 0; u < users.length; u++) {
+				codes[u] = users[u].getUserCode();
+				numRatings[u] = users[u].getNumberOfRatings();
+				if (users[u] instanceof TestUser) numTestRatings[u] = ((TestUser) users[u]).getNumberOfTestRatings();
+				maxRatings = Math.max(maxRatings, Math.max(numRatings[u], numTestRatings[u]));
+			}
+
+			out.writeInt(users.length);
+			KernelSnapshot.writeCodes(out, codes, codes.length, flags);
+			KernelSnapshot.writeCounts(out, numRatings, flags);
+			KernelSnapshot.writeCounts(out, numTestRatings, flags);
+
+			// The rows are read into buffers instead of allocating an array per row
+			int [] rowCodes = new int [maxRatings];
+			double [] rowRatings = new double [maxRatings];
+
+			for (User user : users) {
+				KernelSnapshot.writeCodes(out, rowCodes, user.getItems(rowCodes), flags);
+				KernelSnapshot.writeRatings(out, rowRatings, user.getRatings(rowRatings), dictionary);
+				if (user instanceof TestUser) {
+					TestUser testUser = (TestUser) user;
+					KernelSnapshot.writeCodes(out, rowCodes, testUser.getTestItems(rowCodes), flags);
+					KernelSnapshot.writeRatings(out, rowRatings, testUser.getTestRatings(rowRatings), dictionary);
+				}
+			}
+
+			// Items
+			Item [] items = kernel.getItems();
+			codes = new int [items.length];
+			numRatings = new int [items.length];
+			numTestRatings = new int [items.length];
+			maxRatings = 0;
+			for (int i = 0; i < items.length; i++) {
+				codes[i] = items[i].getItemCode();
+				numRatings[i] = items[i].getNumberOfRatings();
+				if (items[i] instanceof TestItem) numTestRatings[i] = ((TestItem) items[i]).getNumberOfTestRatings();
+				maxRatings = Math.max(maxRatings, Math.max(numRatings[i], numTestRatings[i]));
+			}
+
+			out.writeInt(items.length);
+			KernelSnapshot.writeCodes(out, codes, codes.length, flags);
+			KernelSnapshot.writeCounts(out, numRatings, flags);
+			KernelSnapshot.writeCounts(out, numTestRatings, flags);
+
+			rowCodes = new int [maxRatings];
+			rowRatings = new double [maxRatings];
+
+			for (Item item : items) {
+				KernelSnapshot.writeCodes(out, rowCodes, item.getUsers(rowCodes), flags);
+				KernelSnapshot.writeRatings(out, rowRatings, item.getRatings(rowRatings), dictionary);
+				if (item instanceof TestItem) {
+					TestItem testItem = (TestItem) item;
+					KernelSnapshot.writeCodes(out, rowCodes, testItem.getTestUsers(rowCodes), flags);
+					KernelSnapshot.writeRatings(out, rowRatings, testItem.getTestRatings(rowRatings), dictionary);
+				}
+			}
+
+			// Attributes
+			byte [] attributes = KernelSnapshot.serializeAttributes(kernel);
+			out.writeInt(attributes.length);
+			out.writeBytes(attributes);
+
+			out.flush();
+		}
+	}
+
+	/**
+	 * Restores a snapshot into a kernel
+	 * @param filename Snapshot file
+	 * @param kernel Empty kernel
+	 * @throws IOException If the file can not be read or it is not a valid snapshot
+	 */
+	static void read (String filename, Kernel kernel) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+			ChannelInput in = new ChannelInput(channel);
+
+			if (in.readInt() != MAGIC) throw new IOException("'" + filename + "' is not a kernel snapshot");
+			int version = in.readInt();
+			if (version < 1 || version > VERSION) throw new IOException("Unsupported kernel snapshot version: " + version);
+			int flags = (version >= 2) ? in.readInt() : 0;
+
+			int minUserCode = in.readInt();
+			int maxUserCode = in.readInt();
+			int minItemCode = in.readInt();
+			int maxItemCode = in.readInt();
+			double minRating = in.readDouble();
+			double maxRating = in.readDouble();
+			double ratingAverage = in.readDouble();
+
+			double [] dictionary = null;
+			if ((flags & DICTIONARY_RATINGS) != 0) dictionary = in.readDoubles(in.readInt());
+
+			// Users
+			int numUsers = in.readInt();
+			int [] codes = KernelSnapshot.readCodes(in, numUsers, flags);
+			int [] numRatings = KernelSnapshot.readCounts(in, numUsers, flags);
+			int [] numTestRatings = KernelSnapshot.readCounts(in, numUsers, flags);
+
+			User [] users = new User [numUsers];
+			int testUserIndex = 0;
+			for (int u = 0; u < numUsers; u++) {
+				int [] userItems = KernelSnapshot.readCodes(in, numRatings[u], flags);
+				double [] userRatings = KernelSnapshot.readRatings(in, numRatings[u], dictionary);
+				if (numTestRatings[u] == 0) {
+					users[u] = new User(codes[u], u, userItems, userRatings);
+				} else {
+					int [] testItems = KernelSnapshot.readCodes(in, numTestRatings[u], flags);
+					double [] testRatings = KernelSnapshot.readRatings(in, numTestRatings[u], dictionary);
+					users[u] = new TestUser(codes[u], u, userItems, userRatings, testUserIndex++, testItems, testRatings);
+				}
+			}
+
+			// Items
+			int numItems = in.readInt();
+			codes = KernelSnapshot.readCodes(in, numItems, flags);
+			numRatings = KernelSnapshot.readCounts(in, numItems, flags);
+			numTestRatings = KernelSnapshot.readCounts(in, numItems, flags);
+
+			Item [] items = new Item [numItems];
+			int testItemIndex = 0;
+			for (int i = 0; i < numItems; i++) {
+				int [] itemUsers = KernelSnapshot.readCodes(in, numRatings[i], flags);
+				double [] itemRatings = KernelSnapshot.readRatings(in, numRatings[i], dictionary);
+				if (numTestRatings[i] == 0) {
+					items[i] = new Item(codes[i], i, itemUsers, itemRatings);
+				} else {
+					int [] testUsers = KernelSnapshot.readCodes(in, numTestRatings[i], flags);
+					double [] testRatings = KernelSnapshot.readRatings(in, numTestRatings[i], dictionary);
+					items[i] = new TestItem(codes[i], i, itemUsers, itemRatings, testItemIndex++, testUsers, testRatings);
+				}
+			}
+
+			kernel.restore(users, items, minUserCode, maxUserCode, minItemCode, maxItemCode, minRating, maxRating, ratingAverage);
+
+			// Attributes
+			byte [] attributes = in.readBytes(in.readInt());
+			KernelSnapshot.deserializeAttributes(attributes, kernel, version);
+		}
+	}
+
+	/**
+	 * Collects the distinct ratings of the kernel
+	 * @param kernel Kernel
+	 * @return Distinct ratings sorted from low to high or null if there are too many
+	 */
+	private static double [] ratingsDictionary (Kernel kernel) {
+		long [] bits = new long [DICTIONARY_SIZE];
+		int size = 0;
+
+		// Training and test ratings of the users contain all the ratings of the items
+		for (int pass = 0; pass < 2; pass++) {
+			int n = (pass == 0) ? kernel.getNumberOfUsers() : kernel.getNumberOfTestUsers();
+			for (int u = 0; u < n; u++) {
+				User user = (pass == 0) ? kernel.getUsers()[u] : kernel.getTestUsers()[u];
+				int numRatings = (pass == 0) ? user.getNumberOfRatings() : ((TestUser) user).getNumberOfTestRatings();
+				for (int j = 0; j < numRatings; j++) {
+					double rating = (pass == 0) ? user.getRatingAt(j) : ((TestUser) user).getTestRatingAt(j);
+					long b = Double.doubleToRawLongBits(rating);
+					if (KernelSnapshot.indexOf(bits, size, b) == -1) {
+						if (size == DICTIONARY_SIZE) return null;
+						bits[size++] = b;
+					}
+				}
+			}
+		}
+
+		double [] dictionary = new double [size];
+		for (int d = 0; d < size; d++) dictionary[d] = Double.longBitsToDouble(bits[d]);
+		Arrays.sort(dictionary);
+		return dictionary;
+	}
+
+	/**
+	 * Finds a value in the first positions of an array
+	 * @param values Array
+	 * @param size Number of positions used
+	 * @param value Value to be found
+	 * @return Position of the value or -1
+	 */
+	private static int indexOf (long [] values, int size, long value) {
+		for (int i = 0; i < size; i++) {
+			if (values[i] == value) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes an array of codes sorted from low to high
+	 * @param out Output
+	 * @param codes Codes
+	 * @param length Number of codes to be written
+	 * @param flags Encoding flags
+	 * @throws IOException If the file can not be written
+	 */
+	private static void writeCodes (ChannelOutput out, int [] codes, int length, int flags) throws IOException {
+		if ((flags & VARINT_CODES) == 0) {
+			out.writeInts(codes, length);
+		} else {
+			int previous = 0;
+			for (int i = 0; i < length; i++) {
+				out.writeVarInt(codes[i] - previous);
+				previous = codes[i];
+			}
+		}
+	}
+
+	/**
+	 * Reads an array of codes
+	 * @param in Input
+	 * @param length Number of codes
+	 * @param flags Encoding flags
+	 * @return Codes
+	 * @throws IOException If the file can not be read
+	 */
+	private static int [] readCodes (ChannelInput in, int length, int flags) throws IOException {
+		if ((flags & VARINT_CODES) == 0) return in.readInts(length);
+
+		int [] codes = new int [length];
+		int previous = 0;
+		for (int i = 0; i < length; i++) {
+			previous += in.readVarInt();
+			codes[i] = previous;
+		}
+		return codes;
+	}
+
+	/**
+	 * Writes an array of counts
+	 * @param out Output
+	 * @param counts Counts
+	 * @param flags Encoding flags
+	 * @throws IOException If the file can not be written
+	 */
+	private static void writeCounts (ChannelOutput out, int [] counts, int flags) throws IOException {
+		if ((flags & VARINT_CODES) == 0) {
+			out.writeInts(counts);
+		} else {
+			for (int count : counts) out.writeVarInt(count);
+		}
+	}
+
+	/**
+	 * Reads an array of counts
+	 * @param in Input
+	 * @param length Number of counts
+	 * @param flags Encoding flags
+	 * @return Counts
+	 * @throws IOException If the file can not be read
+	 */
+	private static int [] readCounts (ChannelInput in, int length, int flags) throws IOException {
+		if ((flags & VARINT_CODES) == 0) return in.readInts(length);
+
+		int [] counts = new int [length];
+		for (int i = 0; i < length; i++) counts[i] = in.readVarInt();
+		return counts;
+	}
+
+	/**
+	 * Writes an array of ratings
+	 * @param out Output
+	 * @param ratings Ratings
+	 * @param length Number of ratings to be written
+	 * @param dictionary Ratings dictionary or null to write the ratings as doubles
+	 * @throws IOException If the file can not be written
+	 */
+	private static void writeRatings (ChannelOutput out, double [] ratings, int length, double [] dictionary) throws IOException {
+		if (dictionary == null) {
+			out.writeDoubles(ratings, length);
+		} else {
+			for (int i = 0; i < length; i++) out.writeByte(Arrays.binarySearch(dictionary, ratings[i]));
+		}
+	}
+
+	/**
+	 * Reads an array of ratings
+	 * @param in Input
+	 * @param length Number of ratings
+	 * @param dictionary Ratings dictionary or null if the ratings are written as doubles
+	 * @return Ratings
+	 * @throws IOException If the file can not be read
+	 */
+	private static double [] readRatings (ChannelInput in, int length, double [] dictionary) throws IOException {
+		if (dictionary == null) return in.readDoubles(length);
+
+		double [] ratings = new double [length];
+		for (int i = 0; i < length; i++) ratings[i] = dictionary[in.readByte()];
+		return ratings;
+	}
+
+	/**
+	 * Serializes the maps of the kernel, users and items that are not empty and the typed attributes
+	 * @param kernel Kernel
+	 * @return Serialized maps
+	 * @throws IOException If any value of the maps is not serializable
+	 */
+	private static byte [] serializeAttributes (Kernel kernel) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+
+		oos.writeObject(kernel.getMap());
+
+		User [] users = kernel.getUsers();
+		int numMaps = 0;
+		for (User user : users) if (!user.getMap().isEmpty()) numMaps++;
+		oos.writeInt(numMaps);
+		for (int u = 0; u < users.length; u++) {
+			if (!users[u].getMap().isEmpty()) {
+				oos.writeInt(u);
+				oos.writeObject(users[u].getMap());
+			}
+		}
+
+		Item [] items = kernel.getItems();
+		numMaps = 0;
+		for (Item item : items) if (!item.getMap().isEmpty()) numMaps++;
+		oos.writeInt(numMaps);
+		for (int i = 0; i < items.length; i++) {
+			if (!items[i].getMap().isEmpty()) {
+				oos.writeInt(i);
+				oos.writeObject(items[i].getMap());
+			}
+		}
+
+		oos.writeObject(kernel.getUsersAttributes());
+		oos.writeObject(kernel.getItemsAttributes());
+
+		oos.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Restores the maps of the kernel, users and items and the typed attributes
+	 * @param attributes Serialized maps
+	 * @param kernel Kernel
+	 * @param version Format version of the snapshot
+	 * @throws IOException If the maps can not be deserialized
+	 */
+	@SuppressWarnings("unchecked")
+	private static void deserializeAttributes (byte [] attributes, Kernel kernel, int version) throws IOException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+
+			kernel.getMap().putAll((Map <String, Object>) ois.readObject());
+
+			int numMaps = ois.readInt();
+			for (int m = 0; m < numMaps; m++) {
+				int userIndex = ois.readInt();
+				kernel.getUsers()[userIndex].getMap().putAll((Map <String, Object>) ois.readObject());
+			}
+
+			numMaps = ois.readInt();
+			for (int m = 0; m < numMaps; m++) {
+				int itemIndex = ois.readInt();
+				kernel.getItems()[itemIndex].getMap().putAll((Map <String, Object>) ois.readObject());
+			}
+
+			if (version >= 3) kernel.setAttributes((Attributes) ois.readObject(), (Attributes) ois.readObject());
+
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown class in kernel snapshot attributes", e);
+		}
+	}
+}
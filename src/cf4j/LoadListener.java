@@ -0,0 +1,58 @@
+package cf4j;
+
+/**
+ * <p>Receives the events of the dataset loading performed by Kernel.open(...). All methods do
+ * nothing by default, so implementations only override the events they need.</p>
+ *
+ * <p>Example to collect the time of each phase:</p>
+ * <pre>
+ * Kernel.gi().setLoadListener(new LoadListener() {
+ *     public void phaseFinished (LoadMetrics metrics) {
+ *         times.put(metrics.getPhase(), metrics.getSeconds());
+ *     }
+ * });
+ * </pre>
+ *
+ * @author Fernando Ortega
+ * @see ConsoleLoadListener
+ */
+public interface LoadListener {
+
+	/**
+	 * Called before the dataset is read
+	 * @param source File name of the dataset or "stream" if it is read from a stream
+	 */
+	default void loadStarted (String source) { }
+
+	/**
+	 * Called when a phase starts
+	 * @param phase Phase
+	 */
+	default void phaseStarted (LoadPhase phase) { }
+
+	/**
+	 * Called periodically while a phase processes the ratings
+	 * @param phase Phase
+	 * @param ratings Number of ratings processed
+	 */
+	default void progress (LoadPhase phase, long ratings) { }
+
+	/**
+	 * Called when a phase finishes
+	 * @param metrics Metrics of the phase
+	 */
+	default void phaseFinished (LoadMetrics metrics) { }
+
+	/**
+	 * Called after the users and items sets have been generated
+	 * @param source File name of the dataset or "stream" if it is read from a stream
+	 */
+	default void loadFinished (String source) { }
+
+	/**
+	 * Called when the dataset can not be loaded, before open(...) throws the error
+	 * @param source File name of the dataset or "stream" if it is read from a stream
+	 * @param error Error that stopped the loading
+	 */
+	default void loadFailed (String source, Exception error) { }
+}
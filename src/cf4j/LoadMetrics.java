@@ -0,0 +1,121 @@
+package cf4j;
+
+import java.util.Locale;
+
+/**
+ * Metrics of a phase of the dataset loading.
+ *
+ * @author Fernando Ortega
+ * @see LoadListener
+ */
+public class LoadMetrics {
+
+	/**
+	 * Phase
+	 */
+	private LoadPhase phase;
+
+	/**
+	 * Wall time in nanoseconds
+	 */
+	private long nanos;
+
+	/**
+	 * Number of ratings processed
+	 */
+	private long ratings;
+
+	/**
+	 * Bytes read from the dataset
+	 */
+	private long bytes;
+
+	/**
+	 * Difference of the used heap between the end and the beginning of the phase
+	 */
+	private long heapDelta;
+
+	/**
+	 * Creates the metrics of a phase
+	 * @param phase Phase
+	 * @param nanos Wall time in nanoseconds
+	 * @param ratings Number of ratings processed
+	 * @param bytes Bytes read from the dataset
+	 * @param heapDelta Difference of the used heap in bytes
+	 */
+	public LoadMetrics (LoadPhase phase, long nanos, long ratings, long bytes, long heapDelta) {
+		this.phase = phase;
+		this.nanos = nanos;
+		this.ratings = ratings;
+		this.bytes = bytes;
+		this.heapDelta = heapDelta;
+	}
+
+	/**
+	 * Returns the phase
+	 * @return Phase
+	 */
+	public LoadPhase getPhase () {
+		return this.phase;
+	}
+
+	/**
+	 * Returns the wall time of the phase
+	 * @return Time in nanoseconds
+	 */
+	public long getNanos () {
+		return this.nanos;
+	}
+
+	/**
+	 * Returns the wall time of the phase
+	 * @return Time in seconds
+	 */
+	public double getSeconds () {
+		return this.nanos / 1e9;
+	}
+
+	/**
+	 * Returns the number of ratings processed by the phase
+	 * @return Number of ratings
+	 */
+	public long getRatings () {
+		return this.ratings;
+	}
+
+	/**
+	 * Returns the throughput of the phase
+	 * @return Ratings processed per second
+	 */
+	public double getRatingsPerSecond () {
+		return this.ratings * 1e9 / Math.max(this.nanos, 1);
+	}
+
+	/**
+	 * Returns the bytes read from the dataset during the phase
+	 * @return Bytes read
+	 */
+	public long getBytes () {
+		return this.bytes;
+	}
+
+	/**
+	 * Returns the difference of the used heap between the end and the beginning of the phase. It
+	 * can be negative if the garbage collector runs during the phase.
+	 * @return Heap delta in bytes
+	 */
+	public long getHeapDelta () {
+		return this.heapDelta;
+	}
+
+	/**
+	 * Returns the metrics as key=value pairs
+	 * @return Metrics string
+	 */
+	@Override
+	public String toString () {
+		return String.format(Locale.ROOT, "phase=%s time=%.3fs ratings=%d ratings/s=%.0f bytes=%d heap=%+.1fMB",
+				this.phase.name().toLowerCase(Locale.ROOT), this.getSeconds(), this.ratings,
+				this.getRatingsPerSecond(), this.bytes, this.heapDelta / 1048576.0);
+	}
+}
@@ -0,0 +1,29 @@
+package cf4j;
+
+/**
+ * Phases of the dataset loading performed by Kernel.open(...).
+ *
+ * @author Fernando Ortega
+ */
+public enum LoadPhase {
+
+	/**
+	 * Reading and parsing the ratings of the dataset
+	 */
+	PARSE,
+
+	/**
+	 * Selection of the test users and test items
+	 */
+	SPLIT,
+
+	/**
+	 * Construction of the users and test users
+	 */
+	USERS,
+
+	/**
+	 * Construction of the items and test items
+	 */
+	ITEMS
+}
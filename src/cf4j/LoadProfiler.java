@@ -0,0 +1,78 @@
+package cf4j;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Measures the phases of the dataset loading and reports them to a load listener.</p>
+ *
+ * @author Fernando Ortega
+ */
+class LoadProfiler {
+
+	/**
+	 * Listener of the load
+	 */
+	private LoadListener listener;
+
+	/**
+	 * Current phase
+	 */
+	private LoadPhase phase;
+
+	/**
+	 * Start time of the current phase
+	 */
+	private long start;
+
+	/**
+	 * Used heap at the beginning of the current phase
+	 */
+	private long heap;
+
+	/**
+	 * Creates a profiler
+	 * @param listener Listener of the load
+	 */
+	LoadProfiler (LoadListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts a phase
+	 * @param phase Phase
+	 */
+	void start (LoadPhase phase) {
+		this.phase = phase;
+		this.listener.phaseStarted(phase);
+		this.heap = LoadProfiler.usedHeap();
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Reports the progress of the current phase
+	 * @param ratings Number of ratings processed
+	 */
+	void progress (long ratings) {
+		this.listener.progress(this.phase, ratings);
+	}
+
+	/**
+	 * Finishes the current phase
+	 * @param ratings Number of ratings processed
+	 * @param bytes Bytes read from the dataset
+	 */
+	void finish (long ratings, long bytes) {
+		long nanos = System.nanoTime() - this.start;
+		long heapDelta = LoadProfiler.usedHeap() - this.heap;
+		this.listener.phaseFinished(new LoadMetrics(this.phase, nanos, ratings, bytes, heapDelta));
+	}
+
+	/**
+	 * Returns the heap used by the JVM
+	 * @return Used heap in bytes
+	 */
+	private static long usedHeap () {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
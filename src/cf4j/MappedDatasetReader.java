@@ -0,0 +1,190 @@
+package cf4j;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import cf4j.utils.RatingTokenizer;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Reads a ratings text file in parallel. The file is divided into chunks aligned to the lines
+ * boundaries. Each chunk is memory mapped and parsed by a Processor thread into its own buffer.
+ * Finally, the buffers are merged into the ratings builder in the order of the file.</p>
+ *
+ * <p>The separator is matched literally. Empty lines are ignored.</p>
+ *
+ * @author Fernando Ortega
+ */
+class MappedDatasetReader implements Partible {
+
+	/**
+	 * Minimum size of a chunk. Smaller files are not divided.
+	 */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Maximum size of a chunk (a mapped buffer can not exceed 2GB)
+	 */
+	private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * Channel of the file
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Separator between file fields
+	 */
+	private String separator;
+
+	/**
+	 * Offset of the first byte of each chunk (and the file size at the end)
+	 */
+	private long [] bounds;
+
+	/**
+	 * Ratings parsed from each chunk
+	 */
+	private RatingsBuffer [] buffers;
+
+	/**
+	 * Errors raised while parsing each chunk
+	 */
+	private Exception [] errors;
+
+	/**
+	 * Reads a ratings file into a builder
+	 * @param filename File with the ratings
+	 * @param separator Separator between file fields
+	 * @param ratings Builder where the ratings are collected
+	 * @throws Exception If the file can not be read or parsed
+	 */
+	static void read (String filename, String separator, RatingsBuilder ratings) throws Exception {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			MappedDatasetReader reader = new MappedDatasetReader(file.getChannel(), separator);
+			reader.parse();
+			reader.merge(ratings);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Creates the reader computing the chunks of the file
+	 * @param channel File channel
+	 * @param separator Separator between file fields
+	 * @throws IOException If the file can not be read
+	 */
+	private MappedDatasetReader (FileChannel channel, String separator) throws IOException {
+		this.channel = channel;
+		this.separator = separator;
+
+		long size = channel.size();
+		int numChunks = (int) Math.min(Processor.getInstance().getThreads(), Math.max(1, size / MIN_CHUNK_SIZE));
+		numChunks = (int) Math.max(numChunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+		this.bounds = new long [numChunks + 1];
+		this.bounds[numChunks] = size;
+		for (int c = 1; c < numChunks; c++) {
+			this.bounds[c] = Math.max(this.bounds[c - 1], this.nextLine(size * c / numChunks));
+		}
+
+		this.buffers = new RatingsBuffer [numChunks];
+		this.errors = new Exception [numChunks];
+	}
+
+	/**
+	 * Parses all the chunks using the Processor threads
+	 * @throws Exception The first error found while parsing
+	 */
+	private void parse () throws Exception {
+		Processor.getInstance().process(this, this.buffers.length, false);
+		for (Exception e : this.errors) {
+			if (e != null) throw e;
+		}
+	}
+
+	/**
+	 * Merges the chunks buffers into the builder keeping the order of the file
+	 * @param ratings Builder where the ratings are collected
+	 */
+	private void merge (RatingsBuilder ratings) {
+		for (RatingsBuffer buffer : this.buffers) buffer.countInto(ratings);
+		ratings.allocate();
+		for (int c = 0; c < this.buffers.length; c++) {
+			this.buffers[c].addInto(ratings);
+			this.buffers[c] = null;
+		}
+		ratings.finish();
+	}
+
+	/**
+	 * Finds the beginning of the line that follows the given position
+	 * @param position Position in the file
+	 * @return Offset of the first byte after the next line break or the file size
+	 * @throws IOException If the file can not be read
+	 */
+	private long nextLine (long position) throws IOException {
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		long offset = Math.max(0, position - 1);
+		while (true) {
+			window.clear();
+			int read = this.channel.read(window, offset);
+			if (read <= 0) return this.channel.size();
+			for (int i = 0; i < read; i++) {
+				if (window.get(i) == '\n') return offset + i + 1;
+			}
+			offset += read;
+		}
+	}
+
+	@Override
+	public void beforeRun () { }
+
+	@Override
+	public void run (int chunk) {
+		try {
+			long from = this.bounds[chunk];
+			long to = this.bounds[chunk + 1];
+			MappedByteBuffer buf = this.channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+
+			RatingsBuffer ratings = new RatingsBuffer((int) ((to - from) / 16));
+			this.parseChunk(buf, ratings);
+			this.buffers[chunk] = ratings;
+
+		} catch (Exception e) {
+			this.errors[chunk] = e;
+		}
+	}
+
+	@Override
+	public void afterRun () { }
+
+	/**
+	 * Parses the lines of a chunk
+	 * @param buf Chunk bytes
+	 * @param ratings Buffer where the ratings are stored
+	 */
+	private void parseChunk (ByteBuffer buf, RatingsBuffer ratings) {
+		RatingTokenizer tokenizer = new RatingTokenizer(this.separator);
+
+		int end = buf.limit();
+		int pos = 0;
+
+		while (pos < end) {
+			int lineEnd = pos;
+			while (lineEnd < end && buf.get(lineEnd) != '\n') lineEnd++;
+
+			if (tokenizer.parse(buf, pos, lineEnd)) {
+				ratings.add(tokenizer.getUserCode(), tokenizer.getItemCode(), tokenizer.getRating());
+			}
+
+			pos = lineEnd + 1;
+		}
+	}
+}
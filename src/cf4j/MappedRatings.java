@@ -0,0 +1,538 @@
+package cf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Ratings of a binary dataset kept in a memory mapped store file instead of the Java heap. The store
+ * contains the ratings grouped by user and grouped by item, so users and items can read their ratings
+ * directly from the mapped file. Only the codes and the offsets of the rows are held in the heap.</p>
+ *
+ * <p>The store file is created next to the binary dataset (with the extension ".store") the first time
+ * the dataset is opened and it is reused while the dataset is not modified. Since the file is mapped
+ * read only, several JVMs using the same dataset share the operating system page cache.</p>
+ *
+ * <p>The store file contains:</p>
+ * <ol>
+ * 		<li>Header: magic number, format version, number of users, number of items, number of ratings,
+ * 		minimum rating and maximum rating.</li>
+ * 		<li>Users codes and items codes sorted from low to high.</li>
+ * 		<li>Offsets of the rows of the users and offsets of the rows of the items.</li>
+ * 		<li>Items codes of each user and users codes of each item.</li>
+ * 		<li>Ratings of each user and ratings of each item.</li>
+ * </ol>
+ *
+ * @author Fernando Ortega
+ */
+class MappedRatings implements RatingsSource {
+
+	/**
+	 * Magic number: "CF4M" in ASCII
+	 */
+	static final int MAGIC = 0x4346344D;
+
+	/**
+	 * Format version
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	private static final int HEADER_SIZE = 40;
+
+	/**
+	 * Elements of each mapped segment (a mapped buffer can not exceed 2GB)
+	 */
+	private static final int SEGMENT_SHIFT = 27;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	/**
+	 * Users codes
+	 */
+	private int [] userCodes;
+
+	/**
+	 * Items codes
+	 */
+	private int [] itemCodes;
+
+	/**
+	 * Number of ratings
+	 */
+	private long numRatings;
+
+	/**
+	 * Minimum rating
+	 */
+	private double minRating;
+
+	/**
+	 * Maximum rating
+	 */
+	private double maxRating;
+
+	/**
+	 * Ratings of the users
+	 */
+	private MappedStore users;
+
+	/**
+	 * Ratings of the items
+	 */
+	private MappedStore items;
+
+	/**
+	 * Maps the store of a binary dataset. The store is created if it does not exist or if it is older
+	 * than the dataset.
+	 * @param filename Binary dataset
+	 * @return Mapped ratings
+	 * @throws IOException If the dataset is not a binary dataset or the store can not be created
+	 */
+	static MappedRatings open (String filename) throws IOException {
+		if (!BinaryDataset.isBinaryDataset(filename)) {
+			throw new IOException("'" + filename + "' is not a binary dataset. Use BinaryDataset.convert(...) to create it");
+		}
+
+		File dataset = new File(filename);
+		File store = new File(filename + ".store");
+
+		if (!store.exists() || store.lastModified() < dataset.lastModified() || !MappedRatings.isStore(store)) {
+			MappedRatings.create(dataset, store);
+		}
+
+		return new MappedRatings(store);
+	}
+
+	/**
+	 * Maps a store file
+	 * @param store Store file
+	 * @throws IOException If the file can not be mapped
+	 */
+	private MappedRatings (File store) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(store, "r")) {
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer header = MappedRatings.readHeader(channel);
+			header.getInt();
+			header.getInt();
+			int numUsers = header.getInt();
+			int numItems = header.getInt();
+			long numRatings = header.getLong();
+			this.numRatings = numRatings;
+			this.minRating = header.getDouble();
+			this.maxRating = header.getDouble();
+
+			long position = HEADER_SIZE;
+			this.userCodes = MappedRatings.toArray(MappedRatings.mapInts(channel, MapMode.READ_ONLY, position, numUsers), numUsers);
+			position += 4L * numUsers;
+			this.itemCodes = MappedRatings.toArray(MappedRatings.mapInts(channel, MapMode.READ_ONLY, position, numItems), numItems);
+			position += 4L * numItems;
+
+			long [] userOffsets = MappedRatings.toArray(MappedRatings.mapLongs(channel, MapMode.READ_ONLY, position, numUsers + 1), numUsers + 1);
+			position += 8L * (numUsers + 1);
+			long [] itemOffsets = MappedRatings.toArray(MappedRatings.mapLongs(channel, MapMode.READ_ONLY, position, numItems + 1), numItems + 1);
+			position += 8L * (numItems + 1);
+
+			IntBuffer [] usersItems = MappedRatings.mapInts(channel, MapMode.READ_ONLY, position, numRatings);
+			position += 4L * numRatings;
+			IntBuffer [] itemsUsers = MappedRatings.mapInts(channel, MapMode.READ_ONLY, position, numRatings);
+			position += 4L * numRatings;
+			DoubleBuffer [] usersRatings = MappedRatings.mapDoubles(channel, MapMode.READ_ONLY, position, numRatings);
+			position += 8L * numRatings;
+			DoubleBuffer [] itemsRatings = MappedRatings.mapDoubles(channel, MapMode.READ_ONLY, position, numRatings);
+
+			this.users = new MappedStore(userOffsets, usersItems, usersRatings);
+			this.items = new MappedStore(itemOffsets, itemsUsers, itemsRatings);
+		}
+	}
+
+	/**
+	 * Checks if a file is a valid store
+	 * @param store Store file
+	 * @return True if the file has the magic number and the version of the stores
+	 */
+	private static boolean isStore (File store) {
+		try (RandomAccessFile file = new RandomAccessFile(store, "r")) {
+			if (file.length() < HEADER_SIZE) return false;
+			ByteBuffer header = MappedRatings.readHeader(file.getChannel());
+			return header.getInt() == MAGIC && header.getInt() == VERSION;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the store of a binary dataset. The store is written into a temporary file that is
+	 * renamed at the end, so other JVMs never map an incomplete store.
+	 * @param dataset Binary dataset
+	 * @param store Store file
+	 * @throws IOException If the dataset can not be read or the store can not be written
+	 */
+	private static void create (File dataset, File store) throws IOException {
+		File tmp = File.createTempFile(store.getName(), ".tmp", store.getAbsoluteFile().getParentFile());
+
+		try (RandomAccessFile in = new RandomAccessFile(dataset, "r"); RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+
+			// Binary dataset columns (see BinaryDataset)
+			FileChannel source = in.getChannel();
+			ByteBuffer header = MappedRatings.readHeader(source);
+			header.getInt();
+			int version = header.getInt();
+			if (version != BinaryDataset.VERSION) throw new IOException("Unsupported binary dataset version: " + version);
+
+			int numUsers = header.getInt();
+			int numItems = header.getInt();
+			long numRatings = header.getLong();
+
+			long position = BinaryDataset.HEADER_SIZE;
+			int [] userCodes = MappedRatings.toArray(MappedRatings.mapInts(source, MapMode.READ_ONLY, position, numUsers), numUsers);
+			position += 4L * numUsers;
+			int [] itemCodes = MappedRatings.toArray(MappedRatings.mapInts(source, MapMode.READ_ONLY, position, numItems), numItems);
+			position += 4L * numItems;
+			IntBuffer [] usersColumn = MappedRatings.mapInts(source, MapMode.READ_ONLY, position, numRatings);
+			position += 4L * numRatings;
+			IntBuffer [] itemsColumn = MappedRatings.mapInts(source, MapMode.READ_ONLY, position, numRatings);
+			position += 4L * numRatings;
+			DoubleBuffer [] ratingsColumn = MappedRatings.mapDoubles(source, MapMode.READ_ONLY, position, numRatings);
+
+			// Offsets of the rows
+			long [] userOffsets = new long [numUsers + 1];
+			long [] itemOffsets = new long [numItems + 1];
+			for (long r = 0; r < numRatings; r++) {
+				userOffsets[MappedRatings.get(usersColumn, r) + 1]++;
+				itemOffsets[MappedRatings.get(itemsColumn, r) + 1]++;
+			}
+			for (int u = 0; u < numUsers; u++) userOffsets[u + 1] += userOffsets[u];
+			for (int i = 0; i < numItems; i++) itemOffsets[i + 1] += itemOffsets[i];
+
+			// Store layout
+			FileChannel channel = out.getChannel();
+			position = 0;
+			header.rewind();
+			header.putInt(MAGIC).putInt(VERSION);
+			header.rewind();
+			while (header.hasRemaining()) channel.write(header, position + header.position());
+			position += HEADER_SIZE;
+
+			MappedRatings.put(MappedRatings.mapInts(channel, MapMode.READ_WRITE, position, numUsers), userCodes);
+			position += 4L * numUsers;
+			MappedRatings.put(MappedRatings.mapInts(channel, MapMode.READ_WRITE, position, numItems), itemCodes);
+			position += 4L * numItems;
+			MappedRatings.put(MappedRatings.mapLongs(channel, MapMode.READ_WRITE, position, numUsers + 1), userOffsets);
+			position += 8L * (numUsers + 1);
+			MappedRatings.put(MappedRatings.mapLongs(channel, MapMode.READ_WRITE, position, numItems + 1), itemOffsets);
+			position += 8L * (numItems + 1);
+
+			IntBuffer [] usersItems = MappedRatings.mapInts(channel, MapMode.READ_WRITE, position, numRatings);
+			position += 4L * numRatings;
+			IntBuffer [] itemsUsers = MappedRatings.mapInts(channel, MapMode.READ_WRITE, position, numRatings);
+			position += 4L * numRatings;
+			DoubleBuffer [] usersRatings = MappedRatings.mapDoubles(channel, MapMode.READ_WRITE, position, numRatings);
+			position += 8L * numRatings;
+			DoubleBuffer [] itemsRatings = MappedRatings.mapDoubles(channel, MapMode.READ_WRITE, position, numRatings);
+
+			// Ratings of the binary dataset are sorted by user and item, so the rows of the users are
+			// copied as they are and the users of each item are appended sorted by code
+			long [] cursors = Arrays.copyOf(itemOffsets, numItems);
+			for (long r = 0; r < numRatings; r++) {
+				int userIndex = MappedRatings.get(usersColumn, r);
+				int itemIndex = MappedRatings.get(itemsColumn, r);
+				double rating = MappedRatings.get(ratingsColumn, r);
+
+				MappedRatings.put(usersItems, r, itemCodes[itemIndex]);
+				MappedRatings.put(usersRatings, r, rating);
+
+				long c = cursors[itemIndex]++;
+				MappedRatings.put(itemsUsers, c, userCodes[userIndex]);
+				MappedRatings.put(itemsRatings, c, rating);
+			}
+
+			channel.force(true);
+
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+
+		try {
+			Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Override
+	public int [] getUserCodes () {
+		return this.userCodes;
+	}
+
+	@Override
+	public int [] getItemCodes () {
+		return this.itemCodes;
+	}
+
+	@Override
+	public int getUserIndex (int userCode) {
+		int index = Arrays.binarySearch(this.userCodes, userCode);
+		return (index < 0) ? -1 : index;
+	}
+
+	@Override
+	public int getItemIndex (int itemCode) {
+		int index = Arrays.binarySearch(this.itemCodes, itemCode);
+		return (index < 0) ? -1 : index;
+	}
+
+	@Override
+	public int [] getUserItems (int userIndex) {
+		return this.users.getCodes(userIndex);
+	}
+
+	@Override
+	public double [] getUserRatings (int userIndex) {
+		return this.users.getRatings(userIndex);
+	}
+
+	@Override
+	public int [] getItemUsers (int itemIndex) {
+		return this.items.getCodes(itemIndex);
+	}
+
+	@Override
+	public double [] getItemRatings (int itemIndex) {
+		return this.items.getRatings(itemIndex);
+	}
+
+	@Override
+	public int getNumberOfUserRatings (int userIndex) {
+		return this.users.size(userIndex);
+	}
+
+	@Override
+	public int getNumberOfItemRatings (int itemIndex) {
+		return this.items.size(itemIndex);
+	}
+
+	@Override
+	public long getNumberOfRatings () {
+		return this.numRatings;
+	}
+
+	@Override
+	public double getMinRating () {
+		return this.minRating;
+	}
+
+	@Override
+	public double getMaxRating () {
+		return this.maxRating;
+	}
+
+	@Override
+	public RatingsStore getUsersStore () {
+		return this.users;
+	}
+
+	@Override
+	public RatingsStore getItemsStore () {
+		return this.items;
+	}
+
+	/**
+	 * Reads the header of a binary dataset or a store
+	 * @param channel File channel
+	 * @return Header bytes
+	 * @throws IOException If the file can not be read
+	 */
+	private static ByteBuffer readHeader (FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) == -1) throw new IOException("Unexpected end of file");
+		}
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Maps a region of ints in segments
+	 * @param channel File channel
+	 * @param mode Map mode
+	 * @param position Position of the region in the file
+	 * @param length Number of ints
+	 * @return Segments of the region
+	 * @throws IOException If the region can not be mapped
+	 */
+	private static IntBuffer [] mapInts (FileChannel channel, MapMode mode, long position, long length) throws IOException {
+		IntBuffer [] segments = new IntBuffer [MappedRatings.numSegments(length)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = MappedRatings.map(channel, mode, position, length, s, 4).asIntBuffer();
+		}
+		return segments;
+	}
+
+	/**
+	 * Maps a region of longs in segments
+	 * @param channel File channel
+	 * @param mode Map mode
+	 * @param position Position of the region in the file
+	 * @param length Number of longs
+	 * @return Segments of the region
+	 * @throws IOException If the region can not be mapped
+	 */
+	private static LongBuffer [] mapLongs (FileChannel channel, MapMode mode, long position, long length) throws IOException {
+		LongBuffer [] segments = new LongBuffer [MappedRatings.numSegments(length)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = MappedRatings.map(channel, mode, position, length, s, 8).asLongBuffer();
+		}
+		return segments;
+	}
+
+	/**
+	 * Maps a region of doubles in segments
+	 * @param channel File channel
+	 * @param mode Map mode
+	 * @param position Position of the region in the file
+	 * @param length Number of doubles
+	 * @return Segments of the region
+	 * @throws IOException If the region can not be mapped
+	 */
+	private static DoubleBuffer [] mapDoubles (FileChannel channel, MapMode mode, long position, long length) throws IOException {
+		DoubleBuffer [] segments = new DoubleBuffer [MappedRatings.numSegments(length)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = MappedRatings.map(channel, mode, position, length, s, 8).asDoubleBuffer();
+		}
+		return segments;
+	}
+
+	/**
+	 * Computes the number of segments of a region
+	 * @param length Number of elements of the region
+	 * @return Number of segments
+	 */
+	private static int numSegments (long length) {
+		return (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Maps a segment of a region
+	 * @param channel File channel
+	 * @param mode Map mode
+	 * @param position Position of the region in the file
+	 * @param length Number of elements of the region
+	 * @param segment Segment index
+	 * @param bytes Bytes of each element
+	 * @return Mapped segment
+	 * @throws IOException If the segment can not be mapped
+	 */
+	private static MappedByteBuffer map (FileChannel channel, MapMode mode, long position, long length, int segment, int bytes) throws IOException {
+		long from = (long) segment << SEGMENT_SHIFT;
+		long size = Math.min(SEGMENT_MASK + 1, length - from);
+		return channel.map(mode, position + from * bytes, size * bytes);
+	}
+
+	private static int get (IntBuffer [] segments, long i) {
+		return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+	}
+
+	private static double get (DoubleBuffer [] segments, long i) {
+		return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+	}
+
+	private static void put (IntBuffer [] segments, long i, int value) {
+		segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+	}
+
+	private static void put (DoubleBuffer [] segments, long i, double value) {
+		segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+	}
+
+	private static void put (IntBuffer [] segments, int [] values) {
+		for (int s = 0; s < segments.length; s++) {
+			segments[s].put(values, s << SEGMENT_SHIFT, segments[s].remaining());
+		}
+	}
+
+	private static void put (LongBuffer [] segments, long [] values) {
+		for (int s = 0; s < segments.length; s++) {
+			segments[s].put(values, s << SEGMENT_SHIFT, segments[s].remaining());
+		}
+	}
+
+	private static int [] toArray (IntBuffer [] segments, int length) {
+		int [] values = new int [length];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s].get(values, s << SEGMENT_SHIFT, segments[s].remaining());
+		}
+		return values;
+	}
+
+	private static long [] toArray (LongBuffer [] segments, int length) {
+		long [] values = new long [length];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s].get(values, s << SEGMENT_SHIFT, segments[s].remaining());
+		}
+		return values;
+	}
+
+	/**
+	 * Rows stored in mapped segments. Reads use absolute positions, so they are thread safe.
+	 */
+	private static class MappedStore extends RatingsStore {
+
+		/**
+		 * Offset of the first rating of each row (and the number of ratings at the end)
+		 */
+		private long [] offsets;
+
+		/**
+		 * Codes of the rows
+		 */
+		private IntBuffer [] codes;
+
+		/**
+		 * Ratings of the rows
+		 */
+		private DoubleBuffer [] ratings;
+
+		MappedStore (long [] offsets, IntBuffer [] codes, DoubleBuffer [] ratings) {
+			this.offsets = offsets;
+			this.codes = codes;
+			this.ratings = ratings;
+		}
+
+		@Override
+		boolean isMapped () {
+			return true;
+		}
+
+		@Override
+		int size (int row) {
+			return (int) (this.offsets[row + 1] - this.offsets[row]);
+		}
+
+		@Override
+		int getCode (int row, int pos) {
+			return MappedRatings.get(this.codes, this.offsets[row] + pos);
+		}
+
+		@Override
+		double getRating (int row, int pos) {
+			return MappedRatings.get(this.ratings, this.offsets[row] + pos);
+		}
+	}
+}
@@ -11,6 +11,9 @@ package cf4j;
  * 		used to close resources.</li>
  * </ol>
  * 
+ * <p>The methods are executed with the kernel of the Processor bound to the thread, so
+ * Kernel.getInstance() returns the processed kernel.</p>
+ * 
  * @see TestUsersPartible
  * @see TestItemsPartible
  * 
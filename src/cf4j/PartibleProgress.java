@@ -0,0 +1,77 @@
+package cf4j;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Prints the progress of a verbose execution of a Partible. The indexes of each thread or task are
+ * run in blocks and every finished block is reported, so the progress is the same for every kind of
+ * Partible and every ExecutionMode: a dot each 5 seconds and the percentage of processed indexes
+ * after 20 dots.</p>
+ *
+ * @author Fernando Ortega
+ */
+class PartibleProgress {
+
+	/**
+	 * Number of blocks into which the indexes are split
+	 */
+	private static final int NUM_BLOCKS = 1000;
+
+	private final int numIndexes;
+
+	private final int blockSize;
+
+	private final AtomicInteger processed = new AtomicInteger();
+
+	private long t1 = (new Date()).getTime() / 1000;
+
+	private int dots = 0;
+
+	/**
+	 * Creates the progress of an execution
+	 * @param numIndexes Number of indexes to be processed
+	 */
+	PartibleProgress (int numIndexes) {
+		this.numIndexes = numIndexes;
+		this.blockSize = Math.max(1, numIndexes / NUM_BLOCKS);
+	}
+
+	/**
+	 * Runs a range of indexes of a Partible in blocks, reporting each finished block
+	 * @param partible Partible
+	 * @param states States of the threads if the Partible is a ReduciblePartible or null
+	 * @param from First index
+	 * @param to Index after the last index
+	 */
+	void run (Partible partible, PartibleStates <?> states, int from, int to) {
+		for (int block = from; block < to; block += this.blockSize) {
+			int end = Math.min(block + this.blockSize, to);
+			PartibleThreads.run(partible, states, block, end);
+			this.done(end - block);
+		}
+	}
+
+	/**
+	 * Reports processed indexes
+	 * @param count Number of indexes processed
+	 */
+	private void done (int count) {
+		long processed = this.processed.addAndGet(count);
+
+		synchronized (this) {
+			long t2 = (new Date()).getTime() / 1000;
+			if ((t2 - this.t1) > 5) {
+				System.out.print(".");
+				this.t1 = t2;
+				this.dots++;
+			}
+			if (this.dots > 20) {
+				System.out.println((processed * 100 / this.numIndexes) + "%");
+				this.dots = 0;
+			}
+		}
+	}
+}
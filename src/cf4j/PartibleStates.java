@@ -0,0 +1,50 @@
+package cf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>States of the threads of an execution of a ReduciblePartible. Each thread creates its state the
+ * first time that it runs a range of indexes and reuses it for the next ranges.</p>
+ *
+ * @param <S> Type of the state of a thread
+ * @author Fernando Ortega
+ */
+class PartibleStates <S> {
+
+	private final ReduciblePartible <S> partible;
+
+	private final ConcurrentHashMap <Thread, S> states = new ConcurrentHashMap <Thread, S> ();
+
+	/**
+	 * Creates the states of an execution
+	 * @param partible Partible
+	 * @return States without any state
+	 */
+	static <S> PartibleStates <S> of (ReduciblePartible <S> partible) {
+		return new PartibleStates <S> (partible);
+	}
+
+	private PartibleStates (ReduciblePartible <S> partible) {
+		this.partible = partible;
+	}
+
+	/**
+	 * Runs a range of indexes with the state of the current thread
+	 * @param from First index
+	 * @param to Index after the last index
+	 */
+	void run (int from, int to) {
+		S state = this.states.computeIfAbsent(Thread.currentThread(), thread -> this.partible.createState());
+		this.partible.run(from, to, state);
+	}
+
+	/**
+	 * Reduces all the states
+	 */
+	void reduce () {
+		for (S state : this.states.values()) this.partible.reduce(state);
+		this.states.clear();
+	}
+}
@@ -0,0 +1,100 @@
+package cf4j;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Executes a Partible with work stealing (see ExecutionMode.WORK_STEALING). Each task runs a range of
+ * indexes. Before running its range, a task splits it in halves, forking the right halves, while the
+ * range is larger than the minimum chunk and the thread does not have enough queued tasks to feed the
+ * idle threads. This way, chunks are large when all threads are busy and small when some of them
+ * are waiting.</p>
+ *
+ * @author Fernando Ortega
+ */
+class PartibleTasks extends RecursiveAction {
+
+	private static final long serialVersionUID = 20171018L;
+
+	/**
+	 * Queued tasks of a thread that are enough to feed the idle threads
+	 */
+	private static final int MAX_SURPLUS = 2;
+
+	/**
+	 * Number of chunks per thread of the minimum chunk size
+	 */
+	private static final int CHUNKS_PER_THREAD = 64;
+
+	private final Partible partible;
+	private final PartibleStates <?> states;
+	private final PartibleProgress progress;
+	private final Kernel kernel;
+	private final int grain;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Next forked task of the same parent
+	 */
+	private PartibleTasks next;
+
+	/**
+	 * Runs a Partible over all its indexes
+	 * @param partible Partible
+	 * @param states States of the threads if the Partible is a ReduciblePartible or null
+	 * @param progress Progress of a verbose execution or null
+	 * @param kernel Kernel bound to the threads
+	 * @param pool Pool that executes the tasks
+	 * @param numIndexes Number of indexes to be processed (from 0 to numIndexes - 1)
+	 */
+	static void run (Partible partible, PartibleStates <?> states, PartibleProgress progress, Kernel kernel, ForkJoinPool pool,
+			int numIndexes) {
+		int grain = Math.max(1, numIndexes / (pool.getParallelism() * CHUNKS_PER_THREAD));
+		pool.invoke(new PartibleTasks(partible, states, progress, kernel, grain, 0, numIndexes));
+	}
+
+	private PartibleTasks (Partible partible, PartibleStates <?> states, PartibleProgress progress, Kernel kernel, int grain,
+			int from, int to) {
+		this.partible = partible;
+		this.states = states;
+		this.progress = progress;
+		this.kernel = kernel;
+		this.grain = grain;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute () {
+		Kernel previous = Kernel.bind(this.kernel);
+		try {
+			int to = this.to;
+
+			PartibleTasks forked = null;
+			while (to - this.from > this.grain && RecursiveAction.getSurplusQueuedTaskCount() <= MAX_SURPLUS) {
+				int middle = (this.from + to) >>> 1;
+				PartibleTasks right = new PartibleTasks(this.partible, this.states, this.progress, this.kernel, this.grain, middle, to);
+				right.next = forked;
+				forked = right;
+				right.fork();
+				to = middle;
+			}
+
+			PartibleThreads.run(this.partible, this.states, this.progress, this.from, to);
+
+			// Run the forked tasks that have not been stolen and wait for the others
+			for (; forked != null; forked = forked.next) {
+				if (forked.tryUnfork()) {
+					forked.compute();
+				} else {
+					forked.join();
+				}
+			}
+		} finally {
+			Kernel.bind(previous);
+		}
+	}
+}
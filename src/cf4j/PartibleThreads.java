@@ -1,128 +1,233 @@
 package cf4j;
 
-import java.util.Date;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntUnaryOperator;
 
 /**
  * <p><b>The final user must not use this class.</b></p>
- * 
- * <p>This class handles the threads. It assigns each thread between the 
- * available processor.</p> 
- *  
+ *
+ * <p>This class handles the threads. It assigns each thread between the
+ * available processor.</p>
+ *
+ * <p>Each execution has its own state, so several executions (of different kernels,
+ * for example) can run at the same time. The kernel of the execution is bound to the
+ * threads while they run it (see Kernel.bind(...)).</p>
+ *
+ * <p>The threads are the workers of a pool. The Processor keeps its pool between
+ * executions, so the threads are not created again for each Partible. The static
+ * runThreads(...) methods that receive the number of threads run the Partible with a new
+ * Processor whose threads are stopped when the execution ends.</p>
+ *
  * @author Fernando Ortega
  */
 public class PartibleThreads implements Runnable {
 
-	private static Partible render;
-	private static int numThreads;
-	private static int numIndexes;
-	private static int indexesPerThread;
+	private Partible render;
+	private PartibleStates <?> states;
+	private Kernel kernel;
+	private int from;
+	private int to;
+	private PartibleProgress progress;
 
-	private Thread t;
-	private int threadIndex;
-	private boolean verbose;
+	/* (non-Javadoc)
+     */
+	public static void runThreads (Partible partible, int numThreads, int numIndexes, boolean verbose) {
+		PartibleThreads.runThreads(partible, Kernel.getInstance(), numThreads, numIndexes, verbose);
+	}
+
+	/* (non-Javadoc)
+     */
+	public static void runThreads (Partible partible, Kernel kernel, int numThreads, int numIndexes, boolean verbose) {
+		PartibleThreads.runThreads(partible, kernel, ExecutionMode.BLOCKS, numThreads, numIndexes, verbose);
+	}
 
 	/* (non-Javadoc)
      */
-	public static synchronized void runThreads (Partible partible, int numThreads, int numIndexes, boolean verbose) {
+	public static void runThreads (Partible partible, Kernel kernel, ExecutionMode mode, int numThreads, int numIndexes, boolean verbose) {
+		Processor processor = new Processor(kernel, numThreads);
+		processor.setExecutionMode(mode);
+		try {
+			processor.process(partible, numIndexes, verbose);
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	/**
+	 * Runs a Partible using the threads of a pool
+	 * @param partible Partible
+	 * @param kernel Kernel bound to the threads
+	 * @param mode Distribution of the indexes between the threads
+	 * @param pool Pool whose parallelism is the number of threads
+	 * @param numIndexes Number of indexes to be processed (from 0 to numIndexes - 1)
+	 * @param cost Cost of each index used by BALANCED_BLOCKS or null if it is unknown
+	 * @param verbose Print execution info
+	 */
+	static void runThreads (Partible partible, Kernel kernel, ExecutionMode mode, ForkJoinPool pool, int numIndexes,
+			IntUnaryOperator cost, boolean verbose) {
 		if (verbose) System.out.println("\nProcessing... " + partible.getClass().getName());
-		
+
 		if (numIndexes < 1)
 			throw new RuntimeException("Test array can not be empty");
-		
-		if (numThreads <= 0)
-			throw new RuntimeException("The number of threads must be one or more");
-		
-		PartibleThreads.render = partible;
-		PartibleThreads.numThreads = numThreads;
-		PartibleThreads.numIndexes = numIndexes;
-
-		if (numThreads == 1) {
-			PartibleThreads.indexesPerThread = PartibleThreads.numIndexes;
-			partible.beforeRun();
-			for (int index = 0; (index < numIndexes); index++) {
-				partible.run(index);
-			}
-			partible.afterRun();
-			
-		} else {
-			// We compute number of indexes per thread
-			if (numThreads > numIndexes) {
-				PartibleThreads.numThreads = numIndexes;
-				PartibleThreads.indexesPerThread = 1;
-			} else if (numIndexes % numThreads == 0) {
-				PartibleThreads.indexesPerThread = numIndexes / numThreads;
+
+		PartibleProgress progress = verbose ? new PartibleProgress(numIndexes) : null;
+
+		int numThreads = pool.getParallelism();
+
+		// States of the threads of reducible partibles
+		PartibleStates <?> states = (partible instanceof ReduciblePartible)
+				? PartibleStates.of((ReduciblePartible <?>) partible)
+				: null;
+
+		Kernel previous = Kernel.bind(kernel);
+		try {
+			if (numThreads == 1) {
+				partible.beforeRun();
+				PartibleThreads.run(partible, states, progress, 0, numIndexes);
+				if (states != null) states.reduce();
+				partible.afterRun();
+
+			} else if (mode == ExecutionMode.WORK_STEALING) {
+				partible.beforeRun();
+				PartibleTasks.run(partible, states, progress, kernel, pool, numIndexes);
+				if (states != null) states.reduce();
+				partible.afterRun();
+
 			} else {
-				PartibleThreads.indexesPerThread = numIndexes / numThreads + 1;
-			}
-				
-			// Do some stuff...
-			partible.beforeRun();
-			
-			// Launch all threads
-			int index;
-			PartibleThreads [] pt = new PartibleThreads[numThreads];
-			for (index = 0; index < PartibleThreads.numThreads; index++) {
-				pt[index] = new PartibleThreads(index, verbose);
-			}
+				if (numThreads > numIndexes) numThreads = numIndexes;
+
+				// We compute the indexes of each thread
+				int [] bounds = (mode == ExecutionMode.BALANCED_BLOCKS && cost != null)
+						? PartibleThreads.balancedBounds(numThreads, numIndexes, cost)
+						: PartibleThreads.bounds(numThreads, numIndexes);
+
+				// Do some stuff...
+				partible.beforeRun();
+
+				// Launch all threads
+				int index;
+				ForkJoinTask <?> [] pt = new ForkJoinTask<?>[numThreads];
+				for (index = 0; index < numThreads; index++) {
+					pt[index] = pool.submit(new PartibleThreads(partible, states, progress, kernel, bounds[index], bounds[index + 1]));
+				}
 
-			// Wait until all threads end
-			try {
-				for (index = 0; index < PartibleThreads.numThreads; index++) {
-					pt[index].getT().join();
+				// Wait until all threads end
+				for (index = 0; index < numThreads; index++) {
+					pt[index].join();
 				}
-			} catch (InterruptedException ie) {
-				System.out.println("ERROR: " + ie);
+
+				// Combine the states of the threads
+				if (states != null) states.reduce();
+
+				// Do some stuff...
+				partible.afterRun();
 			}
-			
-			// Do some stuff...
-			partible.afterRun();
+		} finally {
+			Kernel.bind(previous);
 		}
+	}
 
+	/**
+	 * Runs a range of indexes of a Partible reporting its progress
+	 * @param partible Partible
+	 * @param states States of the threads if the Partible is a ReduciblePartible or null
+	 * @param progress Progress of a verbose execution or null
+	 * @param from First index
+	 * @param to Index after the last index
+	 */
+	static void run (Partible partible, PartibleStates <?> states, PartibleProgress progress, int from, int to) {
+		if (progress != null) {
+			progress.run(partible, states, from, to);
+		} else {
+			PartibleThreads.run(partible, states, from, to);
+		}
 	}
 
 	/**
-	 * @param threadIndex
+	 * Runs a range of indexes of a Partible. RangePartible and ReduciblePartible implementations
+	 * receive the whole range.
+	 * @param partible Partible
+	 * @param states States of the threads if the Partible is a ReduciblePartible or null
+	 * @param from First index
+	 * @param to Index after the last index
 	 */
-	private PartibleThreads (int threadIndex, boolean verbose) {
-		this.verbose = verbose;
-		this.threadIndex = threadIndex;
-		this.t = new Thread (this, String.valueOf(threadIndex));
-		this.t.start();
+	static void run (Partible partible, PartibleStates <?> states, int from, int to) {
+		if (states != null) {
+			states.run(from, to);
+		} else if (partible instanceof RangePartible) {
+			((RangePartible) partible).run(from, to);
+		} else {
+			for (int index = from; index < to; index++) {
+				partible.run(index);
+			}
+		}
 	}
 
 	/**
-	 * @return the thread
+	 * Splits the indexes into blocks of the same size
+	 * @param numThreads Number of threads
+	 * @param numIndexes Number of indexes
+	 * @return First index of each thread followed by numIndexes
 	 */
-	public Thread getT() {
-		return t;
+	private static int [] bounds (int numThreads, int numIndexes) {
+		int indexesPerThread = (numIndexes % numThreads == 0) ? numIndexes / numThreads : numIndexes / numThreads + 1;
+
+		// Last theard could have less indexes
+		int [] bounds = new int [numThreads + 1];
+		for (int t = 0; t <= numThreads; t++) bounds[t] = Math.min(t * indexesPerThread, numIndexes);
+		return bounds;
+	}
+
+	/**
+	 * Splits the indexes into blocks of the same cost. Each index costs one plus its cost, so
+	 * indexes without cost are distributed too.
+	 * @param numThreads Number of threads
+	 * @param numIndexes Number of indexes
+	 * @param cost Cost of each index
+	 * @return First index of each thread followed by numIndexes
+	 */
+	private static int [] balancedBounds (int numThreads, int numIndexes, IntUnaryOperator cost) {
+		long [] accumulated = new long [numIndexes + 1];
+		for (int index = 0; index < numIndexes; index++) {
+			accumulated[index + 1] = accumulated[index] + 1 + Math.max(0, cost.applyAsInt(index));
+		}
+
+		int [] bounds = new int [numThreads + 1];
+		bounds[numThreads] = numIndexes;
+		for (int t = 1; t < numThreads; t++) {
+			long target = accumulated[numIndexes] * t / numThreads;
+			int index = Arrays.binarySearch(accumulated, target);
+			if (index < 0) index = -index - 1;
+			bounds[t] = Math.max(bounds[t - 1], Math.min(index, numIndexes));
+		}
+		return bounds;
+	}
+
+	/**
+	 * @param progress Progress of a verbose execution or null
+	 */
+	private PartibleThreads (Partible render, PartibleStates <?> states, PartibleProgress progress, Kernel kernel, int from, int to) {
+		this.render = render;
+		this.states = states;
+		this.progress = progress;
+		this.kernel = kernel;
+		this.from = from;
+		this.to = to;
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see java.lang.Runnable#run()
 	 */
 	public void run() {
-		long t1 = (new Date()).getTime() / 1000, t2, t3 = 0;
-		int iXt = PartibleThreads.indexesPerThread;
-		
-		// Last theard could have less users
-		for (int index = (this.threadIndex) * iXt; (index < (this.threadIndex + 1) * iXt)
-				&& (index < PartibleThreads.numIndexes); index++) {
-			if (this.threadIndex == 0 && this.verbose) {
-				t2 = (new Date()).getTime() / 1000;
-				if ((t2 - t1) > 5) {
-					System.out.print(".");
-					t1 = t2;
-					t3++;
-				}
-				if (t3 > 20) {
-					System.out.println(((index - this.threadIndex * iXt) * 100 / iXt) + "%");
-					t3 = 0;
-				}
-			}
-
-			render.run(index);
+		Kernel previous = Kernel.bind(this.kernel);
+		try {
+			PartibleThreads.run(this.render, this.states, this.progress, this.from, this.to);
+		} finally {
+			Kernel.bind(previous);
 		}
 	}
 }
@@ -0,0 +1,172 @@
+package cf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Reads an input stream in a background thread. The bytes are read in chunks that are handed over
+ * to the reader of this stream through a bounded queue, so reading the source (for example,
+ * decompressing it) overlaps with processing the bytes already read.</p>
+ *
+ * @author Fernando Ortega
+ */
+class PipelinedInputStream extends InputStream {
+
+	/**
+	 * Size of each chunk
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Number of chunks that can be read ahead
+	 */
+	private static final int QUEUE_SIZE = 16;
+
+	/**
+	 * Marks the end of the source
+	 */
+	private static final Chunk END = new Chunk(new byte [0], 0);
+
+	/**
+	 * Chunks read by the background thread
+	 */
+	private BlockingQueue <Chunk> queue = new ArrayBlockingQueue <Chunk> (QUEUE_SIZE);
+
+	/**
+	 * Source stream
+	 */
+	private InputStream source;
+
+	/**
+	 * Background thread
+	 */
+	private Thread reader;
+
+	/**
+	 * Error raised by the background thread
+	 */
+	private volatile Throwable error;
+
+	/**
+	 * Chunk being consumed and position in it
+	 */
+	private Chunk chunk;
+	private int pos;
+
+	/**
+	 * Starts reading a stream in background
+	 * @param source Source stream
+	 */
+	PipelinedInputStream (InputStream source) {
+		this.source = source;
+		this.reader = new Thread(this::readSource, "cf4j-input");
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	/**
+	 * Body of the background thread. The end mark is always queued, even if the thread fails, so the
+	 * reader of the stream never waits forever.
+	 */
+	private void readSource () {
+		try {
+			while (true) {
+				byte [] bytes = new byte [CHUNK_SIZE];
+				int length = 0, read = 0;
+				while (length < bytes.length && (read = this.source.read(bytes, length, bytes.length - length)) != -1) {
+					length += read;
+				}
+				if (length > 0) this.queue.put(new Chunk(bytes, length));
+				if (read == -1) break;
+			}
+		} catch (InterruptedException e) {
+			return;
+		} catch (Throwable e) {
+			this.error = e;
+		}
+
+		try {
+			this.queue.put(END);
+		} catch (InterruptedException e) {
+			// The stream has been closed
+		}
+	}
+
+	@Override
+	public int read () throws IOException {
+		if (!this.next()) return -1;
+		return this.chunk.bytes[this.pos++] & 0xFF;
+	}
+
+	@Override
+	public int read (byte [] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (!this.next()) return -1;
+		int n = Math.min(len, this.chunk.length - this.pos);
+		System.arraycopy(this.chunk.bytes, this.pos, b, off, n);
+		this.pos += n;
+		return n;
+	}
+
+	@Override
+	public void close () throws IOException {
+		this.reader.interrupt();
+		this.source.close();
+	}
+
+	/**
+	 * Takes the next chunk if the current one has been consumed
+	 * @return False at the end of the source
+	 * @throws IOException If the background thread failed. It is thrown again by every read.
+	 */
+	private boolean next () throws IOException {
+		if (this.chunk == END) {
+			if (this.error != null) throw PipelinedInputStream.wrap(this.error);
+			return false;
+		}
+		if (this.chunk != null && this.pos < this.chunk.length) return true;
+
+		try {
+			this.chunk = this.queue.take();
+			this.pos = 0;
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+
+		if (this.chunk == END) {
+			if (this.error != null) throw PipelinedInputStream.wrap(this.error);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Converts an error of the background thread into an IOException
+	 * @param error Error of the background thread
+	 * @return The error if it is an IOException or an IOException caused by it
+	 */
+	private static IOException wrap (Throwable error) {
+		if (error instanceof IOException) return (IOException) error;
+		return new IOException("An error has occurred while reading the source", error);
+	}
+
+	/**
+	 * Bytes read from the source
+	 */
+	private static class Chunk {
+
+		private byte [] bytes;
+
+		private int length;
+
+		Chunk (byte [] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+	}
+}
@@ -1,11 +1,23 @@
 package cf4j;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
 /**
  * <p>Class that manages the execution of processes. To use this class, you must have previously 
  * loaded kernel.</p>
  * 
- * <p>This class can not be instantiated. It implements the singleton pattern, so, when we want to use
- * it, we must use the getInstance() method.</p>
+ * <p>The default processor is a singleton returned by the getInstance() method. It processes the
+ * kernel of the calling thread (see Kernel.getInstance()). Processors of independent kernels can be
+ * created with the constructors. A processor binds its kernel to the threads that run the Partible,
+ * so Kernel.getInstance() returns that kernel inside the Partible methods.</p>
+ * 
+ * <p>The threads are created the first time that a Partible is executed and they are reused by the
+ * following executions until shutdown() is called or the number of threads is changed. They are
+ * daemon threads, so they do not prevent the JVM from exiting. Executions that are running when the
+ * threads are replaced end using their threads, which are stopped after the last one.</p>
  * 
  * <p>Its mains methods are:</p>
  * <ul>
@@ -27,11 +39,32 @@ public class Processor {
 	 */
 	private int threads;
 
+	/**
+	 * Processed kernel or null to process the kernel of the calling thread
+	 */
+	private Kernel kernel;
+
+	/**
+	 * Distribution of the indexes between the threads
+	 */
+	private volatile ExecutionMode executionMode = ExecutionMode.BLOCKS;
+
+	/**
+	 * Pool of threads or null if it has not been created yet
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Number of running executions of each pool. A pool that has been replaced is shut down when its
+	 * last execution ends.
+	 */
+	private Map <ForkJoinPool, Integer> executions = new HashMap <ForkJoinPool, Integer> ();
+
 	/**
 	 * Gets the single instance of the class.
 	 * @return Single instance
 	 */
-	public static Processor getInstance() {
+	public static synchronized Processor getInstance() {
 		if (instance == null) {
 			instance = new Processor();
 		}
@@ -41,7 +74,8 @@ public class Processor {
 	/**
 	 * Destroy the single instance of the class.
 	 */
-	public static void destroyInstance () {
+	public static synchronized void destroyInstance () {
+		if (instance != null) instance.shutdown();
 		instance = null;
 		System.gc();
 	}
@@ -51,16 +85,36 @@ public class Processor {
 	 * the available processors.
 	 */
 	private Processor () {
-		this(Runtime.getRuntime().availableProcessors() * 2);
+		this(null, Runtime.getRuntime().availableProcessors() * 2);
+	}
+	
+	/**
+	 * Creates a processor of a kernel. The number of executions sets is set based on
+	 * the available processors.
+	 * @param kernel Kernel to be processed
+	 */
+	public Processor (Kernel kernel) {
+		this(kernel, Runtime.getRuntime().availableProcessors() * 2);
 	}
 	
 	/**
-	 * Creates a new instance setting the number of executions threads
+	 * Creates a processor of a kernel setting the number of executions threads
+	 * @param kernel Kernel to be processed or null to process the kernel of the calling thread
+	 * @param threads Number of threads
 	 */
-	private Processor (int threads) {
+	public Processor (Kernel kernel, int threads) {
+		this.kernel = kernel;
 		this.threads = threads;
 	}
 
+	/**
+	 * Returns the kernel processed by this processor
+	 * @return Kernel of the processor or, for the default processor, the kernel of the calling thread
+	 */
+	public Kernel getKernel () {
+		return (this.kernel != null) ? this.kernel : Kernel.getInstance();
+	}
+
 	/**
 	 * Returns the number of thread used.
 	 * @return Number of Threads
@@ -70,12 +124,109 @@ public class Processor {
 	}
 	
 	/**
-	 * Set the number of thread to be used.
+	 * Set the number of thread to be used. The current threads are stopped when the
+	 * running executions end.
 	 * @param threads Number of threads
 	 */
-	public void setThreads (int threads) {
+	public synchronized void setThreads (int threads) {
+		this.shutdown();
 		this.threads = threads;
 	}
+
+	/**
+	 * Stops the threads of the processor when the running executions end. The processor
+	 * can still be used: new threads are created by the next execution.
+	 */
+	public synchronized void shutdown () {
+		if (this.pool != null) {
+			if (!this.executions.containsKey(this.pool)) this.pool.shutdown();
+			this.pool = null;
+		}
+	}
+
+	/**
+	 * Returns the pool of threads, creating it if needed, and counts a new execution of it
+	 * @return Pool of threads
+	 */
+	private synchronized ForkJoinPool acquirePool () {
+		if (this.threads <= 0)
+			throw new RuntimeException("The number of threads must be one or more");
+
+		if (this.pool == null) this.pool = new ForkJoinPool(this.threads);
+		this.executions.merge(this.pool, 1, Integer::sum);
+		return this.pool;
+	}
+
+	/**
+	 * Counts the end of an execution of a pool. The pool is shut down if it has been replaced
+	 * and it was its last execution.
+	 * @param pool Pool of threads returned by acquirePool()
+	 */
+	private synchronized void releasePool (ForkJoinPool pool) {
+		int count = this.executions.get(pool) - 1;
+		if (count > 0) {
+			this.executions.put(pool, count);
+		} else {
+			this.executions.remove(pool);
+			if (pool != this.pool) pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs a Partible with the pool of threads. The pool can not be shut down while it runs.
+	 * @param partible Partible
+	 * @param kernel Kernel bound to the threads
+	 * @param numIndexes Number of indexes to be processed (from 0 to numIndexes - 1)
+	 * @param cost Cost of each index used by BALANCED_BLOCKS or null if it is unknown
+	 * @param verbose Print execution info
+	 */
+	private void run (Partible partible, Kernel kernel, int numIndexes, IntUnaryOperator cost, boolean verbose) {
+		ForkJoinPool pool = this.acquirePool();
+		try {
+			PartibleThreads.runThreads(partible, kernel, this.executionMode, pool, numIndexes, cost, verbose);
+		} finally {
+			this.releasePool(pool);
+		}
+	}
+	
+	/**
+	 * Returns how the indexes are distributed between the threads
+	 * @return Execution mode
+	 */
+	public ExecutionMode getExecutionMode () {
+		return this.executionMode;
+	}
+
+	/**
+	 * Sets how the indexes are distributed between the threads. BALANCED_BLOCKS and WORK_STEALING keep
+	 * all the threads busy when the cost of the indexes is not uniform (most of the users and items
+	 * processes).
+	 * @param executionMode Execution mode (BLOCKS by default)
+	 */
+	public void setExecutionMode (ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	/**
+	 * Execute a Partible implementation over an arbitrary number of indexes.
+	 * @param partible Partible implementation instance.
+	 * @param numIndexes Number of indexes to be processed (from 0 to numIndexes - 1)
+	 * @param verbose Print execution info
+	 */
+	public void process (Partible partible, int numIndexes, boolean verbose) {
+		this.process(partible, numIndexes, null, verbose);
+	}
+	
+	/**
+	 * Execute a Partible implementation over an arbitrary number of indexes whose cost is known.
+	 * @param partible Partible implementation instance.
+	 * @param numIndexes Number of indexes to be processed (from 0 to numIndexes - 1)
+	 * @param cost Cost of each index used by BALANCED_BLOCKS (number of ratings, for example) or null
+	 * @param verbose Print execution info
+	 */
+	public void process (Partible partible, int numIndexes, IntUnaryOperator cost, boolean verbose) {
+		this.run(partible, this.getKernel(), numIndexes, cost, verbose);
+	}
 	
 	/**
 	 * Execute a Partible implementation for users.
@@ -93,8 +244,11 @@ public class Processor {
 	 * @param verbose Print execution info
 	 */
 	public void usersProcess (UsersPartible usersPartible, boolean verbose) {	
-		int numUsers = Kernel.getInstance().getNumberOfUsers();
-		PartibleThreads.runThreads(usersPartible, this.threads, numUsers, verbose);	
+		Kernel kernel = this.getKernel();
+		int numUsers = kernel.getNumberOfUsers();
+		User [] users = kernel.getUsers();
+		this.run(usersPartible, kernel, numUsers,
+				userIndex -> users[userIndex].getNumberOfRatings(), verbose);
 	}
 	
 	/**
@@ -113,8 +267,11 @@ public class Processor {
 	 * @param verbose Print execution info
 	 */
 	public void testUsersProcess (TestUsersPartible testUsersPartible, boolean verbose) {	
-		int numTestUsers = Kernel.getInstance().getNumberOfTestUsers();
-		PartibleThreads.runThreads(testUsersPartible, this.threads, numTestUsers, verbose);	
+		Kernel kernel = this.getKernel();
+		int numTestUsers = kernel.getNumberOfTestUsers();
+		TestUser [] testUsers = kernel.getTestUsers();
+		this.run(testUsersPartible, kernel, numTestUsers,
+				testUserIndex -> testUsers[testUserIndex].getNumberOfRatings() + testUsers[testUserIndex].getNumberOfTestRatings(), verbose);
 	}
 	
 	/**
@@ -133,8 +290,11 @@ public class Processor {
 	 * @param verbose Print execution info
 	 */
 	public void itemsProcess (ItemsPartible itemsPartible, boolean verbose) {	
-		int numItems = Kernel.getInstance().getNumberOfItems();
-		PartibleThreads.runThreads(itemsPartible, this.threads, numItems, verbose);	
+		Kernel kernel = this.getKernel();
+		int numItems = kernel.getNumberOfItems();
+		Item [] items = kernel.getItems();
+		this.run(itemsPartible, kernel, numItems,
+				itemIndex -> items[itemIndex].getNumberOfRatings(), verbose);
 	}
 	
 	/**
@@ -153,7 +313,10 @@ public class Processor {
 	 * @param verbose Print execution info
 	 */
 	public void testItemsProcess (TestItemsPartible testItemsPartible, boolean verbose) {	
-		int numTestItems = Kernel.getInstance().getNumberOfTestItems();
-		PartibleThreads.runThreads(testItemsPartible, this.threads, numTestItems, verbose);	
+		Kernel kernel = this.getKernel();
+		int numTestItems = kernel.getNumberOfTestItems();
+		TestItem [] testItems = kernel.getTestItems();
+		this.run(testItemsPartible, kernel, numTestItems,
+				testItemIndex -> testItems[testItemIndex].getNumberOfRatings() + testItems[testItemIndex].getNumberOfTestRatings(), verbose);
 	}
 }
@@ -0,0 +1,23 @@
+package cf4j;
+
+/**
+ * <p>Partible that can process a range of consecutive indexes in one call. The Processor calls
+ * run(from, to) with the indexes of each thread (or of each chunk, in WORK_STEALING mode) instead of
+ * calling run(index) once per index, so implementations can prepare the resources of a range once
+ * (scratch buffers, arrays of the kernel...) and reuse them for all its indexes.</p>
+ *
+ * <p>Every index is processed by exactly one call of run(from, to). run(index) must process one index
+ * in the same way, usually calling run(index, index + 1).</p>
+ *
+ * @see Partible
+ * @author Fernando Ortega
+ */
+public interface RangePartible extends Partible {
+
+	/**
+	 * Is executed for each range of consecutive indexes.
+	 * @param from First index of the range.
+	 * @param to Index after the last index of the range.
+	 */
+	public void run (int from, int to);
+}
@@ -0,0 +1,20 @@
+package cf4j;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Function that decides if a rating is a test rating when the ratings are split one by one.</p>
+ *
+ * @author Fernando Ortega
+ */
+@FunctionalInterface
+interface RatingSplitter {
+
+	/**
+	 * Checks if a rating is a test rating
+	 * @param userCode User code of the rating
+	 * @param itemCode Item code of the rating
+	 * @return True if the rating is test; False otherwise
+	 */
+	boolean isTest (int userCode, int itemCode);
+}
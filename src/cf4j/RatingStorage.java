@@ -0,0 +1,30 @@
+package cf4j;
+
+/**
+ * Precision used by the Kernel to keep the ratings of users and items in memory.
+ *
+ * @author Fernando Ortega
+ * @see Kernel#setRatingStorage(RatingStorage)
+ */
+public enum RatingStorage {
+
+	/**
+	 * Ratings are kept as doubles (8 bytes per rating)
+	 */
+	DOUBLE,
+
+	/**
+	 * Ratings are kept as floats (4 bytes per rating). Ratings that are not exactly representable
+	 * as floats are rounded. The exact values are not kept, so the statistics computed when the
+	 * dataset is loaded use the exact ratings, but those computed again later (by Kernel.resplit(...)
+	 * or Kernel.addRatings(...), for example) use the rounded ones.
+	 */
+	FLOAT,
+
+	/**
+	 * Ratings are kept as byte codes of a dictionary with the different ratings of the dataset
+	 * (1 byte per rating). The ratings are not modified. If the dataset contains more than 256
+	 * different ratings, they are kept as floats and they are rounded as in FLOAT.
+	 */
+	DICTIONARY
+}
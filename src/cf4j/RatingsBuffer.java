@@ -0,0 +1,93 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Growable columnar buffer of ratings (user code, item code, rating) in the order they were
+ * read. It is used when the ratings can not be read twice from their source.</p>
+ *
+ * @author Fernando Ortega
+ */
+class RatingsBuffer {
+
+	/**
+	 * Users codes
+	 */
+	private int [] users;
+
+	/**
+	 * Items codes
+	 */
+	private int [] items;
+
+	/**
+	 * Ratings values
+	 */
+	private double [] ratings;
+
+	/**
+	 * Number of ratings stored
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty buffer
+	 * @param capacity Initial capacity
+	 */
+	RatingsBuffer (int capacity) {
+		capacity = Math.max(capacity, 16);
+		this.users = new int [capacity];
+		this.items = new int [capacity];
+		this.ratings = new double [capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Appends a rating to the buffer
+	 * @param userCode User code
+	 * @param itemCode Item code
+	 * @param rating Rating value
+	 */
+	void add (int userCode, int itemCode, double rating) {
+		if (this.size == this.users.length) {
+			int capacity = this.size + (this.size >> 1);
+			this.users = Arrays.copyOf(this.users, capacity);
+			this.items = Arrays.copyOf(this.items, capacity);
+			this.ratings = Arrays.copyOf(this.ratings, capacity);
+		}
+		this.users[this.size] = userCode;
+		this.items[this.size] = itemCode;
+		this.ratings[this.size] = rating;
+		this.size++;
+	}
+
+	/**
+	 * Counts the buffered ratings into a builder (first pass)
+	 * @param builder Ratings builder
+	 */
+	void countInto (RatingsBuilder builder) {
+		for (int r = 0; r < this.size; r++) {
+			builder.count(this.users[r], this.items[r]);
+		}
+	}
+
+	/**
+	 * Adds the buffered ratings into a builder (second pass)
+	 * @param builder Ratings builder
+	 */
+	void addInto (RatingsBuilder builder) {
+		for (int r = 0; r < this.size; r++) {
+			builder.add(this.users[r], this.items[r], this.ratings[r]);
+		}
+	}
+
+	/**
+	 * Returns the number of ratings stored
+	 * @return Number of ratings
+	 */
+	int size () {
+		return this.size;
+	}
+}
@@ -0,0 +1,396 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Collects the ratings of a dataset into primitive arrays without boxing them. The ratings are
+ * collected in two passes:</p>
+ * <ol>
+ * 		<li>count: every rating is counted to know how many ratings each user and item have.</li>
+ * 		<li>add: every rating is stored into arrays preallocated with the exact size.</li>
+ * </ol>
+ * <p>After the second pass, finish() must be called to sort the ratings of each user and item by code.
+ * If a pair user-item is rated more than once, the last rating added is kept.</p>
+ *
+ * @author Fernando Ortega
+ */
+class RatingsBuilder implements RatingsSource {
+
+	/**
+	 * Users codes index
+	 */
+	private CodeIndex users = new CodeIndex();
+
+	/**
+	 * Items codes index
+	 */
+	private CodeIndex items = new CodeIndex();
+
+	/**
+	 * Items rated by each user
+	 */
+	private int [][] usersItems;
+
+	/**
+	 * Ratings of each user overlapping with usersItems
+	 */
+	private double [][] usersRatings;
+
+	/**
+	 * Number of ratings added to each user
+	 */
+	private int [] usersFill;
+
+	/**
+	 * Users that have rated each item
+	 */
+	private int [][] itemsUsers;
+
+	/**
+	 * Ratings of each item overlapping with itemsUsers
+	 */
+	private double [][] itemsRatings;
+
+	/**
+	 * Number of ratings added to each item
+	 */
+	private int [] itemsFill;
+
+	/**
+	 * Minimum rating added
+	 */
+	private double minRating = Byte.MAX_VALUE;
+
+	/**
+	 * Maximum rating added
+	 */
+	private double maxRating = Byte.MIN_VALUE;
+
+	/**
+	 * First pass: counts a rating.
+	 * @param userCode User code
+	 * @param itemCode Item code
+	 */
+	void count (int userCode, int itemCode) {
+		this.users.add(userCode);
+		this.items.add(itemCode);
+	}
+
+	/**
+	 * Allocates the ratings arrays. Must be called between the first and the second pass.
+	 */
+	void allocate () {
+		this.users.freeze();
+		this.items.freeze();
+
+		int numUsers = this.users.size();
+		this.usersItems = new int [numUsers][];
+		this.usersRatings = new double [numUsers][];
+		this.usersFill = new int [numUsers];
+		for (int u = 0; u < numUsers; u++) {
+			this.usersItems[u] = new int [this.users.getCount(u)];
+			this.usersRatings[u] = new double [this.users.getCount(u)];
+		}
+
+		int numItems = this.items.size();
+		this.itemsUsers = new int [numItems][];
+		this.itemsRatings = new double [numItems][];
+		this.itemsFill = new int [numItems];
+		for (int i = 0; i < numItems; i++) {
+			this.itemsUsers[i] = new int [this.items.getCount(i)];
+			this.itemsRatings[i] = new double [this.items.getCount(i)];
+		}
+	}
+
+	/**
+	 * First pass alternative: counts the ratings of a whole table of codes at once.
+	 * @param codes Users or items codes
+	 * @param counts Number of ratings of each code
+	 * @param ofUsers True if codes are users codes; False if they are items codes
+	 */
+	void count (int [] codes, int [] counts, boolean ofUsers) {
+		CodeIndex index = ofUsers ? this.users : this.items;
+		for (int c = 0; c < codes.length; c++) {
+			if (counts[c] > 0) index.add(codes[c], counts[c]);
+		}
+	}
+
+	/**
+	 * Second pass: stores a rating. Ratings must be added in the same order they were counted.
+	 * @param userCode User code
+	 * @param itemCode Item code
+	 * @param rating Rating value
+	 */
+	void add (int userCode, int itemCode, double rating) {
+		int userIndex = this.users.indexOf(userCode);
+		int itemIndex = this.items.indexOf(itemCode);
+
+		if (userIndex == -1 || itemIndex == -1) {
+			throw new IllegalStateException("Rating " + userCode + ", " + itemCode + " was not counted in the first pass");
+		}
+
+		this.addAt(userIndex, itemIndex, rating);
+	}
+
+	/**
+	 * Second pass: stores a rating given the positions of its codes at the sorted codes arrays.
+	 * @param userIndex User index
+	 * @param itemIndex Item index
+	 * @param rating Rating value
+	 */
+	void addAt (int userIndex, int itemIndex, double rating) {
+		int userCode = this.users.getCodes()[userIndex];
+		int itemCode = this.items.getCodes()[itemIndex];
+
+		if (this.usersFill[userIndex] == this.usersItems[userIndex].length
+				|| this.itemsFill[itemIndex] == this.itemsUsers[itemIndex].length) {
+			throw new IllegalStateException("Rating " + userCode + ", " + itemCode + " was not counted in the first pass");
+		}
+
+		this.usersItems[userIndex][this.usersFill[userIndex]] = itemCode;
+		this.usersRatings[userIndex][this.usersFill[userIndex]] = rating;
+		this.usersFill[userIndex]++;
+
+		this.itemsUsers[itemIndex][this.itemsFill[itemIndex]] = userCode;
+		this.itemsRatings[itemIndex][this.itemsFill[itemIndex]] = rating;
+		this.itemsFill[itemIndex]++;
+
+		if (rating < this.minRating) this.minRating = rating;
+		if (rating > this.maxRating) this.maxRating = rating;
+	}
+
+	/**
+	 * Extends the range of ratings. Used when the ratings come from a source that already knows
+	 * the range of the original dataset.
+	 * @param minRating Minimum rating
+	 * @param maxRating Maximum rating
+	 */
+	void extendRatingRange (double minRating, double maxRating) {
+		this.minRating = Math.min(this.minRating, minRating);
+		this.maxRating = Math.max(this.maxRating, maxRating);
+	}
+
+	/**
+	 * Sorts the ratings of each user and item by code and removes duplicated ratings.
+	 */
+	void finish () {
+		Sorter sorter = new Sorter();
+
+		for (int u = 0; u < this.usersItems.length; u++) {
+			int length = sorter.sort(this.usersItems[u], this.usersRatings[u]);
+			if (length < this.usersItems[u].length) {
+				this.usersItems[u] = Arrays.copyOf(this.usersItems[u], length);
+				this.usersRatings[u] = Arrays.copyOf(this.usersRatings[u], length);
+			}
+		}
+
+		for (int i = 0; i < this.itemsUsers.length; i++) {
+			int length = sorter.sort(this.itemsUsers[i], this.itemsRatings[i]);
+			if (length < this.itemsUsers[i].length) {
+				this.itemsUsers[i] = Arrays.copyOf(this.itemsUsers[i], length);
+				this.itemsRatings[i] = Arrays.copyOf(this.itemsRatings[i], length);
+			}
+		}
+
+		this.usersFill = null;
+		this.itemsFill = null;
+	}
+
+	/**
+	 * Returns the users codes
+	 * @return Users codes sorted from low to high
+	 */
+	@Override
+	public int [] getUserCodes () {
+		return this.users.getCodes();
+	}
+
+	/**
+	 * Returns the items codes
+	 * @return Items codes sorted from low to high
+	 */
+	@Override
+	public int [] getItemCodes () {
+		return this.items.getCodes();
+	}
+
+	/**
+	 * Returns the position of an user code at the users codes array
+	 * @param userCode User code
+	 * @return User index or -1
+	 */
+	@Override
+	public int getUserIndex (int userCode) {
+		return this.users.indexOf(userCode);
+	}
+
+	/**
+	 * Returns the position of an item code at the items codes array
+	 * @param itemCode Item code
+	 * @return Item index or -1
+	 */
+	@Override
+	public int getItemIndex (int itemCode) {
+		return this.items.indexOf(itemCode);
+	}
+
+	/**
+	 * Returns the items rated by an user
+	 * @param userIndex User index
+	 * @return Items codes sorted from low to high
+	 */
+	@Override
+	public int [] getUserItems (int userIndex) {
+		return this.usersItems[userIndex];
+	}
+
+	/**
+	 * Returns the ratings of an user
+	 * @param userIndex User index
+	 * @return Ratings overlapping with getUserItems(userIndex)
+	 */
+	@Override
+	public double [] getUserRatings (int userIndex) {
+		return this.usersRatings[userIndex];
+	}
+
+	/**
+	 * Returns the users that have rated an item
+	 * @param itemIndex Item index
+	 * @return Users codes sorted from low to high
+	 */
+	@Override
+	public int [] getItemUsers (int itemIndex) {
+		return this.itemsUsers[itemIndex];
+	}
+
+	/**
+	 * Returns the ratings of an item
+	 * @param itemIndex Item index
+	 * @return Ratings overlapping with getItemUsers(itemIndex)
+	 */
+	@Override
+	public double [] getItemRatings (int itemIndex) {
+		return this.itemsRatings[itemIndex];
+	}
+
+	/**
+	 * Returns the number of ratings of an user
+	 * @param userIndex User index
+	 * @return Number of ratings of the user
+	 */
+	@Override
+	public int getNumberOfUserRatings (int userIndex) {
+		return this.usersItems[userIndex].length;
+	}
+
+	/**
+	 * Returns the number of ratings of an item
+	 * @param itemIndex Item index
+	 * @return Number of ratings of the item
+	 */
+	@Override
+	public int getNumberOfItemRatings (int itemIndex) {
+		return this.itemsUsers[itemIndex].length;
+	}
+
+	/**
+	 * Returns the number of ratings after removing the duplicated ones
+	 * @return Number of ratings
+	 */
+	@Override
+	public long getNumberOfRatings () {
+		long numRatings = 0;
+		for (int [] items : this.usersItems) numRatings += items.length;
+		return numRatings;
+	}
+
+	/**
+	 * Returns the minimum rating added
+	 * @return Minimum rating
+	 */
+	@Override
+	public double getMinRating () {
+		return this.minRating;
+	}
+
+	/**
+	 * Returns the maximum rating added
+	 * @return Maximum rating
+	 */
+	@Override
+	public double getMaxRating () {
+		return this.maxRating;
+	}
+
+	/**
+	 * The ratings collected by the builder are held by the users
+	 * @return null
+	 */
+	@Override
+	public RatingsStore getUsersStore () {
+		return null;
+	}
+
+	/**
+	 * The ratings collected by the builder are held by the items
+	 * @return null
+	 */
+	@Override
+	public RatingsStore getItemsStore () {
+		return null;
+	}
+
+	/**
+	 * Stable sort of codes arrays and their ratings. Reuses its buffers between calls.
+	 */
+	private static class Sorter {
+
+		private long [] keys = new long [0];
+
+		private double [] values = new double [0];
+
+		/**
+		 * Sorts codes from low to high moving the ratings with them. Repeated codes are
+		 * removed keeping the last one added.
+		 * @param codes Codes to sort
+		 * @param ratings Ratings overlapping with codes
+		 * @return Number of different codes, placed at the beginning of the arrays
+		 */
+		int sort (int [] codes, double [] ratings) {
+			int n = codes.length;
+
+			// Datasets are usually sorted, so check it before sorting
+			boolean sorted = true;
+			for (int i = 1; i < n && sorted; i++) {
+				if (codes[i - 1] >= codes[i]) sorted = false;
+			}
+			if (sorted) return n;
+
+			if (this.keys.length < n) {
+				this.keys = new long [n];
+				this.values = new double [n];
+			}
+
+			// Code in the high bits and position in the low bits keeps the sort stable
+			for (int i = 0; i < n; i++) {
+				this.keys[i] = ((long) codes[i] << 32) | i;
+				this.values[i] = ratings[i];
+			}
+			Arrays.sort(this.keys, 0, n);
+
+			int length = 0;
+			for (int i = 0; i < n; i++) {
+				int code = (int) (this.keys[i] >> 32);
+				if (i + 1 < n && (int) (this.keys[i + 1] >> 32) == code) continue;
+				codes[length] = code;
+				ratings[length] = this.values[(int) this.keys[i]];
+				length++;
+			}
+
+			return length;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package cf4j;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import cf4j.utils.Methods;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Read only map view of the ratings of an user or an item. It is given to the dataset splitters
+ * to avoid copying the ratings into a boxed map. Entries are iterated from low to high code.</p>
+ *
+ * @author Fernando Ortega
+ */
+class RatingsMap extends AbstractMap <Integer, Double> {
+
+	/**
+	 * Codes sorted from low to high
+	 */
+	private int [] codes;
+
+	/**
+	 * Ratings overlapping with codes
+	 */
+	private double [] ratings;
+
+	/**
+	 * Creates a view over the ratings arrays
+	 * @param codes Codes sorted from low to high
+	 * @param ratings Ratings overlapping with codes
+	 */
+	RatingsMap (int [] codes, double [] ratings) {
+		this.codes = codes;
+		this.ratings = ratings;
+	}
+
+	@Override
+	public int size () {
+		return this.codes.length;
+	}
+
+	@Override
+	public boolean containsKey (Object key) {
+		return (key instanceof Integer) && Methods.getIndex(this.codes, (Integer) key) != -1;
+	}
+
+	@Override
+	public Double get (Object key) {
+		if (!(key instanceof Integer)) return null;
+		int index = Methods.getIndex(this.codes, (Integer) key);
+		return (index == -1) ? null : this.ratings[index];
+	}
+
+	@Override
+	public Set <Entry <Integer, Double>> entrySet () {
+		return new AbstractSet <Entry <Integer, Double>> () {
+
+			@Override
+			public int size () {
+				return RatingsMap.this.codes.length;
+			}
+
+			@Override
+			public Iterator <Entry <Integer, Double>> iterator () {
+				return new Iterator <Entry <Integer, Double>> () {
+
+					private int index = 0;
+
+					@Override
+					public boolean hasNext () {
+						return this.index < RatingsMap.this.codes.length;
+					}
+
+					@Override
+					public Entry <Integer, Double> next () {
+						if (!this.hasNext()) throw new NoSuchElementException();
+						Entry <Integer, Double> entry = new SimpleImmutableEntry <Integer, Double> (
+								RatingsMap.this.codes[this.index], RatingsMap.this.ratings[this.index]);
+						this.index++;
+						return entry;
+					}
+				};
+			}
+		};
+	}
+}
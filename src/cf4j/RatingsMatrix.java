@@ -0,0 +1,274 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Ratings of a set of users and items packed into contiguous arrays. The ratings are stored by rows
+ * (CSR) and by columns (CSC): each side has an array of offsets, an array with the codes and an array with
+ * the kernel indexes of the rated elements. The values of the ratings are stored once, in the order of
+ * the rows, and the columns access them through a permutation index.</p>
+ *
+ * <p>Users and items become views over the matrix: each side of the matrix is a RatingsStore whose rows
+ * are the users (or test users) and the items (or test items).</p>
+ *
+ * @author Fernando Ortega
+ */
+class RatingsMatrix {
+
+	/**
+	 * Maximum number of different ratings of a dictionary
+	 */
+	static final int DICTIONARY_SIZE = 256;
+
+	/**
+	 * Rows side of the matrix
+	 */
+	private Side rows;
+
+	/**
+	 * Columns side of the matrix
+	 */
+	private Side columns;
+
+	/**
+	 * Packs the ratings of a set of rows.
+	 * @param codes Codes of the columns rated by each row sorted from low to high
+	 * @param ratings Ratings of each row overlapping with codes
+	 * @param rowCodes Code of each row (only used to transpose)
+	 * @param rowIndexes Kernel index of each row (only used to transpose)
+	 * @param columnCodes Kernel codes of the columns sorted from low to high
+	 * @param columnRows Column of the matrix of each kernel column or null if they are the same
+	 * @param numColumns Number of columns of the matrix
+	 * @param storage Precision of the ratings
+	 * @param dictionary Different ratings sorted from low to high (only used by DICTIONARY)
+	 * @param transpose False if the columns side is not needed
+	 */
+	RatingsMatrix (int [][] codes, double [][] ratings, int [] rowCodes, int [] rowIndexes, int [] columnCodes,
+			int [] columnRows, int numColumns, RatingStorage storage, double [] dictionary, boolean transpose) {
+
+		int numRows = codes.length;
+
+		// Rows side
+		int [] rowOffsets = new int [numRows + 1];
+		for (int r = 0; r < numRows; r++) rowOffsets[r + 1] = rowOffsets[r] + codes[r].length;
+
+		int numRatings = rowOffsets[numRows];
+
+		int [] columnsOfRows = new int [numRatings];
+		int [] kernelColumns = new int [numRatings];
+		Values values = Values.create(numRatings, storage, dictionary);
+
+		for (int r = 0; r < numRows; r++) {
+			int offset = rowOffsets[r];
+			System.arraycopy(codes[r], 0, columnsOfRows, offset, codes[r].length);
+
+			int from = 0;
+			for (int pos = 0; pos < codes[r].length; pos++) {
+				kernelColumns[offset + pos] = Arrays.binarySearch(columnCodes, from, columnCodes.length, codes[r][pos]);
+				from = kernelColumns[offset + pos] + 1;
+				values.set(offset + pos, ratings[r][pos]);
+			}
+		}
+
+		this.rows = new Side(rowOffsets, columnsOfRows, kernelColumns, null, values);
+		if (!transpose) return;
+
+		// Columns side: rows are visited in order, so the rows of each column are sorted
+		int [] columnOffsets = new int [numColumns + 1];
+		for (int k : kernelColumns) columnOffsets[(columnRows == null ? k : columnRows[k]) + 1]++;
+		for (int c = 0; c < numColumns; c++) columnOffsets[c + 1] += columnOffsets[c];
+
+		int [] fill = Arrays.copyOf(columnOffsets, numColumns);
+		int [] rowsOfColumns = new int [numRatings];
+		int [] kernelRows = new int [numRatings];
+		int [] permutation = new int [numRatings];
+
+		for (int r = 0; r < numRows; r++) {
+			for (int p = rowOffsets[r]; p < rowOffsets[r + 1]; p++) {
+				int c = (columnRows == null) ? kernelColumns[p] : columnRows[kernelColumns[p]];
+				int q = fill[c]++;
+				rowsOfColumns[q] = rowCodes[r];
+				kernelRows[q] = rowIndexes[r];
+				permutation[q] = p;
+			}
+		}
+
+		this.columns = new Side(columnOffsets, rowsOfColumns, kernelRows, permutation, values);
+	}
+
+	/**
+	 * Returns the store of the rows
+	 * @return Store whose rows are the rows of the matrix
+	 */
+	RatingsStore getRows () {
+		return this.rows;
+	}
+
+	/**
+	 * Returns the store of the columns
+	 * @return Store whose rows are the columns of the matrix or null if the matrix was not transposed
+	 */
+	RatingsStore getColumns () {
+		return this.columns;
+	}
+
+	/**
+	 * One side of the matrix
+	 */
+	private static class Side extends RatingsStore {
+
+		/**
+		 * Position of the first rating of each row (and the number of ratings at the end)
+		 */
+		private final int [] offsets;
+
+		/**
+		 * Codes of the rated elements
+		 */
+		private final int [] codes;
+
+		/**
+		 * Kernel indexes of the rated elements
+		 */
+		private final int [] indexes;
+
+		/**
+		 * Position of each rating in the values or null if they are in the same order
+		 */
+		private final int [] permutation;
+
+		/**
+		 * Values of the ratings
+		 */
+		private final Values values;
+
+		Side (int [] offsets, int [] codes, int [] indexes, int [] permutation, Values values) {
+			this.offsets = offsets;
+			this.codes = codes;
+			this.indexes = indexes;
+			this.permutation = permutation;
+			this.values = values;
+		}
+
+		@Override
+		int size (int row) {
+			return this.offsets[row + 1] - this.offsets[row];
+		}
+
+		@Override
+		int getCode (int row, int pos) {
+			return this.codes[this.offsets[row] + pos];
+		}
+
+		@Override
+		int getIndex (int row, int pos) {
+			return this.indexes[this.offsets[row] + pos];
+		}
+
+		@Override
+		double getRating (int row, int pos) {
+			int p = this.offsets[row] + pos;
+			return this.values.get((this.permutation == null) ? p : this.permutation[p]);
+		}
+
+		@Override
+		int [] getCodes (int row) {
+			return Arrays.copyOfRange(this.codes, this.offsets[row], this.offsets[row + 1]);
+		}
+
+		@Override
+		int getCodes (int row, int [] codes) {
+			int size = this.size(row);
+			System.arraycopy(this.codes, this.offsets[row], codes, 0, size);
+			return size;
+		}
+
+		@Override
+		int indexOf (int row, int code) {
+			int index = Arrays.binarySearch(this.codes, this.offsets[row], this.offsets[row + 1], code);
+			return (index < 0) ? -1 : index - this.offsets[row];
+		}
+	}
+
+	/**
+	 * Values of the ratings with the precision of a RatingStorage
+	 */
+	private static abstract class Values {
+
+		static Values create (int size, RatingStorage storage, double [] dictionary) {
+			switch (storage) {
+				case FLOAT: return new FloatValues(size);
+				case DICTIONARY: return new DictionaryValues(size, dictionary);
+				default: return new DoubleValues(size);
+			}
+		}
+
+		abstract double get (int pos);
+
+		abstract void set (int pos, double value);
+	}
+
+	private static class DoubleValues extends Values {
+
+		private double [] values;
+
+		DoubleValues (int size) {
+			this.values = new double [size];
+		}
+
+		@Override
+		double get (int pos) {
+			return this.values[pos];
+		}
+
+		@Override
+		void set (int pos, double value) {
+			this.values[pos] = value;
+		}
+	}
+
+	private static class FloatValues extends Values {
+
+		private float [] values;
+
+		FloatValues (int size) {
+			this.values = new float [size];
+		}
+
+		@Override
+		double get (int pos) {
+			return this.values[pos];
+		}
+
+		@Override
+		void set (int pos, double value) {
+			this.values[pos] = (float) value;
+		}
+	}
+
+	private static class DictionaryValues extends Values {
+
+		private double [] dictionary;
+
+		private byte [] values;
+
+		DictionaryValues (int size, double [] dictionary) {
+			this.dictionary = dictionary;
+			this.values = new byte [size];
+		}
+
+		@Override
+		double get (int pos) {
+			return this.dictionary[this.values[pos] & 0xFF];
+		}
+
+		@Override
+		void set (int pos, double value) {
+			int code = Arrays.binarySearch(this.dictionary, value);
+			if (code < 0) throw new IllegalArgumentException("The rating " + value + " is not in the dictionary");
+			this.values[pos] = (byte) code;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package cf4j;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Ratings of a dataset grouped by user and by item from which the Kernel is built. Users and items
+ * are identified by their index in the arrays of codes, which are sorted from low to high.</p>
+ *
+ * @author Fernando Ortega
+ */
+interface RatingsSource {
+
+	/**
+	 * Returns the users codes
+	 * @return Users codes sorted from low to high
+	 */
+	int [] getUserCodes ();
+
+	/**
+	 * Returns the items codes
+	 * @return Items codes sorted from low to high
+	 */
+	int [] getItemCodes ();
+
+	/**
+	 * Returns the index of an user code
+	 * @param userCode User code
+	 * @return User index or -1 if the user does not exist
+	 */
+	int getUserIndex (int userCode);
+
+	/**
+	 * Returns the index of an item code
+	 * @param itemCode Item code
+	 * @return Item index or -1 if the item does not exist
+	 */
+	int getItemIndex (int itemCode);
+
+	/**
+	 * Returns the items rated by an user
+	 * @param userIndex User index
+	 * @return Items codes sorted from low to high
+	 */
+	int [] getUserItems (int userIndex);
+
+	/**
+	 * Returns the ratings of an user
+	 * @param userIndex User index
+	 * @return Ratings overlapping with getUserItems(userIndex)
+	 */
+	double [] getUserRatings (int userIndex);
+
+	/**
+	 * Returns the users that have rated an item
+	 * @param itemIndex Item index
+	 * @return Users codes sorted from low to high
+	 */
+	int [] getItemUsers (int itemIndex);
+
+	/**
+	 * Returns the ratings of an item
+	 * @param itemIndex Item index
+	 * @return Ratings overlapping with getItemUsers(itemIndex)
+	 */
+	double [] getItemRatings (int itemIndex);
+
+	/**
+	 * Returns the number of ratings of an user without reading them
+	 * @param userIndex User index
+	 * @return Number of ratings of the user
+	 */
+	int getNumberOfUserRatings (int userIndex);
+
+	/**
+	 * Returns the number of ratings of an item without reading them
+	 * @param itemIndex Item index
+	 * @return Number of ratings of the item
+	 */
+	int getNumberOfItemRatings (int itemIndex);
+
+	/**
+	 * Returns the number of ratings
+	 * @return Number of ratings
+	 */
+	long getNumberOfRatings ();
+
+	/**
+	 * Returns the minimum rating
+	 * @return Minimum rating
+	 */
+	double getMinRating ();
+
+	/**
+	 * Returns the maximum rating
+	 * @return Maximum rating
+	 */
+	double getMaxRating ();
+
+	/**
+	 * Returns the store that keeps the ratings of the users after the Kernel is built
+	 * @return Users store or null if the ratings must be held by the users
+	 */
+	RatingsStore getUsersStore ();
+
+	/**
+	 * Returns the store that keeps the ratings of the items after the Kernel is built
+	 * @return Items store or null if the ratings must be held by the items
+	 */
+	RatingsStore getItemsStore ();
+}
@@ -0,0 +1,153 @@
+package cf4j;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Storage of the ratings of a set of users or items outside of the User and Item objects. Each
+ * user or item is a row of the store identified by its index. The codes of a row are sorted from
+ * low to high and the ratings overlap with them.</p>
+ *
+ * <p>Implementations must allow concurrent reads.</p>
+ *
+ * @author Fernando Ortega
+ */
+abstract class RatingsStore {
+
+	/**
+	 * Returns the number of ratings of a row
+	 * @param row Row index
+	 * @return Number of ratings
+	 */
+	abstract int size (int row);
+
+	/**
+	 * Returns a code of a row
+	 * @param row Row index
+	 * @param pos Position in the row
+	 * @return Code at the position
+	 */
+	abstract int getCode (int row, int pos);
+
+	/**
+	 * Returns a rating of a row
+	 * @param row Row index
+	 * @param pos Position in the row
+	 * @return Rating at the position
+	 */
+	abstract double getRating (int row, int pos);
+
+	/**
+	 * Returns the kernel index of a code of a row. Stores that do not keep the indexes return -1
+	 * and the code must be searched at the Kernel.
+	 * @param row Row index
+	 * @param pos Position in the row
+	 * @return Kernel index of the code at the position or -1
+	 */
+	int getIndex (int row, int pos) {
+		return -1;
+	}
+
+	/**
+	 * Checks if the ratings are read from a memory mapped file
+	 * @return True if the store is memory mapped
+	 */
+	boolean isMapped () {
+		return false;
+	}
+
+	/**
+	 * Copies the codes of a row into a new array
+	 * @param row Row index
+	 * @return Codes sorted from low to high
+	 */
+	int [] getCodes (int row) {
+		int [] codes = new int [this.size(row)];
+		this.getCodes(row, codes);
+		return codes;
+	}
+
+	/**
+	 * Copies the codes of a row into an array
+	 * @param row Row index
+	 * @param codes Array with at least size(row) positions
+	 * @return Number of codes copied
+	 */
+	int getCodes (int row, int [] codes) {
+		int size = this.size(row);
+		for (int pos = 0; pos < size; pos++) codes[pos] = this.getCode(row, pos);
+		return size;
+	}
+
+	/**
+	 * Copies the ratings of a row into a new array
+	 * @param row Row index
+	 * @return Ratings overlapping with getCodes(row)
+	 */
+	double [] getRatings (int row) {
+		double [] ratings = new double [this.size(row)];
+		this.getRatings(row, ratings);
+		return ratings;
+	}
+
+	/**
+	 * Copies the ratings of a row into an array
+	 * @param row Row index
+	 * @param ratings Array with at least size(row) positions
+	 * @return Number of ratings copied
+	 */
+	int getRatings (int row, double [] ratings) {
+		int size = this.size(row);
+		for (int pos = 0; pos < size; pos++) ratings[pos] = this.getRating(row, pos);
+		return size;
+	}
+
+	/**
+	 * Computes the average of the ratings of a row without copying them (see Methods.arrayAverage(...))
+	 * @param row Row index
+	 * @return Rating average
+	 */
+	double average (int row) {
+		int size = this.size(row);
+		double average = 0;
+		for (int pos = 0; pos < size; pos++) average += this.getRating(row, pos);
+		return average / (double) size;
+	}
+
+	/**
+	 * Computes the standard deviation of the ratings of a row without copying them (see
+	 * Methods.arrayStandardDeviation(...))
+	 * @param row Row index
+	 * @return Rating standard deviation
+	 */
+	double standardDeviation (int row) {
+		int size = this.size(row);
+		double average = this.average(row);
+		double standardDeviation = 0;
+		for (int pos = 0; pos < size; pos++) {
+			double d = this.getRating(row, pos);
+			standardDeviation += (d - average) * (d - average);
+		}
+		return Math.sqrt(standardDeviation / (double) size);
+	}
+
+	/**
+	 * Gets the position of a code in a row
+	 * @param row Row index
+	 * @param code Code to be found
+	 * @return Position of the code or -1 if not found
+	 */
+	int indexOf (int row, int code) {
+		int min = 0, max = this.size(row) - 1;
+		while (min <= max) {
+			int center = ((max - min) / 2) + min;
+			int value = this.getCode(row, center);
+			if (value == code) return center;
+			if (code < value) {
+				max = center - 1;
+			} else {
+				min = center + 1;
+			}
+		}
+		return -1;
+	}
+}
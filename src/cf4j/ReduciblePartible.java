@@ -0,0 +1,45 @@
+package cf4j;
+
+/**
+ * <p>Partible whose threads accumulate their results in private states that are combined when all
+ * the threads end, so the threads do not need locks or atomic updates to share the results.</p>
+ *
+ * <p>The Processor executes the methods in this order:</p>
+ * <ol>
+ * 		<li>beforeRun: once.</li>
+ * 		<li>createState: once for each thread, before the thread processes its first index.</li>
+ * 		<li>run(from, to, state): for each range of consecutive indexes (see RangePartible) with the
+ * 		state of the thread that processes it.</li>
+ * 		<li>reduce: once for each state, in the calling thread, after all the threads end.</li>
+ * 		<li>afterRun: once.</li>
+ * </ol>
+ * <p>run(index) is not executed by the Processor. It should process one index with a new state and
+ * reduce it.</p>
+ *
+ * @param <S> Type of the state of a thread
+ * @see Partible
+ * @author Fernando Ortega
+ */
+public interface ReduciblePartible <S> extends Partible {
+
+	/**
+	 * Is executed once for each thread to create its private state.
+	 * @return State of the thread
+	 */
+	public S createState ();
+
+	/**
+	 * Is executed for each range of consecutive indexes.
+	 * @param from First index of the range.
+	 * @param to Index after the last index of the range.
+	 * @param state State of the thread that processes the range.
+	 */
+	public void run (int from, int to, S state);
+
+	/**
+	 * Is executed once for each state after all the threads end. The states are reduced one
+	 * after the other, so this method does not need to be thread safe.
+	 * @param state State of a thread
+	 */
+	public void reduce (S state);
+}
@@ -0,0 +1,100 @@
+package cf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Store whose rows are made of some positions of the rows of another store. It allows to split the
+ * ratings of a memory mapped user or item into training and test ratings keeping only the selected
+ * positions in the heap instead of a copy of the codes and the ratings.</p>
+ *
+ * <p>Rows are appended one by one with add(...) and they can be read as soon as they are added.</p>
+ *
+ * @author Fernando Ortega
+ */
+class SelectionStore extends RatingsStore {
+
+	/**
+	 * Store that contains the ratings
+	 */
+	private final RatingsStore base;
+
+	/**
+	 * Row of the base store of each row
+	 */
+	private int [] baseRows = new int [16];
+
+	/**
+	 * Position of the first selected position of each row (and the number of positions at the end)
+	 */
+	private int [] offsets = new int [17];
+
+	/**
+	 * Selected positions of the rows of the base store
+	 */
+	private int [] positions = new int [16];
+
+	/**
+	 * Number of rows
+	 */
+	private int numRows = 0;
+
+	/**
+	 * Creates an empty selection
+	 * @param base Store that contains the ratings
+	 */
+	SelectionStore (RatingsStore base) {
+		this.base = base;
+	}
+
+	/**
+	 * Appends a row
+	 * @param baseRow Row of the base store
+	 * @param positions Selected positions of the row of the base store sorted from low to high
+	 * @param count Number of selected positions
+	 * @return Index of the new row
+	 */
+	int add (int baseRow, int [] positions, int count) {
+		if (this.numRows == this.baseRows.length) {
+			this.baseRows = Arrays.copyOf(this.baseRows, this.numRows * 2);
+			this.offsets = Arrays.copyOf(this.offsets, this.numRows * 2 + 1);
+		}
+
+		int offset = this.offsets[this.numRows];
+		if (offset + count > this.positions.length) {
+			this.positions = Arrays.copyOf(this.positions, Math.max(offset + count, this.positions.length * 2));
+		}
+
+		System.arraycopy(positions, 0, this.positions, offset, count);
+		this.baseRows[this.numRows] = baseRow;
+		this.offsets[this.numRows + 1] = offset + count;
+
+		return this.numRows++;
+	}
+
+	@Override
+	boolean isMapped () {
+		return this.base.isMapped();
+	}
+
+	@Override
+	int size (int row) {
+		return this.offsets[row + 1] - this.offsets[row];
+	}
+
+	@Override
+	int getCode (int row, int pos) {
+		return this.base.getCode(this.baseRows[row], this.positions[this.offsets[row] + pos]);
+	}
+
+	@Override
+	double getRating (int row, int pos) {
+		return this.base.getRating(this.baseRows[row], this.positions[this.offsets[row] + pos]);
+	}
+
+	@Override
+	int getIndex (int row, int pos) {
+		return this.base.getIndex(this.baseRows[row], this.positions[this.offsets[row] + pos]);
+	}
+}
@@ -0,0 +1,144 @@
+package cf4j;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import cf4j.utils.RatingTokenizer;
+
+/**
+ * <p><b>The final user must not use this class.</b></p>
+ *
+ * <p>Reads ratings from a stream that can only be read once. Gzip and deflate (zlib) streams are
+ * detected by their header and decompressed in a background thread while the lines are parsed. The
+ * ratings are kept in a buffer until the end of the stream and then they are added to the builder.</p>
+ *
+ * <p>The separator is matched literally. Empty lines are ignored.</p>
+ *
+ * @author Fernando Ortega
+ */
+class StreamDatasetReader {
+
+	/**
+	 * Initial size of the lines buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Reads the ratings of a stream into a builder. The stream is closed at the end.
+	 * @param in Stream with the ratings (plain text, gzip or deflate)
+	 * @param separator Separator between file fields
+	 * @param ratings Builder where the ratings are collected
+	 * @throws IOException If the stream can not be read
+	 * @throws NumberFormatException If a line is malformed
+	 */
+	static void read (InputStream in, String separator, RatingsBuilder ratings) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in);
+
+		buffered.mark(2);
+		int b0 = buffered.read();
+		int b1 = buffered.read();
+		buffered.reset();
+
+		InputStream source = buffered;
+		if (StreamDatasetReader.isGzip(b0, b1)) {
+			source = new PipelinedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE));
+		} else if (StreamDatasetReader.isDeflate(b0, b1)) {
+			source = new PipelinedInputStream(new InflaterInputStream(buffered));
+		}
+
+		RatingsBuffer buffer = new RatingsBuffer(BUFFER_SIZE);
+		try {
+			StreamDatasetReader.parse(source, new RatingTokenizer(separator), buffer);
+		} finally {
+			source.close();
+		}
+
+		buffer.countInto(ratings);
+		ratings.allocate();
+		buffer.addInto(ratings);
+		ratings.finish();
+	}
+
+	/**
+	 * Checks if a file is compressed with gzip or deflate
+	 * @param filename File name
+	 * @return True if the file starts with a gzip or zlib header
+	 */
+	static boolean isCompressed (String filename) {
+		try (InputStream in = new FileInputStream(filename)) {
+			int b0 = in.read();
+			int b1 = in.read();
+			return StreamDatasetReader.isGzip(b0, b1) || StreamDatasetReader.isDeflate(b0, b1);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks the gzip magic number
+	 * @param b0 First byte
+	 * @param b1 Second byte
+	 * @return True if the bytes are the gzip magic number
+	 */
+	private static boolean isGzip (int b0, int b1) {
+		return b0 == 0x1F && b1 == 0x8B;
+	}
+
+	/**
+	 * Checks the zlib header: deflate method, valid window size, valid check bits and no preset
+	 * dictionary. Lines starting with a digit never match this header.
+	 * @param b0 First byte
+	 * @param b1 Second byte
+	 * @return True if the bytes are a zlib header
+	 */
+	private static boolean isDeflate (int b0, int b1) {
+		if (b0 == -1 || b1 == -1) return false;
+		return (b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0 && (b1 & 0x20) == 0;
+	}
+
+	/**
+	 * Parses the lines of a stream
+	 * @param in Stream
+	 * @param tokenizer Tokenizer
+	 * @param ratings Buffer where the ratings are stored
+	 * @throws IOException If the stream can not be read
+	 */
+	private static void parse (InputStream in, RatingTokenizer tokenizer, RatingsBuffer ratings) throws IOException {
+		byte [] buf = new byte [BUFFER_SIZE];
+		int pos = 0, limit = 0, scan = 0;
+
+		while (true) {
+			int read = in.read(buf, limit, buf.length - limit);
+			if (read == -1) break;
+			limit += read;
+
+			for (int i = scan; i < limit; i++) {
+				if (buf[i] == '\n') {
+					if (tokenizer.parse(buf, pos, i)) {
+						ratings.add(tokenizer.getUserCode(), tokenizer.getItemCode(), tokenizer.getRating());
+					}
+					pos = i + 1;
+				}
+			}
+
+			// Move the incomplete line to the beginning of the buffer
+			if (pos > 0) {
+				System.arraycopy(buf, pos, buf, 0, limit - pos);
+				limit -= pos;
+				pos = 0;
+			} else if (limit == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			scan = limit;
+		}
+
+		if (tokenizer.parse(buf, pos, limit)) {
+			ratings.add(tokenizer.getUserCode(), tokenizer.getItemCode(), tokenizer.getRating());
+		}
+	}
+}
@@ -33,6 +33,12 @@ public class TestItem extends Item {
 	 */
 	protected double [] testRatings;
 	
+	/**
+	 * Store of the test ratings of the item if they are not held by the item (testUsers and testRatings are null).
+	 * The row of the item in the store is its test index.
+	 */
+	transient RatingsStore testStore;
+	
 	/**
 	 * Test rating average of the item
 	 */
@@ -62,6 +68,23 @@ public class TestItem extends Item {
 		this.testRatingStandardDeviation = Methods.arrayStandardDeviation(testRatings);
 	}
 
+	/**
+	 * Creates a new instance of a test item whose training and test ratings are kept in stores.
+	 * @param itemCode Item code
+	 * @param itemIndex Item index
+	 * @param store Store of the ratings
+	 * @param row Row of the item in the store
+	 * @param testItemIndex Test item index
+	 * @param testStore Store of the test ratings whose row of the item is its test index
+	 */
+	TestItem (int itemCode, int itemIndex, RatingsStore store, int row, int testItemIndex, RatingsStore testStore) {
+		super(itemCode, itemIndex, store, row);
+		this.testItemIndex = testItemIndex;
+		this.testStore = testStore;
+		this.testRatingAverage = testStore.average(testItemIndex);
+		this.testRatingStandardDeviation = testStore.standardDeviation(testItemIndex);
+	}
+
 	/**
 	 * Average of the test ratings
 	 * @return Test ratings average
@@ -87,12 +110,54 @@ public class TestItem extends Item {
 	}
 	
 	/**
-	 * Get the test users that have rated the item
+	 * Replaces the test ratings of the item and updates its statistics
+	 * @param testUsers Test users that have rated the item
+	 * @param testRatings Test ratings of the users
+	 */
+	void setTestRatings (int [] testUsers, double [] testRatings) {
+		this.testStore = null;
+		this.testUsers = testUsers;
+		this.testRatings = testRatings;
+		this.testRatingAverage = Methods.arrayAverage(testRatings);
+		this.testRatingStandardDeviation = Methods.arrayStandardDeviation(testRatings);
+	}
+	
+	/**
+	 * Moves the test ratings of the item to a store. The row of the item in the store must be its
+	 * test index.
+	 * @param testStore Store that contains the test ratings of the item
+	 */
+	void setTestStore (RatingsStore testStore) {
+		this.testStore = testStore;
+		this.testUsers = null;
+		this.testRatings = null;
+	}
+	
+	/**
+	 * Get the test users that have rated the item. The test ratings of the items loaded by the Kernel
+	 * are kept in a store, so each call allocates a new array with a copy of them. getTestUserAt(...)
+	 * or getTestUsers(int []) should be used in loops.
 	 * @return Test users codes sorted from low to high. 
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getTestUserAt(...) or getTestUsers(int []) instead.
 	 */
+	@Deprecated
 	public int [] getTestUsers() {
+		if (this.testStore != null) return this.testStore.getCodes(this.testItemIndex);
 		return this.testUsers;
 	}
+
+	/**
+	 * Copies the test users codes that have rated the item into an array without allocating a new one,
+	 * so it can be used in loops instead of getTestUsers().
+	 * @param testUsers Array with at least getNumberOfTestRatings() positions
+	 * @return Number of test users codes copied
+	 */
+	public int getTestUsers (int [] testUsers) {
+		if (this.testStore != null) return this.testStore.getCodes(this.testItemIndex, testUsers);
+		System.arraycopy(this.testUsers, 0, testUsers, 0, this.testUsers.length);
+		return this.testUsers.length;
+	}
 	
 	/**
 	 * Returns the test user code at index position. 
@@ -100,17 +165,48 @@ public class TestItem extends Item {
 	 * @return Test user code at index. 
 	 */
 	public int getTestUserAt(int index) {
-		return this.getTestUsers()[index];
+		if (this.testStore != null) return this.testStore.getCode(this.testItemIndex, index);
+		return this.testUsers[index];
+	}
+
+	/**
+	 * Returns the index at the Kernel users array of the test user at index position. It must be
+	 * used instead of searching the user code at the Kernel.
+	 * @param index Index.
+	 * @return Kernel index of the test user at index.
+	 */
+	public int getTestUserIndexAt(int index) {
+		int userIndex = (this.testStore != null) ? this.testStore.getIndex(this.testItemIndex, index) : -1;
+		if (userIndex == -1) userIndex = Kernel.gi().getUserIndex(this.getTestUserAt(index));
+		return userIndex;
 	}
 
 	/**
 	 * Get the test ratings of the test users to the item. The indexes of this 
-	 * array overlaps with indexes of the getTestUsers() array.
+	 * array overlaps with indexes of the getTestUsers() array. The test ratings of the items loaded by
+	 * the Kernel are kept in a store, so each call allocates a new array with a copy of them.
+	 * getTestRatingAt(...) or getTestRatings(double []) should be used in loops.
 	 * @return Test users ratings
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getTestRatingAt(...) or getTestRatings(double []) instead.
 	 */
+	@Deprecated
 	public double [] getTestRatings() {
+		if (this.testStore != null) return this.testStore.getRatings(this.testItemIndex);
 		return this.testRatings;
 	}
+
+	/**
+	 * Copies the test ratings of the test users to the item into an array without allocating a new
+	 * one, so it can be used in loops instead of getTestRatings().
+	 * @param testRatings Array with at least getNumberOfTestRatings() positions
+	 * @return Number of test ratings copied
+	 */
+	public int getTestRatings (double [] testRatings) {
+		if (this.testStore != null) return this.testStore.getRatings(this.testItemIndex, testRatings);
+		System.arraycopy(this.testRatings, 0, testRatings, 0, this.testRatings.length);
+		return this.testRatings.length;
+	}
 	
 	/**
 	 * Returns the test rating at index position. 
@@ -118,7 +214,8 @@ public class TestItem extends Item {
 	 * @return Test rating at index. 
 	 */
 	public double getTestRatingAt(int index) {
-		return this.getTestRatings()[index];
+		if (this.testStore != null) return this.testStore.getRating(this.testItemIndex, index);
+		return this.testRatings[index];
 	}
 	
 	/**
@@ -128,6 +225,7 @@ public class TestItem extends Item {
 	 * 	the item or -1 if not
 	 */
 	public int getTestUserIndex (int user_code) {
+		if (this.testStore != null) return this.testStore.indexOf(this.testItemIndex, user_code);
 		return Methods.getIndex(this.testUsers, user_code);
 	}
 	
@@ -136,6 +234,7 @@ public class TestItem extends Item {
 	 * @return Number of test ratings received
 	 */
 	public int getNumberOfTestRatings () {
+		if (this.testStore != null) return this.testStore.size(this.testItemIndex);
 		return this.testRatings.length;
 	}
 	
@@ -34,6 +34,12 @@ public class TestUser extends User {
 	 */
 	protected double [] testRatings;
 	
+	/**
+	 * Store of the test ratings of the user if they are not held by the user (testItems and testRatings are null).
+	 * The row of the user in the store is its test index.
+	 */
+	transient RatingsStore testStore;
+	
 	/**
 	 * Test rating average of the user
 	 */
@@ -63,6 +69,23 @@ public class TestUser extends User {
 		this.testRatingStandardDeviation = Methods.arrayStandardDeviation(testRatings);
 	}
 	
+	/**
+	 * Creates a new instance of a test user whose training and test ratings are kept in stores.
+	 * @param userCode User code
+	 * @param userIndex User index
+	 * @param store Store of the ratings
+	 * @param row Row of the user in the store
+	 * @param testUserIndex Test user index
+	 * @param testStore Store of the test ratings whose row of the user is its test index
+	 */
+	TestUser (int userCode, int userIndex, RatingsStore store, int row, int testUserIndex, RatingsStore testStore) {
+		super(userCode, userIndex, store, row);
+		this.testUserIndex = testUserIndex;
+		this.testStore = testStore;
+		this.testRatingAverage = testStore.average(testUserIndex);
+		this.testRatingStandardDeviation = testStore.standardDeviation(testUserIndex);
+	}
+	
 	/**
 	 * Average of the test ratings
 	 * @return Test rating average
@@ -88,12 +111,54 @@ public class TestUser extends User {
 	}
 	
 	/**
-	 * Get the test items rated by the user
+	 * Replaces the test ratings of the user and updates its statistics
+	 * @param testItems Test items that the user have rated
+	 * @param testRatings Test ratings of the user to the items
+	 */
+	void setTestRatings (int [] testItems, double [] testRatings) {
+		this.testStore = null;
+		this.testItems = testItems;
+		this.testRatings = testRatings;
+		this.testRatingAverage = Methods.arrayAverage(testRatings);
+		this.testRatingStandardDeviation = Methods.arrayStandardDeviation(testRatings);
+	}
+	
+	/**
+	 * Moves the test ratings of the user to a store. The row of the user in the store must be its
+	 * test index.
+	 * @param testStore Store that contains the test ratings of the user
+	 */
+	void setTestStore (RatingsStore testStore) {
+		this.testStore = testStore;
+		this.testItems = null;
+		this.testRatings = null;
+	}
+	
+	/**
+	 * Get the test items rated by the user. The test ratings of the users loaded by the Kernel are
+	 * kept in a store, so each call allocates a new array with a copy of them. getTestItemAt(...) or
+	 * getTestItems(int []) should be used in loops.
 	 * @return Test items codes sorted from low to high. 
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getTestItemAt(...) or getTestItems(int []) instead.
 	 */
+	@Deprecated
 	public int [] getTestItems() {
+		if (this.testStore != null) return this.testStore.getCodes(this.testUserIndex);
 		return this.testItems;
 	}
+
+	/**
+	 * Copies the test items codes rated by the user into an array without allocating a new one, so it
+	 * can be used in loops instead of getTestItems().
+	 * @param testItems Array with at least getNumberOfTestRatings() positions
+	 * @return Number of test items codes copied
+	 */
+	public int getTestItems (int [] testItems) {
+		if (this.testStore != null) return this.testStore.getCodes(this.testUserIndex, testItems);
+		System.arraycopy(this.testItems, 0, testItems, 0, this.testItems.length);
+		return this.testItems.length;
+	}
 	
 	/**
 	 * Returns the test item code at index position. 
@@ -101,17 +166,48 @@ public class TestUser extends User {
 	 * @return Test item code at index. 
 	 */
 	public int getTestItemAt(int index) {
-		return this.getTestItems()[index];
+		if (this.testStore != null) return this.testStore.getCode(this.testUserIndex, index);
+		return this.testItems[index];
+	}
+
+	/**
+	 * Returns the index at the Kernel items array of the test item at index position. It must be
+	 * used instead of searching the item code at the Kernel.
+	 * @param index Index.
+	 * @return Kernel index of the test item at index.
+	 */
+	public int getTestItemIndexAt(int index) {
+		int itemIndex = (this.testStore != null) ? this.testStore.getIndex(this.testUserIndex, index) : -1;
+		if (itemIndex == -1) itemIndex = Kernel.gi().getItemIndex(this.getTestItemAt(index));
+		return itemIndex;
 	}
 
 	/**
 	 * Get the ratings of the test items. The indexes of this array overlaps
-	 * with indexes of the getTestItems() array.
+	 * with indexes of the getTestItems() array. The test ratings of the users loaded by the Kernel
+	 * are kept in a store, so each call allocates a new array with a copy of them.
+	 * getTestRatingAt(...) or getTestRatings(double []) should be used in loops.
 	 * @return Test items ratings
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getTestRatingAt(...) or getTestRatings(double []) instead.
 	 */
+	@Deprecated
 	public double [] getTestRatings() {
+		if (this.testStore != null) return this.testStore.getRatings(this.testUserIndex);
 		return this.testRatings;
 	}
+
+	/**
+	 * Copies the test ratings of the user into an array without allocating a new one, so it can be
+	 * used in loops instead of getTestRatings().
+	 * @param testRatings Array with at least getNumberOfTestRatings() positions
+	 * @return Number of test ratings copied
+	 */
+	public int getTestRatings (double [] testRatings) {
+		if (this.testStore != null) return this.testStore.getRatings(this.testUserIndex, testRatings);
+		System.arraycopy(this.testRatings, 0, testRatings, 0, this.testRatings.length);
+		return this.testRatings.length;
+	}
 	
 	/**
 	 * Returns the test rating at index position. 
@@ -119,7 +215,8 @@ public class TestUser extends User {
 	 * @return Test rating at index. 
 	 */
 	public double getTestRatingAt(int index) {
-		return this.getTestRatings()[index];
+		if (this.testStore != null) return this.testStore.getRating(this.testUserIndex, index);
+		return this.testRatings[index];
 	}
 	
 	/**
@@ -128,6 +225,7 @@ public class TestUser extends User {
 	 * @return Test item index if the user has rated the item or -1 if not
 	 */
 	public int getTestItemIndex (int item_code) {
+		if (this.testStore != null) return this.testStore.indexOf(this.testUserIndex, item_code);
 		return Methods.getIndex(this.testItems, item_code);
 	}
 	
@@ -136,6 +234,7 @@ public class TestUser extends User {
 	 * @return Number of test ratings made
 	 */
 	public int getNumberOfTestRatings () {
+		if (this.testStore != null) return this.testStore.size(this.testUserIndex);
 		return this.testRatings.length;
 	}
 	
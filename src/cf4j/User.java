@@ -46,6 +46,16 @@ public class User implements Serializable {
 	 */
 	protected double [] ratings;
 	
+	/**
+	 * Store of the ratings of the user if they are not held by the user (items and ratings are null)
+	 */
+	transient RatingsStore store;
+	
+	/**
+	 * Row of the user in the store
+	 */
+	transient int row;
+	
 	/**
 	 * Rating average of the user ratings
 	 */
@@ -73,6 +83,24 @@ public class User implements Serializable {
 		this.ratingStandardDeviation = Methods.arrayStandardDeviation(ratings);
 	}
 	
+	/**
+	 * Creates a new instance of an user whose ratings are kept in a store. The statistics are
+	 * computed reading the store, so the ratings are not copied.
+	 * @param userCode User code
+	 * @param userIndex User index
+	 * @param store Store of the ratings
+	 * @param row Row of the user in the store
+	 */
+	User (int userCode, int userIndex, RatingsStore store, int row) {
+		this.userCode = userCode;
+		this.itemIndex = userIndex;
+		this.map = new HashMap<String, Object>();
+		this.store = store;
+		this.row = row;
+		this.ratingAverage = store.average(row);
+		this.ratingStandardDeviation = store.standardDeviation(row);
+	}
+	
 	/**
 	 * Write a data in the user map.
 	 * @param key Key associated to the value
@@ -134,12 +162,64 @@ public class User implements Serializable {
 	}
 
 	/**
-	 * Returns the items codes rated by the user. 
+	 * Replaces the ratings of the user and updates its statistics. After that, the ratings are held
+	 * by the user.
+	 * @param items Items that the user have rated
+	 * @param ratings Ratings of the user to the items
+	 */
+	void setRatings (int [] items, double [] ratings) {
+		this.store = null;
+		this.items = items;
+		this.ratings = ratings;
+		this.ratingAverage = Methods.arrayAverage(ratings);
+		this.ratingStandardDeviation = Methods.arrayStandardDeviation(ratings);
+	}
+	
+	/**
+	 * Moves the ratings of the user to a store
+	 * @param store Store that contains the ratings of the user
+	 * @param row Row of the user in the store
+	 */
+	void setStore (RatingsStore store, int row) {
+		this.store = store;
+		this.row = row;
+		this.items = null;
+		this.ratings = null;
+	}
+	
+	/**
+	 * Changes the index of the user
+	 * @param userIndex New user index
+	 */
+	void setUserIndex (int userIndex) {
+		this.itemIndex = userIndex;
+	}
+
+	/**
+	 * Returns the items codes rated by the user. The ratings of the users loaded by the Kernel are
+	 * kept in a store, so each call allocates a new array with a copy of them. getItemAt(...) or
+	 * getItems(int []) should be used in loops.
 	 * @return Items codes sorted from low to high. 
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getItemAt(...) or getItems(int []) instead.
 	 */
+	@Deprecated
 	public int[] getItems() {
+		if (this.store != null) return this.store.getCodes(this.row);
 		return this.items;
 	}
+
+	/**
+	 * Copies the items codes rated by the user into an array without allocating a new one, so it can
+	 * be used in loops instead of getItems().
+	 * @param items Array with at least getNumberOfRatings() positions
+	 * @return Number of items codes copied
+	 */
+	public int getItems (int [] items) {
+		if (this.store != null) return this.store.getCodes(this.row, items);
+		System.arraycopy(this.items, 0, items, 0, this.items.length);
+		return this.items.length;
+	}
 	
 	/**
 	 * Returns the item code at index position. 
@@ -147,17 +227,48 @@ public class User implements Serializable {
 	 * @return Item code at index. 
 	 */
 	public int getItemAt(int index) {
-		return this.getItems()[index];
+		if (this.store != null) return this.store.getCode(this.row, index);
+		return this.items[index];
+	}
+
+	/**
+	 * Returns the index at the Kernel items array of the item at index position. It must be used
+	 * instead of searching the item code at the Kernel.
+	 * @param index Index.
+	 * @return Kernel index of the item at index.
+	 */
+	public int getItemIndexAt(int index) {
+		int itemIndex = (this.store != null) ? this.store.getIndex(this.row, index) : -1;
+		if (itemIndex == -1) itemIndex = Kernel.gi().getItemIndex(this.getItemAt(index));
+		return itemIndex;
 	}
 
 	/**
 	 * Returns the ratings given by the user to the items. The indexes of the 
-	 * array overlaps with indexes of the getItems() array.
+	 * array overlaps with indexes of the getItems() array. The ratings of the users loaded by the
+	 * Kernel are kept in a store, so each call allocates a new array with a copy of them.
+	 * getRatingAt(...) or getRatings(double []) should be used in loops.
 	 * @return Items ratings.
+	 * @deprecated Since the ratings are kept in a store, it returns a copy of them and the changes
+	 * made to the returned array are lost. Use getRatingAt(...) or getRatings(double []) instead.
 	 */
+	@Deprecated
 	public double [] getRatings() {
+		if (this.store != null) return this.store.getRatings(this.row);
 		return this.ratings;
 	}
+
+	/**
+	 * Copies the ratings of the user into an array without allocating a new one, so it can be used in
+	 * loops instead of getRatings().
+	 * @param ratings Array with at least getNumberOfRatings() positions
+	 * @return Number of ratings copied
+	 */
+	public int getRatings (double [] ratings) {
+		if (this.store != null) return this.store.getRatings(this.row, ratings);
+		System.arraycopy(this.ratings, 0, ratings, 0, this.ratings.length);
+		return this.ratings.length;
+	}
 	
 	/**
 	 * Returns the rating at index position. 
@@ -165,7 +276,8 @@ public class User implements Serializable {
 	 * @return Rating at index. 
 	 */
 	public double getRatingAt(int index) {
-		return this.getRatings()[index];
+		if (this.store != null) return this.store.getRating(this.row, index);
+		return this.ratings[index];
 	}
 	
 	/**
@@ -174,6 +286,7 @@ public class User implements Serializable {
 	 * @return Item index if the user has rated the item or -1 if not
 	 */
 	public int getItemIndex (int item_code) {
+		if (this.store != null) return this.store.indexOf(this.row, item_code);
 		return Methods.getIndex(this.items, item_code);
 	}
 
@@ -182,6 +295,7 @@ public class User implements Serializable {
 	 * @return Number of ratings
 	 */
 	public int getNumberOfRatings () {
+		if (this.store != null) return this.store.size(this.row);
 		return this.ratings.length;
 	}
 }
@@ -27,14 +27,14 @@ public class Mean implements TestUsersPartible {
 	public void run (int testUserIndex) {
 
 		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+		Item [] items = Kernel.gi().getItems();
 				
 		int numRatings = testUser.getNumberOfTestRatings();
 		double [] predictions = new double [numRatings];
 		
 		for (int testItemIndex = 0; testItemIndex < numRatings; testItemIndex++) {
 			
-			int itemCode = testUser.getTestItems()[testItemIndex];
-			TestItem item = Kernel.gi().getTestItemByCode(itemCode);
+			TestItem item = (TestItem) items[testUser.getTestItemIndexAt(testItemIndex)];
 			
 			int [] neighbors = item.getNeighbors();
 			int count = 0;
@@ -43,12 +43,12 @@ public class Mean implements TestUsersPartible {
 				if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
 				
 				int itemIndex = neighbors[n];
-				Item neighbor = Kernel.gi().getItems()[itemIndex];
+				Item neighbor = items[itemIndex];
 				int neighborCode = neighbor.getItemCode();
 								
 				int i = testUser.getItemIndex(neighborCode);
 				if (i != -1) {
-					predictions[testItemIndex] += testUser.getRatings()[i];
+					predictions[testItemIndex] += testUser.getRatingAt(i);
 					count++;
 				}
 			}
@@ -49,14 +49,14 @@ public class WeightedMean implements TestUsersPartible {
 	public void run (int testUserIndex) {
 
 		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+		Item [] items = Kernel.gi().getItems();
 				
 		int numRatings = testUser.getNumberOfTestRatings();
 		double [] predictions = new double [numRatings];
 		
 		for (int testItemIndex = 0; testItemIndex < numRatings; testItemIndex++) {
 			
-			int itemCode = testUser.getTestItems()[testItemIndex];
-			TestItem item = Kernel.gi().getTestItemByCode(itemCode);
+			TestItem item = (TestItem) items[testUser.getTestItemIndexAt(testItemIndex)];
 			
 			double [] similarities = item.getSimilarities();
 			int [] neighbors = item.getNeighbors();
@@ -67,7 +67,7 @@ public class WeightedMean implements TestUsersPartible {
 				if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
 				
 				int itemIndex = neighbors[n];
-				Item neighbor = Kernel.gi().getItems()[itemIndex];
+				Item neighbor = items[itemIndex];
 				int neighborCode = neighbor.getItemCode();
 				
 								
@@ -76,7 +76,7 @@ public class WeightedMean implements TestUsersPartible {
 					double similarity = similarities[itemIndex];
 					double sim = (similarity - this.minSim) / (this.maxSim - this.minSim);
 					
-					double rating = testUser.getRatings()[i];
+					double rating = testUser.getRatingAt(i);
 					
 					predictions[testItemIndex] += sim * rating;
 					sumSimilarities += sim;
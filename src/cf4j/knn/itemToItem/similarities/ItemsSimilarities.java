@@ -2,6 +2,7 @@ package cf4j.knn.itemToItem.similarities;
 
 import cf4j.Item;
 import cf4j.Kernel;
+import cf4j.RangePartible;
 import cf4j.TestItem;
 import cf4j.TestItemsPartible;
 
@@ -17,7 +18,7 @@ import cf4j.TestItemsPartible;
  * 
  * @author Fernando Ortega
  */
-abstract public class ItemsSimilarities implements TestItemsPartible {
+abstract public class ItemsSimilarities implements TestItemsPartible, RangePartible {
 
 	/**
 	 * <p>Method to calculate the similarity measure between a pair of items.</p>
@@ -35,22 +36,31 @@ abstract public class ItemsSimilarities implements TestItemsPartible {
 
 	@Override
 	public void run (int testItemIndex) {
-		
-		TestItem activeItem = Kernel.getInstance().getTestItems()[testItemIndex];
-		
-		int numItems = Kernel.gi().getNumberOfItems();		
-		double [] similarities = new double [numItems];
-		
-		for (int i = 0; i < numItems; i++) {
-			Item targetItem = Kernel.gi().getItems()[i];
-			if (activeItem.getItemCode() == targetItem.getItemCode()) {
-				similarities[i] = Double.NEGATIVE_INFINITY;
-			} else { 
-				similarities[i] = this.similarity(activeItem, targetItem);
+		this.run(testItemIndex, testItemIndex + 1);
+	}
+
+	@Override
+	public void run (int from, int to) {
+		TestItem [] testItems = Kernel.getInstance().getTestItems();
+		Item [] items = Kernel.gi().getItems();
+
+		for (int testItemIndex = from; testItemIndex < to; testItemIndex++) {
+			TestItem activeItem = testItems[testItemIndex];
+
+			// The array is kept by the test item, so it can not be reused
+			double [] similarities = new double [items.length];
+
+			for (int i = 0; i < items.length; i++) {
+				Item targetItem = items[i];
+				if (activeItem.getItemCode() == targetItem.getItemCode()) {
+					similarities[i] = Double.NEGATIVE_INFINITY;
+				} else { 
+					similarities[i] = this.similarity(activeItem, targetItem);
+				}
 			}
+
+			activeItem.setSimilarities(similarities);
 		}
-		
-		activeItem.setSimilarities(similarities);
 	}
 	
 	@Override
@@ -12,6 +12,17 @@ import cf4j.User;
  */
 public class MetricAjustedCosine extends ItemsSimilarities {
 
+	/**
+	 * Users of the kernel
+	 */
+	private User [] users;
+
+	@Override
+	public void beforeRun () {
+		super.beforeRun();
+		this.users = Kernel.gi().getUsers();
+	}
+
 	@Override
 	public double similarity (TestItem activeItem, Item targetItem) {
 		
@@ -19,17 +30,16 @@ public class MetricAjustedCosine extends ItemsSimilarities {
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				int userCode = activeItem.getUsers()[u];
-				User user = Kernel.gi().getUserByCode(userCode);
+				User user = this.users[activeItem.getUserIndexAt(u)];
 				double avg = user.getRatingAverage();
 				
-				double fa = activeItem.getRatings()[u] - avg;
-				double ft = targetItem.getRatings()[v] - avg;
+				double fa = activeItem.getRatingAt(u) - avg;
+				double ft = targetItem.getRatingAt(v) - avg;
 				
 				num += fa * ft;
 				denActive += fa * fa;
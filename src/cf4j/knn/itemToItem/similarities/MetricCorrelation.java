@@ -17,13 +17,13 @@ public class MetricCorrelation extends ItemsSimilarities{
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				double fa = activeItem.getRatings()[u] - activeItem.getRatingAverage();
-				double ft = targetItem.getRatings()[v] - targetItem.getRatingAverage();
+				double fa = activeItem.getRatingAt(u) - activeItem.getRatingAverage();
+				double ft = targetItem.getRatingAt(v) - targetItem.getRatingAverage();
 				
 				num += fa * ft;
 				denActive += fa * fa;
@@ -34,8 +34,8 @@ public class MetricCorrelationConstrained extends ItemsSimilarities{
 	public MetricCorrelationConstrained () {
 		ArrayList <Double> ratings = new ArrayList <Double> ();
 		for (User user : Kernel.gi().getUsers()) {
-			for (double rating : user.getRatings()) {
-				ratings.add(rating);
+			for (int j = 0; j < user.getNumberOfRatings(); j++) {
+				ratings.add(user.getRatingAt(j));
 			}
 		}
 		
@@ -54,13 +54,13 @@ public class MetricCorrelationConstrained extends ItemsSimilarities{
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				double fa = activeItem.getRatings()[u] - this.median;
-				double ft = targetItem.getRatings()[v] - this.median;
+				double fa = activeItem.getRatingAt(u) - this.median;
+				double ft = targetItem.getRatingAt(v) - this.median;
 				
 				num += fa * ft;
 				denActive += fa * fa;
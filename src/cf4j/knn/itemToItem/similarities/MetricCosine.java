@@ -17,14 +17,14 @@ public class MetricCosine extends ItemsSimilarities{
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				num += activeItem.getRatings()[u] * targetItem.getRatings()[v];
-				denActive += activeItem.getRatings()[u] * activeItem.getRatings()[u];
-				denTarget += targetItem.getRatings()[v] * targetItem.getRatings()[v];
+				num += activeItem.getRatingAt(u) * targetItem.getRatingAt(v);
+				denActive += activeItem.getRatingAt(u) * activeItem.getRatingAt(u);
+				denTarget += targetItem.getRatingAt(v) * targetItem.getRatingAt(v);
 				
 				common++;
 				u++; 
@@ -32,12 +32,12 @@ public class MetricJMSD extends ItemsSimilarities{
 		double msd = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				double diff = (activeItem.getRatings()[u] - targetItem.getRatings()[v]) / this.maxDiff;
+				double diff = (activeItem.getRatingAt(u) - targetItem.getRatingAt(v)) / this.maxDiff;
 				msd += diff * diff;
 				intersection++;
 				u++; 
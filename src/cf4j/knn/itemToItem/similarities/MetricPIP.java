@@ -28,6 +28,11 @@ public class MetricPIP extends ItemsSimilarities {
 	 * Minimum rating value
 	 */
 	private double min;
+
+	/**
+	 * Users of the kernel
+	 */
+	private User [] users;
 	
 	/**
 	 * Constructor of the similarity metric
@@ -39,6 +44,12 @@ public class MetricPIP extends ItemsSimilarities {
 		this.median = ((double) (Kernel.gi().getMaxRating() + Kernel.gi().getMinRating())) / 2d;
 	}
 	
+	@Override
+	public void beforeRun () {
+		super.beforeRun();
+		this.users = Kernel.gi().getUsers();
+	}
+
 	@Override
 	public double similarity (TestItem activeItem, Item targetItem) {	
 
@@ -46,13 +57,13 @@ public class MetricPIP extends ItemsSimilarities {
 		double PIP = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				double ra = activeItem.getRatings()[u];
-				double rt = targetItem.getRatings()[v];
+				double ra = activeItem.getRatingAt(u);
+				double rt = targetItem.getRatingAt(v);
 
 				// Compute agreement
 				boolean agreement = true;
@@ -69,8 +80,7 @@ public class MetricPIP extends ItemsSimilarities {
 				double impact = (agreement) ? im : 1d / im;
 
 				// Calculamos la popularity
-				int userCode = activeItem.getUsers()[u];
-				User user = Kernel.gi().getUserByCode(userCode);
+				User user = this.users[activeItem.getUserIndexAt(u)];
 				double userAvg = user.getRatingAverage();
 				
 				double popularity = 1;
@@ -67,13 +67,15 @@ public class MetricSingularities extends ItemsSimilarities{
 		this.singularityOfRelevantRatings = new double [Kernel.gi().getNumberOfUsers()];
 		this.singularityOfNotRelevantRatings = new double [Kernel.gi().getNumberOfUsers()];
 
-		for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-			User user = Kernel.gi().getUsers()[u];
+		User [] users = Kernel.gi().getUsers();
+		for (int u = 0; u < users.length; u++) {
+			User user = users[u];
 
 			int numberOfRelevantRatings = 0;
 			int numberOfNotReleavantRatings = 0;
 
-			for (double rating : user.getRatings()) {
+			for (int j = 0; j < user.getNumberOfRatings(); j++) {
+				double rating = user.getRatingAt(j);
 				if (relevantRatings.contains(rating)) numberOfRelevantRatings++;
 				if (notRelevantRatings.contains(rating)) numberOfNotReleavantRatings++;
 			}
@@ -95,17 +97,16 @@ public class MetricSingularities extends ItemsSimilarities{
 
 		int u = 0, v = 0, common = 0;
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
 				
 				// Get the ratings
-				int userCode = activeItem.getUsers()[u];
-				int userIndex = Kernel.getInstance().getUserIndex(userCode);
-				double activeItemRating = activeItem.getRatings()[u];
-				double targetItemRating = targetItem.getRatings()[v];
+				int userIndex = activeItem.getUserIndexAt(u);
+				double activeItemRating = activeItem.getRatingAt(u);
+				double targetItemRating = targetItem.getRatingAt(v);
 
 				// Both user have rated relevant
 				if (this.relevantRatings.contains(activeItemRating) && this.relevantRatings.contains(targetItemRating)) {
@@ -17,12 +17,12 @@ public class MetricSpearmanRank extends ItemsSimilarities{
 		double num = 0d;
 		
 		while (u < activeItem.getNumberOfRatings() && v < targetItem.getNumberOfRatings()) {
-			if (activeItem.getUsers()[u] < targetItem.getUsers()[v]) {
+			if (activeItem.getUserAt(u) < targetItem.getUserAt(v)) {
 				u++;
-			} else if (activeItem.getUsers()[u] > targetItem.getUsers()[v]) {
+			} else if (activeItem.getUserAt(u) > targetItem.getUserAt(v)) {
 				v++;
 			} else {
-				double diff = activeItem.getRatings()[u] - targetItem.getRatings()[v];
+				double diff = activeItem.getRatingAt(u) - targetItem.getRatingAt(v);
 				num += diff * diff;
 				common++;
 				u++; 
@@ -0,0 +1,292 @@
+package cf4j.knn.userToUser;
+
+import cf4j.Kernel;
+import cf4j.Processor;
+import cf4j.ReduciblePartible;
+import cf4j.TestUser;
+import cf4j.TestUsersPartible;
+import cf4j.User;
+import cf4j.knn.userToUser.aggregationApproaches.AggregationApproach;
+import cf4j.knn.userToUser.neighbors.Neighbors;
+import cf4j.knn.userToUser.similarities.UsersSimilarities;
+import cf4j.qualityMeasures.QualityMeasure;
+
+/**
+ * <p>This class chains the stages of the user-to-user collaborative filtering (similarities,
+ * neighbors, aggregation approach and quality measures) for each test user, instead of running
+ * each stage for all the test users before the next one. For example:</p>
+ *
+ * <pre>
+ * new UsersPipeline(new MetricJMSD(), k)
+ * 	.aggregation(new DeviationFromMean())
+ * 	.qualityMeasures(new MAE())
+ * 	.run();
+ * </pre>
+ *
+ * <p>The similarities of a test user are computed into a scratch array of the thread that
+ * processes it and they are not saved in the test user map, so testUser.getSimilarities() does
+ * not return them. Only the neighbors, the predictions and the quality measures are saved, with
+ * the same keys used by each stage.</p>
+ *
+ * <p>Every stage runs in a single pass over the test users, except when the aggregation approach
+ * needs the similarities range of all the test users (see AggregationApproach.needsSimilarityRange()).
+ * In that case, the similarities of the neighbors are kept until the range is known and the
+ * predictions and the quality measures are computed in a second pass.</p>
+ *
+ * @author Fernando Ortega
+ */
+public class UsersPipeline {
+
+	/**
+	 * Similarity metric
+	 */
+	private UsersSimilarities similarities;
+
+	/**
+	 * Neighbors of the test users
+	 */
+	private Neighbors neighbors;
+
+	/**
+	 * Aggregation approach or null to compute only the neighbors
+	 */
+	private AggregationApproach aggregation;
+
+	/**
+	 * Quality measures
+	 */
+	private QualityMeasure [] qualityMeasures = new QualityMeasure [0];
+
+	/**
+	 * Pipeline constructor
+	 * @param similarities Similarity metric
+	 * @param k Number of neighbors to calculate
+	 */
+	public UsersPipeline (UsersSimilarities similarities, int k) {
+		this.similarities = similarities;
+		this.neighbors = new Neighbors(k);
+	}
+
+	/**
+	 * Sets the aggregation approach used to compute the predictions
+	 * @param aggregation Aggregation approach
+	 * @return This pipeline
+	 */
+	public UsersPipeline aggregation (AggregationApproach aggregation) {
+		this.aggregation = aggregation;
+		return this;
+	}
+
+	/**
+	 * Sets the quality measures computed from the predictions. An aggregation approach is required.
+	 * @param qualityMeasures Quality measures
+	 * @return This pipeline
+	 */
+	public UsersPipeline qualityMeasures (QualityMeasure ... qualityMeasures) {
+		this.qualityMeasures = qualityMeasures;
+		return this;
+	}
+
+	/**
+	 * Runs the pipeline using the default Processor
+	 */
+	public void run () {
+		this.run(Processor.getInstance(), true);
+	}
+
+	/**
+	 * Runs the pipeline
+	 * @param processor Processor that runs the pipeline over the test users of its kernel
+	 * @param verbose Print execution info
+	 */
+	public void run (Processor processor, boolean verbose) {
+		if (this.aggregation == null && this.qualityMeasures.length > 0)
+			throw new RuntimeException("The quality measures need an aggregation approach");
+
+		boolean fused = this.aggregation == null || !this.aggregation.needsSimilarityRange();
+
+		NeighborsPass neighborsPass = new NeighborsPass(fused);
+		processor.testUsersProcess(neighborsPass, verbose);
+
+		if (!fused) {
+			processor.testUsersProcess(new PredictionsPass(neighborsPass.neighborsSimilarities), verbose);
+		}
+	}
+
+	/**
+	 * Computes and saves the predictions and the quality measures of a test user
+	 * @param testUser Test user
+	 * @param neighbors Neighbors of the test user
+	 * @param neighborsSimilarities Similarities between the test user and each neighbor
+	 */
+	private void predict (TestUser testUser, int [] neighbors, double [] neighborsSimilarities) {
+		testUser.setPredictions(this.aggregation.predictions(testUser, neighbors, neighborsSimilarities));
+		for (QualityMeasure qualityMeasure : this.qualityMeasures) {
+			qualityMeasure.run(testUser);
+		}
+	}
+
+	/**
+	 * Computes the similarities and the neighbors of the test users. If the pass is fused, it also
+	 * computes the predictions and the quality measures.
+	 */
+	private class NeighborsPass implements TestUsersPartible, ReduciblePartible <Scratch> {
+
+		private boolean fused;
+
+		private double minSim;
+
+		private double maxSim;
+
+		/**
+		 * Similarities of the neighbors of each test user if the pass is not fused
+		 */
+		private double [][] neighborsSimilarities;
+
+		private NeighborsPass (boolean fused) {
+			this.fused = fused;
+		}
+
+		@Override
+		public void beforeRun () {
+			UsersPipeline.this.similarities.beforeRun();
+
+			if (this.fused) {
+				for (QualityMeasure qualityMeasure : UsersPipeline.this.qualityMeasures) {
+					qualityMeasure.beforeRun();
+				}
+			} else {
+				this.maxSim = Double.MIN_VALUE;
+				this.minSim = Double.MAX_VALUE;
+				this.neighborsSimilarities = new double [Kernel.gi().getNumberOfTestUsers()][];
+			}
+		}
+
+		@Override
+		public Scratch createState () {
+			return new Scratch(Kernel.gi().getNumberOfUsers());
+		}
+
+		@Override
+		public void run (int testUserIndex) {
+			Scratch scratch = this.createState();
+			this.run(testUserIndex, testUserIndex + 1, scratch);
+			this.reduce(scratch);
+		}
+
+		@Override
+		public void run (int from, int to, Scratch scratch) {
+			TestUser [] testUsers = Kernel.gi().getTestUsers();
+			User [] users = Kernel.gi().getUsers();
+
+			double [] similarities = scratch.similarities;
+
+			for (int testUserIndex = from; testUserIndex < to; testUserIndex++) {
+				TestUser testUser = testUsers[testUserIndex];
+
+				UsersPipeline.this.similarities.similarities(testUser, users, similarities);
+
+				if (!this.fused) {
+					for (double m : similarities) {
+						if (!Double.isInfinite(m)) {
+							if (m < scratch.minSim) scratch.minSim = m;
+							if (m > scratch.maxSim) scratch.maxSim = m;
+						}
+					}
+				}
+
+				int [] neighbors = UsersPipeline.this.neighbors.neighbors(similarities);
+				testUser.setNeighbors(neighbors);
+
+				double [] neighborsSimilarities = new double [neighbors.length];
+				for (int n = 0; n < neighbors.length; n++) {
+					if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
+					neighborsSimilarities[n] = similarities[neighbors[n]];
+				}
+
+				if (!this.fused) {
+					this.neighborsSimilarities[testUserIndex] = neighborsSimilarities;
+				} else if (UsersPipeline.this.aggregation != null) {
+					UsersPipeline.this.predict(testUser, neighbors, neighborsSimilarities);
+				}
+			}
+		}
+
+		@Override
+		public void reduce (Scratch scratch) {
+			if (scratch.minSim < this.minSim) this.minSim = scratch.minSim;
+			if (scratch.maxSim > this.maxSim) this.maxSim = scratch.maxSim;
+		}
+
+		@Override
+		public void afterRun () {
+			UsersPipeline.this.similarities.afterRun();
+
+			if (this.fused) {
+				for (QualityMeasure qualityMeasure : UsersPipeline.this.qualityMeasures) {
+					qualityMeasure.afterRun();
+				}
+			} else {
+				UsersPipeline.this.aggregation.setSimilarityRange(this.minSim, this.maxSim);
+			}
+		}
+	}
+
+	/**
+	 * Computes the predictions and the quality measures of the test users using the similarities
+	 * of their neighbors.
+	 */
+	private class PredictionsPass implements TestUsersPartible {
+
+		private double [][] neighborsSimilarities;
+
+		private PredictionsPass (double [][] neighborsSimilarities) {
+			this.neighborsSimilarities = neighborsSimilarities;
+		}
+
+		@Override
+		public void beforeRun () {
+			for (QualityMeasure qualityMeasure : UsersPipeline.this.qualityMeasures) {
+				qualityMeasure.beforeRun();
+			}
+		}
+
+		@Override
+		public void run (int testUserIndex) {
+			TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+			UsersPipeline.this.predict(testUser, testUser.getNeighbors(), this.neighborsSimilarities[testUserIndex]);
+		}
+
+		@Override
+		public void afterRun () {
+			for (QualityMeasure qualityMeasure : UsersPipeline.this.qualityMeasures) {
+				qualityMeasure.afterRun();
+			}
+		}
+	}
+
+	/**
+	 * Scratch space of a thread
+	 */
+	private static class Scratch {
+
+		/**
+		 * Similarities of the test user being processed
+		 */
+		private double [] similarities;
+
+		/**
+		 * Minimum similarity computed by the thread
+		 */
+		private double minSim = Double.MAX_VALUE;
+
+		/**
+		 * Maximum similarity computed by the thread
+		 */
+		private double maxSim = Double.MIN_VALUE;
+
+		private Scratch (int numUsers) {
+			this.similarities = new double [numUsers];
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package cf4j.knn.userToUser.aggregationApproaches;
+
+import cf4j.Kernel;
+import cf4j.TestUser;
+import cf4j.TestUsersPartible;
+
+/**
+ * <p>Abstract class of the user-to-user aggregation approaches. It computes the prediction of the
+ * test users' test items combining the ratings of the test user neighbors. If you want to define your
+ * own aggregation approach, you must extend this class and implements the abstract method
+ * predictions (...).</p>
+ *
+ * <p>The results are saved in a double array on the hashmap of each test user with the key
+ * "predictions". Similarities and neighbors of the test users must be computed before the usage
+ * of this class.</p>
+ *
+ * @author Fernando Ortega
+ */
+public abstract class AggregationApproach implements TestUsersPartible {
+
+	/**
+	 * Minimum similarity computed
+	 */
+	protected double minSim;
+
+	/**
+	 * Maximum similarity computed
+	 */
+	protected double maxSim;
+
+	/**
+	 * <p>This method must returns the predictions of the test items of a test user. The predictions
+	 * array must overlap with the test items of the test user. If an item can not be predicted, its
+	 * prediction must be Double.NaN.</p>
+	 * @param testUser Test user
+	 * @param neighbors Indexes of the neighbors of the test user. It is filled with -1 when no more
+	 *     neighbors exists.
+	 * @param similarities Similarities between the test user and each neighbor. The positions of this
+	 *     array overlaps with the neighbors array.
+	 * @return Predictions of the test items
+	 */
+	public abstract double [] predictions (TestUser testUser, int [] neighbors, double [] similarities);
+
+	/**
+	 * Returns if the predictions use the minimum and maximum similarities computed for all the test
+	 * users. In that case, the similarities range must be known before computing any prediction.
+	 * @return true if the predictions use the similarities range
+	 */
+	public boolean needsSimilarityRange () {
+		return false;
+	}
+
+	/**
+	 * Sets the minimum and maximum similarities computed for all the test users. beforeRun() sets
+	 * them from the similarities saved in the test users.
+	 * @param minSim Minimum similarity
+	 * @param maxSim Maximum similarity
+	 */
+	public void setSimilarityRange (double minSim, double maxSim) {
+		this.minSim = minSim;
+		this.maxSim = maxSim;
+	}
+
+	@Override
+	public void beforeRun() {
+		if (!this.needsSimilarityRange()) return;
+
+		double maxSim = Double.MIN_VALUE;
+		double minSim = Double.MAX_VALUE;
+
+		for (TestUser testUser : Kernel.gi().getTestUsers()) {
+			for (double m : testUser.getSimilarities()) {
+				if (!Double.isInfinite(m)) {
+					if (m < minSim) minSim = m;
+					if (m > maxSim) maxSim = m;
+				}
+			}
+		}
+
+		this.setSimilarityRange(minSim, maxSim);
+	}
+
+	@Override
+	public void run (int testUserIndex) {
+
+		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+
+		int [] neighbors = testUser.getNeighbors();
+		double [] similarities = testUser.getSimilarities();
+
+		double [] neighborsSimilarities = new double [neighbors.length];
+		for (int n = 0; n < neighbors.length; n++) {
+			if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
+			neighborsSimilarities[n] = similarities[neighbors[n]];
+		}
+
+		testUser.setPredictions(this.predictions(testUser, neighbors, neighborsSimilarities));
+	}
+
+	@Override
+	public void afterRun() { }
+}
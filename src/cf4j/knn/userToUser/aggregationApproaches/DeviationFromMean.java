@@ -2,7 +2,6 @@ package cf4j.knn.userToUser.aggregationApproaches;
 
 import cf4j.Kernel;
 import cf4j.TestUser;
-import cf4j.TestUsersPartible;
 import cf4j.User;
 
 /**
@@ -17,61 +16,38 @@ import cf4j.User;
  * 
  * @author Fernando Ortega
  */
-public class DeviationFromMean implements TestUsersPartible {
-
-	/**
-	 * Minimum similarity computed
-	 */
-	private double minSim;
-	
-	/**
-	 * Maximum similarity computed
-	 */
-	private double maxSim;
+public class DeviationFromMean extends AggregationApproach {
 
 	@Override
-	public void beforeRun() {
-		this.maxSim = Double.MIN_VALUE;
-		this.minSim = Double.MAX_VALUE;
-		
-		for (TestUser testUser : Kernel.gi().getTestUsers()) {
-			for (double m : testUser.getSimilarities()) {
-				if (!Double.isInfinite(m)) {
-					if (m < this.minSim) this.minSim = m;
-					if (m > this.maxSim) this.maxSim = m;
-				}
-			}
-		}
+	public boolean needsSimilarityRange () {
+		return true;
 	}
 
 	@Override
-	public void run (int testUserIndex) {
-
-		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+	public double [] predictions (TestUser testUser, int [] neighbors, double [] similarities) {
 
-		int [] neighbors = testUser.getNeighbors();
-		double [] similarities = testUser.getSimilarities();
+		User [] users = Kernel.gi().getUsers();
+		double minRating = Kernel.gi().getMinRating();
+		double maxRating = Kernel.gi().getMaxRating();
 
 		int numRatings = testUser.getNumberOfTestRatings();
 		double [] predictions = new double [numRatings];
 		
 		for (int testItemIndex = 0; testItemIndex < numRatings; testItemIndex++) {
 			
-			int itemCode = testUser.getTestItems()[testItemIndex];
+			int itemCode = testUser.getTestItemAt(testItemIndex);
 			double sumSimilarities = 0;
 			
 			for (int n = 0; n < neighbors.length; n++) {
 				if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
 				
-				int userIndex = neighbors[n];
-				User neighbor = Kernel.gi().getUsers()[userIndex];
+				User neighbor = users[neighbors[n]];
 				
 				int i = neighbor.getItemIndex(itemCode);
 				if (i != -1) {
-					double similarity = similarities[userIndex];
-					double sim = (similarity - this.minSim) / (this.maxSim - this.minSim);
+					double sim = (similarities[n] - this.minSim) / (this.maxSim - this.minSim);
 
-					predictions[testItemIndex] += sim * (neighbor.getRatings()[i] - neighbor.getRatingAverage());
+					predictions[testItemIndex] += sim * (neighbor.getRatingAt(i) - neighbor.getRatingAverage());
 					sumSimilarities += sim;
 				}
 			}
@@ -82,16 +58,13 @@ public class DeviationFromMean implements TestUsersPartible {
 			else {
 				double deviation = predictions[testItemIndex] / sumSimilarities;
 				double prediction = testUser.getRatingAverage() + deviation;
-				prediction = Math.min(prediction, Kernel.gi().getMaxRating());
-				prediction = Math.max(prediction, Kernel.gi().getMinRating());
+				prediction = Math.min(prediction, maxRating);
+				prediction = Math.max(prediction, minRating);
 
 				predictions[testItemIndex] = prediction;
 			}
 		}
 		
-		testUser.setPredictions(predictions);
+		return predictions;
 	}
-
-	@Override
-	public void afterRun() { }
 }
@@ -2,7 +2,6 @@ package cf4j.knn.userToUser.aggregationApproaches;
 
 import cf4j.Kernel;
 import cf4j.TestUser;
-import cf4j.TestUsersPartible;
 import cf4j.User;
 
 /**
@@ -16,44 +15,35 @@ import cf4j.User;
  * 
  * @author Fernando Ortega
  */
-public class Mean implements TestUsersPartible {
+public class Mean extends AggregationApproach {
 
 	@Override
-	public void beforeRun() { }
+	public double [] predictions (TestUser testUser, int [] neighbors, double [] similarities) {
 
-	@Override
-	public void run (int testUserIndex) {
-
-		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
-		
-		int [] neighbors = testUser.getNeighbors();
+		User [] users = Kernel.gi().getUsers();
 		
 		int numRatings = testUser.getNumberOfTestRatings();
 		double [] predictions = new double [numRatings];
 		
 		for (int testItemIndex = 0; testItemIndex < numRatings; testItemIndex++) {
 			
-			int itemCode = testUser.getTestItems()[testItemIndex];
+			int itemCode = testUser.getTestItemAt(testItemIndex);
 			int count = 0;
 			
 			for (int n = 0; n <neighbors.length; n++) {
 				if (neighbors[n] == -1) break; // Neighbors array are filled with -1 when no more neighbors exists
 				
-				int userIndex = neighbors[n];
-				User neighbor = Kernel.gi().getUsers()[userIndex];
+				User neighbor = users[neighbors[n]];
 				
 				int i = neighbor.getItemIndex(itemCode);
 				if (i != -1) {
-					predictions[testItemIndex] += neighbor.getRatings()[i];
+					predictions[testItemIndex] += neighbor.getRatingAt(i);
 					count++;
 				}
 			}
 			predictions[testItemIndex] = (count == 0) ? Double.NaN : predictions[testItemIndex] / count;
 		}
 
-		testUser.setPredictions(predictions);
+		return predictions;
 	}
-
-	@Override
-	public void afterRun() { }
 }
@@ -35,11 +35,20 @@ public class Neighbors implements TestUsersPartible {
 	@Override
 	public void run (int testUserIndex) {
 		TestUser testUser = Kernel.getInstance().getTestUsers()[testUserIndex];
-		double [] similarities = testUser.getSimilarities();
-		int [] neighbors = Methods.findTopN(similarities, this.k);
+		int [] neighbors = this.neighbors(testUser.getSimilarities());
 		testUser.setNeighbors(neighbors);
 	}
 
+	/**
+	 * Returns the neighbors of a test user given its similarities.
+	 * @param similarities Similarities of the test user with the users of the kernel
+	 * @return Indexes of the k most similar users sorted by similarity. It is filled with -1
+	 *     if there are less than k neighbors.
+	 */
+	public int [] neighbors (double [] similarities) {
+		return Methods.findTopN(similarities, this.k);
+	}
+
 	@Override
 	public void afterRun() { }
 
@@ -12,6 +12,17 @@ import cf4j.User;
  */
 public class MetricAjustedCosine extends UsersSimilarities {
 
+	/**
+	 * Items of the kernel
+	 */
+	private Item [] items;
+
+	@Override
+	public void beforeRun () {
+		super.beforeRun();
+		this.items = Kernel.gi().getItems();
+	}
+
 	@Override
 	public double similarity (TestUser activeUser, User targetUser) {	
 		
@@ -19,17 +30,16 @@ public class MetricAjustedCosine extends UsersSimilarities {
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				int itemCode = activeUser.getItems()[i];
-				Item item = Kernel.gi().getItemByCode(itemCode);
+				Item item = this.items[activeUser.getItemIndexAt(i)];
 				double avg = item.getRatingAverage();
 				
-				double fa = activeUser.getRatings()[i] - avg;
-				double ft = targetUser.getRatings()[j] - avg;
+				double fa = activeUser.getRatingAt(i) - avg;
+				double ft = targetUser.getRatingAt(j) - avg;
 				
 				num += fa * ft;
 				denActive += fa * fa;
@@ -17,11 +17,17 @@ public class MetricCJMSD extends UsersSimilarities {
 	 * Maximum difference between the ratings
 	 */
 	private double maxDiff;
+
+	/**
+	 * Number of items of the kernel
+	 */
+	private int numItems;
 	
 	@Override
 	public void beforeRun () {
 		super.beforeRun();
 		this.maxDiff = Kernel.gi().getMaxRating() - Kernel.gi().getMinRating();
+		this.numItems = Kernel.gi().getNumberOfItems();
 	}
 
 	@Override
@@ -31,12 +37,12 @@ public class MetricCJMSD extends UsersSimilarities {
 		double msd = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				double diff = (activeUser.getRatings()[i] - targetUser.getRatings()[j]) / this.maxDiff;
+				double diff = (activeUser.getRatingAt(i) - targetUser.getRatingAt(j)) / this.maxDiff;
 				msd += diff * diff;
 				common++;
 				i++; j++;
@@ -48,7 +54,7 @@ public class MetricCJMSD extends UsersSimilarities {
 
 		// Return similarity
 		double jaccard = (double) common / (double) (activeUser.getNumberOfRatings() + targetUser.getNumberOfRatings() - common);
-		double coverage = (double) (targetUser.getNumberOfRatings() - common) / (double) Kernel.gi().getNumberOfItems();
+		double coverage = (double) (targetUser.getNumberOfRatings() - common) / (double) this.numItems;
 		return coverage * jaccard * (1d - (msd / common));
 	}
 }
@@ -17,13 +17,13 @@ public class MetricCorrelation extends UsersSimilarities {
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				double fa = activeUser.getRatings()[i] - activeUser.getRatingAverage();
-				double ft = targetUser.getRatings()[j] - targetUser.getRatingAverage();
+				double fa = activeUser.getRatingAt(i) - activeUser.getRatingAverage();
+				double ft = targetUser.getRatingAt(j) - targetUser.getRatingAverage();
 				
 				num += fa * ft;
 				denActive += fa * fa;
@@ -33,8 +33,8 @@ public class MetricCorrelationConstrained extends UsersSimilarities {
 	public MetricCorrelationConstrained () {
 		ArrayList <Double> ratings = new ArrayList <Double> ();
 		for (User user : Kernel.gi().getUsers()) {
-			for (double rating : user.getRatings()) {
-				ratings.add(rating);
+			for (int j = 0; j < user.getNumberOfRatings(); j++) {
+				ratings.add(user.getRatingAt(j));
 			}
 		}
 		
@@ -53,13 +53,13 @@ public class MetricCorrelationConstrained extends UsersSimilarities {
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				double fa = activeUser.getRatings()[i] - this.median;
-				double ft = targetUser.getRatings()[j] - this.median;
+				double fa = activeUser.getRatingAt(i) - this.median;
+				double ft = targetUser.getRatingAt(j) - this.median;
 				
 				num += fa * ft;
 				denActive += fa * fa;
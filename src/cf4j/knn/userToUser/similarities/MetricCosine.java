@@ -17,14 +17,14 @@ public class MetricCosine extends UsersSimilarities {
 		double num = 0d, denActive = 0d, denTarget = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				num += activeUser.getRatings()[i] * targetUser.getRatings()[j];
-				denActive += activeUser.getRatings()[i] * activeUser.getRatings()[i];
-				denTarget += targetUser.getRatings()[j] * targetUser.getRatings()[j];
+				num += activeUser.getRatingAt(i) * targetUser.getRatingAt(j);
+				denActive += activeUser.getRatingAt(i) * activeUser.getRatingAt(i);
+				denTarget += targetUser.getRatingAt(j) * targetUser.getRatingAt(j);
 				
 				common++;
 				i++; 
@@ -28,6 +28,11 @@ public class MetricPIP extends UsersSimilarities {
 	 * Minimum rating value
 	 */
 	private double min;
+
+	/**
+	 * Items of the kernel
+	 */
+	private Item [] items;
 	
 	/**
 	 * Constructor of the similarity metric
@@ -39,6 +44,12 @@ public class MetricPIP extends UsersSimilarities {
 		this.median = (max + min) / 2d;
 	}
 	
+	@Override
+	public void beforeRun () {
+		super.beforeRun();
+		this.items = Kernel.gi().getItems();
+	}
+
 	@Override
 	public double similarity (TestUser activeUser, User targetUser) {		
 
@@ -46,13 +57,13 @@ public class MetricPIP extends UsersSimilarities {
 		double PIP = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) 
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) 
 				i++;
-			else if (activeUser.getItems()[i] > targetUser.getItems()[j]) 
+			else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) 
 				j++;
 			else {
-				double ra = activeUser.getRatings()[i];
-				double rt = targetUser.getRatings()[j];
+				double ra = activeUser.getRatingAt(i);
+				double rt = targetUser.getRatingAt(j);
 				
 				// Compute agreement
 				boolean agreement = true;
@@ -69,8 +80,7 @@ public class MetricPIP extends UsersSimilarities {
 				double impact = (agreement) ? im : 1d / im;
 
 				// Compute popularity
-				int itemCode = activeUser.getItems()[i];
-				Item item = Kernel.gi().getItemByCode(itemCode);
+				Item item = this.items[activeUser.getItemIndexAt(i)];
 				double itemAvg = item.getRatingAverage();
 				
 				double popularity = 1;
@@ -67,13 +67,15 @@ public class MetricSingularities extends UsersSimilarities{
 		this.singularityOfRelevantRatings = new double [Kernel.gi().getNumberOfItems()];
 		this.singularityOfNotRelevantRatings = new double [Kernel.gi().getNumberOfItems()];
 
-		for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-			Item item = Kernel.getInstance().getItems()[i];
+		Item [] items = Kernel.gi().getItems();
+		for (int i = 0; i < items.length; i++) {
+			Item item = items[i];
 
 			int numberOfRelevantRatings = 0;
 			int numberOfNotRelevantRatings = 0;
 
-			for (double rating : item.getRatings()) {
+			for (int j = 0; j < item.getNumberOfRatings(); j++) {
+				double rating = item.getRatingAt(j);
 				if (relevantRatings.contains(rating)) numberOfRelevantRatings++;
 				if (notRelevantRatings.contains(rating)) numberOfNotRelevantRatings++;
 			}
@@ -95,17 +97,16 @@ public class MetricSingularities extends UsersSimilarities{
 
 		int i = 0, j = 0, common = 0;
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
 				
 				// Get the ratings
-				int itemCode = activeUser.getItems()[i];
-				int itemIndex = Kernel.getInstance().getItemIndex(itemCode);
-				double activeUserRating = activeUser.getRatings()[i];
-				double targetUserRating = targetUser.getRatings()[j];
+				int itemIndex = activeUser.getItemIndexAt(i);
+				double activeUserRating = activeUser.getRatingAt(i);
+				double targetUserRating = targetUser.getRatingAt(j);
 
 				// Both user have rated relevant
 				if (this.relevantRatings.contains(activeUserRating) && this.relevantRatings.contains(targetUserRating)) {
@@ -17,12 +17,12 @@ public class MetricSpearmanRank extends UsersSimilarities{
 		double num = 0d;
 		
 		while (i < activeUser.getNumberOfRatings() && j < targetUser.getNumberOfRatings()) {
-			if (activeUser.getItems()[i] < targetUser.getItems()[j]) {
+			if (activeUser.getItemAt(i) < targetUser.getItemAt(j)) {
 				i++;
-			} else if (activeUser.getItems()[i] > targetUser.getItems()[j]) {
+			} else if (activeUser.getItemAt(i) > targetUser.getItemAt(j)) {
 				j++;
 			} else {
-				double diff = activeUser.getRatings()[i] - targetUser.getRatings()[j];
+				double diff = activeUser.getRatingAt(i) - targetUser.getRatingAt(j);
 				num += diff * diff;
 				common++;
 				i++; 
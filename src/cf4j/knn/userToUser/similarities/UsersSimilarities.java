@@ -1,6 +1,7 @@
 package cf4j.knn.userToUser.similarities;
 
 import cf4j.Kernel;
+import cf4j.RangePartible;
 import cf4j.TestUser;
 import cf4j.TestUsersPartible;
 import cf4j.User;
@@ -17,7 +18,7 @@ import cf4j.User;
  * 
  * @author Fernando Ortega
  */
-abstract public class UsersSimilarities implements TestUsersPartible {
+abstract public class UsersSimilarities implements TestUsersPartible, RangePartible {
 
 	/**
 	 * <p>This method must returns the similarity between two users.</p> 
@@ -34,21 +35,42 @@ abstract public class UsersSimilarities implements TestUsersPartible {
 
 	@Override
 	public void run (int testUserIndex) {
-		TestUser activeUser = Kernel.gi().getTestUsers()[testUserIndex];
-		
-		int numUsers = Kernel.gi().getNumberOfUsers();
-		double [] similarities = new double [numUsers];
-		
-		for (int u = 0; u < similarities.length; u++) {
-			User targetUser = Kernel.gi().getUsers()[u];
+		this.run(testUserIndex, testUserIndex + 1);
+	}
+
+	@Override
+	public void run (int from, int to) {
+		TestUser [] testUsers = Kernel.gi().getTestUsers();
+		User [] users = Kernel.gi().getUsers();
+
+		for (int testUserIndex = from; testUserIndex < to; testUserIndex++) {
+			TestUser activeUser = testUsers[testUserIndex];
+
+			// The array is kept by the test user, so it can not be reused
+			double [] similarities = new double [users.length];
+			this.similarities(activeUser, users, similarities);
+
+			activeUser.setSimilarities(similarities);
+		}
+	}
+
+	/**
+	 * Computes the similarities between a test user and the users without saving them in the
+	 * test user map.
+	 * @param activeUser Active user
+	 * @param users Users of the kernel
+	 * @param similarities Array where the similarities are written. Its positions overlaps with
+	 *     the users array.
+	 */
+	public void similarities (TestUser activeUser, User [] users, double [] similarities) {
+		for (int u = 0; u < users.length; u++) {
+			User targetUser = users[u];
 			if (activeUser.getUserCode() == targetUser.getUserCode()) {
 				similarities[u] = Double.NEGATIVE_INFINITY;
 			} else { 
 				similarities[u] = this.similarity(activeUser, targetUser);
 			}
 		}
-		
-		activeUser.setSimilarities(similarities);
 	}
 	
 	@Override
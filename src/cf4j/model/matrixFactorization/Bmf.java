@@ -1,15 +1,20 @@
 package cf4j.model.matrixFactorization;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.math3.special.Gamma;
 
+import cf4j.ArrayAttribute;
 import cf4j.Item;
 import cf4j.ItemsPartible;
 import cf4j.Kernel;
 import cf4j.Processor;
+import cf4j.ReduciblePartible;
 import cf4j.User;
 import cf4j.utils.Methods;
+import cf4j.utils.Randoms;
 
 /**
  * Implements Probabilist Matrix Factorization: Hernando, A., Bobadilla, J., 	&amp; Ortega, F. (2016).
@@ -53,6 +58,23 @@ public class Bmf implements FactorizationModel {
 	 */
 	private int numIters;
 
+	/**
+	 * Kernel of the model
+	 */
+	private Kernel kernel;
+
+	/**
+	 * Gamma of the users and E+ and E- of the items (see Kernel.getUsersAttributes())
+	 */
+	private ArrayAttribute userGamma;
+	private ArrayAttribute itemEPlus;
+	private ArrayAttribute itemEMinus;
+
+	/**
+	 * Accumulators of the threads, reused by all the iterations of the training
+	 */
+	private ConcurrentLinkedQueue <Accumulator> accumulators = new ConcurrentLinkedQueue <Accumulator> ();
+
 	/**
 	 * Model constructor
 	 * @param numFactors Number of factors
@@ -84,15 +106,26 @@ public class Bmf implements FactorizationModel {
 		this.beta = beta;
 		this.r = r;
 
+		this.kernel = Kernel.gi();
+		this.userGamma = this.kernel.getUsersAttributes().getArrays(USER_GAMMA_KEY);
+		this.itemEPlus = this.kernel.getItemsAttributes().getArrays(ITEM_E_PLUS_KEY);
+		this.itemEMinus = this.kernel.getItemsAttributes().getArrays(ITEM_E_MINUS_KEY);
+
+		// Each user and item has its own generator (see Randoms)
+		long usersSeed = Randoms.nextSeed();
+		long itemsSeed = Randoms.nextSeed();
+
 		// Users initialization
-		for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-			this.setUserGamma(u, this.random(this.numFactors));
+		for (int u = 0; u < this.kernel.getNumberOfUsers(); u++) {
+			SplittableRandom random = Randoms.get(usersSeed, u);
+			this.setUserGamma(u, this.random(random, this.numFactors));
 		}
 
 		// Items initialization
-		for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-			this.setItemEPlus(i, this.random(this.numFactors));
-			this.setItemEMinus(i, this.random(this.numFactors));
+		for (int i = 0; i < this.kernel.getNumberOfItems(); i++) {
+			SplittableRandom random = Randoms.get(itemsSeed, i);
+			this.setItemEPlus(i, this.random(random, this.numFactors));
+			this.setItemEMinus(i, this.random(random, this.numFactors));
 		}
 	}
 
@@ -116,6 +149,8 @@ public class Bmf implements FactorizationModel {
 			if ((iter % 10) == 0) System.out.print(".");
 			if ((iter % 100) == 0) System.out.println(iter + " iterations");
 		}
+
+		this.accumulators.clear();
 	}
 
 	/**
@@ -160,8 +195,7 @@ public class Bmf implements FactorizationModel {
 	 * @return User gamma
 	 */
 	public double [] getUserGamma (int userIndex) {
-		User user = Kernel.gi().getUsers()[userIndex];
-		return (double []) user.get(USER_GAMMA_KEY);
+		return this.userGamma.get(userIndex);
 	}
 
 	/**
@@ -170,8 +204,7 @@ public class Bmf implements FactorizationModel {
 	 * @param gamma User gamma
 	 */
 	private void setUserGamma (int userIndex, double [] gamma) 	{
-		User user = Kernel.gi().getUsers()[userIndex];
-		user.put(USER_GAMMA_KEY, gamma);
+		this.userGamma.set(userIndex, gamma);
 	}
 
 	/**
@@ -180,8 +213,7 @@ public class Bmf implements FactorizationModel {
 	 * @return Item E+
 	 */
 	public double [] getItemEPlus (int itemIndex) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		return ((double []) item.get(ITEM_E_PLUS_KEY)).clone();
+		return this.itemEPlus.get(itemIndex).clone();
 	}
 
 	/**
@@ -190,8 +222,7 @@ public class Bmf implements FactorizationModel {
 	 * @param ePlus Item E+
 	 */
 	private void setItemEPlus (int itemIndex, double [] ePlus) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		item.put(ITEM_E_PLUS_KEY, ePlus);
+		this.itemEPlus.set(itemIndex, ePlus);
 	}
 
 	/**
@@ -200,8 +231,7 @@ public class Bmf implements FactorizationModel {
 	 * @return Item E-
 	 */
 	public double [] getItemEMinus (int itemIndex) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		return ((double []) item.get(ITEM_E_MINUS_KEY)).clone();
+		return this.itemEMinus.get(itemIndex).clone();
 	}
 
 	/**
@@ -210,8 +240,7 @@ public class Bmf implements FactorizationModel {
 	 * @param eMinus Item E-
 	 */
 	private void setItemEMinus (int itemIndex, double [] eMinus) 	{
-		Item item = Kernel.gi().getItems()[itemIndex];
-		item.put(ITEM_E_MINUS_KEY, eMinus);
+		this.itemEMinus.set(itemIndex, eMinus);
 	}
 
 	/**
@@ -225,8 +254,8 @@ public class Bmf implements FactorizationModel {
 		double [] b = this.getItemFactors(itemIndex);
 		double prediction = Methods.dotProduct(a, b);
 
-		double max = Kernel.gi().getMaxRating();
-		double min = Kernel.gi().getMinRating();
+		double max = this.kernel.getMaxRating();
+		double min = this.kernel.getMinRating();
 
 		return prediction * (max - min) + min;
 	}
@@ -235,11 +264,7 @@ public class Bmf implements FactorizationModel {
 	 * Auxiliary inner class to parallelize model update
 	 * @author Fernando Ortega
 	 */
-	private class UpdateModel implements ItemsPartible {
-
-		private final int NUM_LOCKS = 100;
-
-		private ReentrantLock [] locks;
+	private class UpdateModel implements ItemsPartible, ReduciblePartible <Bmf.Accumulator> {
 
 		private double [][] gamma;
 
@@ -249,14 +274,8 @@ public class Bmf implements FactorizationModel {
 
 		public UpdateModel () {
 
-			// Locks avoid problem while users gammas are updated in different threads
-			this.locks = new ReentrantLock [NUM_LOCKS];
-			for (int i = 0; i < NUM_LOCKS; i++) {
-				this.locks[i] = new ReentrantLock();
-			}
-
-			int numUsers = Kernel.gi().getNumberOfUsers();
-			int numItems = Kernel.gi().getNumberOfItems();
+			int numUsers = Bmf.this.kernel.getNumberOfUsers();
+			int numItems = Bmf.this.kernel.getNumberOfItems();
 			int numFactors = Bmf.this.numFactors;
 
 			this.gamma = new double [numUsers][numFactors];
@@ -285,25 +304,74 @@ public class Bmf implements FactorizationModel {
 
 		@Override
 		public void run (int itemIndex) {
+			Accumulator accumulator = this.createState();
+			this.run(itemIndex, itemIndex + 1, accumulator);
+			this.reduce(accumulator);
+		}
+
+		@Override
+		public Accumulator createState () {
+			Accumulator accumulator = Bmf.this.accumulators.poll();
+			return (accumulator != null) ? accumulator : new Accumulator();
+		}
+
+		@Override
+		public void run (int from, int to, Accumulator accumulator) {
+
+			// Resources shared by all the items of the range
+			Item [] items = Bmf.this.kernel.getItems();
+			double minRating = Bmf.this.kernel.getMinRating();
+			double maxRating = Bmf.this.kernel.getMaxRating();
+
+			for (int itemIndex = from; itemIndex < to; itemIndex++) {
+				this.update(items[itemIndex], itemIndex, minRating, maxRating, accumulator);
+			}
+		}
+
+		/**
+		 * Adds the updates of an accumulator to the gammas. It is synchronized because run(int) reduces
+		 * its accumulator in the thread that runs it.
+		 * @param accumulator Accumulator of the thread
+		 */
+		@Override
+		public synchronized void reduce (Accumulator accumulator) {
+			int numFactors = Bmf.this.numFactors;
+
+			// Only the users updated by the thread are added
+			for (int slot = 0; slot < accumulator.numUsers; slot++) {
+				int userIndex = accumulator.users[slot];
+				for (int k = 0; k < numFactors; k++) {
+					this.gamma[userIndex][k] += accumulator.gamma[slot * numFactors + k];
+				}
+			}
+			accumulator.clear();
+
+			Bmf.this.accumulators.add(accumulator);
+		}
+
+		/**
+		 * Updates the model with the ratings of an item
+		 * @param item Item
+		 * @param itemIndex Item index
+		 * @param minRating Minimum rating
+		 * @param maxRating Maximum rating
+		 * @param accumulator Accumulator of the thread
+		 */
+		private void update (Item item, int itemIndex, double minRating, double maxRating, Accumulator accumulator) {
 
-			Item item = Kernel.gi().getItems()[itemIndex];
+			double [] lambda = accumulator.lambda;
 
 			double [] ePlus = Bmf.this.getItemEPlus(itemIndex);
 			double [] eMinus = Bmf.this.getItemEMinus(itemIndex);
 
-			int userIndex = 0;
-
 			for (int u = 0; u < item.getNumberOfRatings(); u++) {
 
-				// Arrays of ref codes are sorted
-				while (Kernel.gi().getUsers()[userIndex].getUserCode() < item.getUsers()[u]) userIndex++;
+				int userIndex = item.getUserIndexAt(u);
+				int slot = accumulator.slot(userIndex) * Bmf.this.numFactors;
 
 				double [] gamma = Bmf.this.getUserGamma(userIndex);
 
-				double [] lambda = new double [Bmf.this.numFactors];
-
-				double rating = (item.getRatings()[u] - Kernel.gi().getMinRating())
-						/ (Kernel.gi().getMaxRating() - Kernel.gi().getMinRating());
+				double rating = (item.getRatingAt(u) - minRating) / (maxRating - minRating);
 
 				double acc = 0;
 
@@ -328,36 +396,136 @@ public class Bmf implements FactorizationModel {
 					this.ePlus[itemIndex][k] += l * Bmf.this.r * rating;
 					this.eMinus[itemIndex][k] += l * Bmf.this.r * (1 - rating);
 
-					// Update gamma: user must be block to avoid concurrency problems
-					int lockIndex = userIndex % this.locks.length;
-					this.locks[lockIndex].lock();
-					this.gamma[userIndex][k] += l;
-					this.locks[lockIndex].unlock();
+					// Update gamma: users are shared by the threads, so each thread accumulates its own updates
+					accumulator.gamma[slot + k] += l;
 				}
 			}
 		}
 
 		@Override
 		public void afterRun() {
-			for (int userIndex = 0; userIndex < Kernel.gi().getNumberOfUsers(); userIndex++) {
+			for (int userIndex = 0; userIndex < Bmf.this.kernel.getNumberOfUsers(); userIndex++) {
 				Bmf.this.setUserGamma(userIndex, this.gamma[userIndex]);
 			}
 
-			for (int itemIndex = 0; itemIndex < Kernel.gi().getNumberOfItems(); itemIndex++) {
+			for (int itemIndex = 0; itemIndex < Bmf.this.kernel.getNumberOfItems(); itemIndex++) {
 				Bmf.this.setItemEPlus(itemIndex, this.ePlus[itemIndex]);
 				Bmf.this.setItemEMinus(itemIndex, this.eMinus[itemIndex]);
 			}
 		}
 	}
 
+	/**
+	 * Updates of the users gammas made by a thread. Only the users rated by the items processed by the
+	 * thread take a slot, so its size depends on them instead of on the number of users.
+	 */
+	private class Accumulator {
+
+		/**
+		 * Slot of each user index in an open addressing table (-1 if empty). Its length is a power of two
+		 * greater than twice the number of users.
+		 */
+		private int [] table = this.emptyTable(16);
+
+		/**
+		 * User index of each slot
+		 */
+		private int [] users = new int [8];
+
+		/**
+		 * Increment of the gamma of the user of each slot (numFactors values per slot)
+		 */
+		private double [] gamma = new double [8 * Bmf.this.numFactors];
+
+		/**
+		 * Number of slots in use
+		 */
+		private int numUsers = 0;
+
+		/**
+		 * Scratch array to compute lambda
+		 */
+		private double [] lambda = new double [Bmf.this.numFactors];
+
+		/**
+		 * Returns the slot of an user, taking a new one if the user has not been updated yet
+		 * @param userIndex User index
+		 * @return Slot of the user
+		 */
+		int slot (int userIndex) {
+			int mask = this.table.length - 1;
+			int h = this.hash(userIndex) & mask;
+			while (this.table[h] != -1) {
+				if (this.users[this.table[h]] == userIndex) return this.table[h];
+				h = (h + 1) & mask;
+			}
+
+			if (this.numUsers == this.users.length) {
+				this.users = Arrays.copyOf(this.users, this.numUsers * 2);
+				this.gamma = Arrays.copyOf(this.gamma, this.numUsers * 2 * Bmf.this.numFactors);
+			}
+
+			int slot = this.numUsers++;
+			this.users[slot] = userIndex;
+			this.table[h] = slot;
+
+			if (this.numUsers * 2 > this.table.length) this.rehash(this.table.length * 2);
+			return slot;
+		}
+
+		/**
+		 * Empties the accumulator keeping its arrays for the next use
+		 */
+		void clear () {
+			Arrays.fill(this.gamma, 0, this.numUsers * Bmf.this.numFactors, 0);
+			Arrays.fill(this.table, -1);
+			this.numUsers = 0;
+		}
+
+		/**
+		 * Rebuilds the table with a new length
+		 * @param length New length (power of two)
+		 */
+		private void rehash (int length) {
+			this.table = this.emptyTable(length);
+			int mask = length - 1;
+			for (int slot = 0; slot < this.numUsers; slot++) {
+				int h = this.hash(this.users[slot]) & mask;
+				while (this.table[h] != -1) h = (h + 1) & mask;
+				this.table[h] = slot;
+			}
+		}
+
+		/**
+		 * Creates a table without slots
+		 * @param length Table length
+		 * @return Table filled with -1
+		 */
+		private int [] emptyTable (int length) {
+			int [] table = new int [length];
+			Arrays.fill(table, -1);
+			return table;
+		}
+
+		/**
+		 * Spreads the user indexes over the table
+		 * @param userIndex User index
+		 * @return Hash of the user index
+		 */
+		private int hash (int userIndex) {
+			return userIndex * 0x9E3779B9;
+		}
+	}
+
 	/**
 	 * Get an array of random numbers between 0, 1)
+	 * @param random Random generator
 	 * @param size Array length
 	 * @return Array of random
 	 */
-	private double [] random (int size) {
+	private double [] random (SplittableRandom random, int size) {
 		double [] d = new double [size];
-		for (int i = 0; i < size; i++) d[i] = Math.random();
+		for (int i = 0; i < size; i++) d[i] = random.nextDouble();
 		return d;
 	}
 }
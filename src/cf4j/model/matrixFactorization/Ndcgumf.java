@@ -1,5 +1,7 @@
 package cf4j.model.matrixFactorization;
 
+import cf4j.ArrayAttribute;
+import cf4j.DoubleAttribute;
 import cf4j.Item;
 import cf4j.ItemsPartible;
 import cf4j.Kernel;
@@ -7,10 +9,12 @@ import cf4j.Processor;
 import cf4j.User;
 import cf4j.UsersPartible;
 import cf4j.utils.Methods;
+import cf4j.utils.Randoms;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.SplittableRandom;
 
 /**
  * Implements Probabilist Matrix Factorization: Ortega, F.  	&amp; Cobos, C.E. (2019).
@@ -60,6 +64,20 @@ public class Ndcgumf  implements FactorizationModel {
      */
     private boolean biases;
 
+    /**
+     * Kernel of the model
+     */
+    private Kernel kernel;
+
+    /**
+     * Factors and biases of the users and items (see Kernel.getUsersAttributes()). The items copies
+     * are the items themselves, so they share the item factors.
+     */
+    private ArrayAttribute userFactors;
+    private DoubleAttribute userBias;
+    private ArrayAttribute itemFactors;
+    private DoubleAttribute itemBias;
+
     /**
      * Model constructor
      * @param numFactors Number of factors
@@ -117,28 +135,28 @@ public class Ndcgumf  implements FactorizationModel {
         this.gamma = gamma;
         this.biases = biases;
 
+        this.kernel = Kernel.gi();
+        this.userFactors = this.kernel.getUsersAttributes().getArrays(USER_FACTORS_KEY);
+        this.userBias = this.kernel.getUsersAttributes().getDoubles(USER_BIAS_KEY);
+        this.itemFactors = this.kernel.getItemsAttributes().getArrays(ITEM_FACTORS_KEY);
+        this.itemBias = this.kernel.getItemsAttributes().getDoubles(ITEM_BIAS_KEY);
+
+        // Each user and item has its own generator (see Randoms)
+        long usersSeed = Randoms.nextSeed();
+        long itemsSeed = Randoms.nextSeed();
+
         // Users initialization
-        for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-            this.setUserFactors(u, this.random(this.numFactors, -1, 1));
+        for (int u = 0; u < this.kernel.getNumberOfUsers(); u++) {
+            SplittableRandom random = Randoms.get(usersSeed, u);
+            this.setUserFactors(u, this.random(random, this.numFactors, -1, 1));
+            if (this.biases) this.setUserBias(u, this.random(random, -1, 1));
         }
 
         // Items initialization
-        for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-            this.setItemFactors(i, this.random(this.numFactors, -1, 1));
-        }
-
-        // Initialize bias if needed
-        if (this.biases) {
-
-            // Users bias initialization
-            for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-                this.setUserBias(u, this.random(-1, 1));
-            }
-
-            // Items bias initialization
-            for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-                this.setItemBias(i, this.random(-1, 1));
-            }
+        for (int i = 0; i < this.kernel.getNumberOfItems(); i++) {
+            SplittableRandom random = Randoms.get(itemsSeed, i);
+            this.setItemFactors(i, this.random(random, this.numFactors, -1, 1));
+            if (this.biases) this.setItemBias(i, this.random(random, -1, 1));
         }
     }
 
@@ -194,8 +212,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @return User factors
      */
     public double [] getUserFactors (int userIndex) {
-        User user = Kernel.gi().getUsers()[userIndex];
-        return (double []) user.get(USER_FACTORS_KEY);
+        return this.userFactors.get(userIndex);
     }
 
     /**
@@ -204,8 +221,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @param factors User factors
      */
     private void setUserFactors (int userIndex, double [] factors) {
-        User user = Kernel.gi().getUsers()[userIndex];
-        user.put(USER_FACTORS_KEY, factors);
+        this.userFactors.set(userIndex, factors);
     }
 
     /**
@@ -214,8 +230,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @return Item factors
      */
     public double [] getItemFactors (int itemIndex) {
-        Item item = Kernel.gi().getItems()[itemIndex];
-        return (double []) item.get(ITEM_FACTORS_KEY);
+        return this.itemFactors.get(itemIndex);
     }
 
     /**
@@ -224,8 +239,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @return Item copy factors
      */
     public double [] getItemCopyFactors (int itemIndex) {
-        Item item = Kernel.gi().getItemsCopy()[itemIndex];
-        return (double []) item.get(ITEM_FACTORS_KEY);
+        return this.itemFactors.get(itemIndex);
     }
 
     /**
@@ -234,8 +248,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @param factors Item factors
      */
     private void setItemFactors (int itemIndex, double [] factors) {
-        Item item = Kernel.gi().getItems()[itemIndex];
-        item.put(ITEM_FACTORS_KEY, factors);
+        this.itemFactors.set(itemIndex, factors);
     }
 
     /**
@@ -244,8 +257,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @param factors Item copy factors
      */
     private void setItemCopyFactors (int itemIndex, double [] factors) {
-        Item item = Kernel.gi().getItemsCopy()[itemIndex];
-        item.put(ITEM_FACTORS_KEY, factors);
+        this.itemFactors.set(itemIndex, factors);
     }
 
     /**
@@ -254,8 +266,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @return User bias or null
      */
     public double getUserBias (int userIndex) {
-        User user = Kernel.gi().getUsers()[userIndex];
-        return (Double) user.get(USER_BIAS_KEY);
+        return this.userBias.get(userIndex);
     }
 
     /**
@@ -264,8 +275,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @param bias User bias
      */
     private void setUserBias (int userIndex, double bias) 	{
-        User user = Kernel.gi().getUsers()[userIndex];
-        user.put(USER_BIAS_KEY, bias);
+        this.userBias.set(userIndex, bias);
     }
 
     /**
@@ -274,8 +284,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @return Item bias
      */
     public double getItemBias (int itemIndex) {
-        Item item = Kernel.gi().getItems()[itemIndex];
-        return (Double) item.get(ITEM_BIAS_KEY);
+        return this.itemBias.get(itemIndex);
     }
 
     /**
@@ -284,8 +293,7 @@ public class Ndcgumf  implements FactorizationModel {
      * @param bias Item bias
      */
     private void setItemBias (int itemIndex, double bias) {
-        Item item = Kernel.gi().getItems()[itemIndex];
-        item.put(ITEM_BIAS_KEY, bias);
+        this.itemBias.set(itemIndex, bias);
     }
 
     /**
@@ -299,7 +307,7 @@ public class Ndcgumf  implements FactorizationModel {
         double [] factors_i = this.getItemCopyFactors(itemIndex);
 
         if (this.biases) {
-            double average = Kernel.gi().getRatingAverage();
+            double average = this.kernel.getRatingAverage();
 
             double bias_u = this.getUserBias(userIndex);
             double bias_i = this.getItemBias(itemIndex);
@@ -323,7 +331,7 @@ public class Ndcgumf  implements FactorizationModel {
         @Override
         public void run (int userIndex) {
 
-            User user = Kernel.gi().getUsers()[userIndex];
+            User user = Ndcgumf.this.kernel.getUsers()[userIndex];
 
             int itemIndex = 0;
             double idcgu;
@@ -339,14 +347,14 @@ public class Ndcgumf  implements FactorizationModel {
 
             for (int j = 0; j < user.getNumberOfRatings(); j++) {
 
-                while (Kernel.gi().getItems()[itemIndex].getItemCode() < user.getItems()[j]) itemIndex++;
+                itemIndex = user.getItemIndexAt(j);
 
                 smi = Ndcgumf.this.softmax(userIndex,itemIndex);
                 idcgu = Ndcgumf.this.getIdcgu(userIndex);
                 // Get gradiente
 
                 gradiente = 1/idcgu*
-                        (Math.pow(2,user.getRatings()[j])-1)/
+                        (Math.pow(2,user.getRatingAt(j))-1)/
                         (Math.pow(Math.log(Ndcgumf.this.getPos(userIndex,itemIndex) + 1),3))*
                         smi;
 
@@ -360,7 +368,7 @@ public class Ndcgumf  implements FactorizationModel {
 
                     for (int w = 0; w < user.getNumberOfRatings(); w++) {
 
-                        while (Kernel.gi().getItems()[itemIndex].getItemCode() < user.getItems()[j]) itemJndexPrima++;
+                        while (Ndcgumf.this.kernel.getItems()[itemIndex].getItemCode() < user.getItemAt(j)) itemJndexPrima++;
 
                         q_jCopy = Ndcgumf.this.getItemCopyFactors(itemJndexPrima);
 
@@ -414,13 +422,13 @@ public class Ndcgumf  implements FactorizationModel {
             double [] q_i = Ndcgumf.this.getItemFactors(itemIndex);
             double [] q_iCopy = Ndcgumf.this.getItemCopyFactors(itemIndex);
 
-            Item item = Kernel.gi().getItems()[itemIndex];
+            Item item = Ndcgumf.this.kernel.getItems()[itemIndex];
 
             int userIndex = 0;
 
             for (int v = 0; v < item.getNumberOfRatings(); v++)
             {
-                User user = Kernel.gi().getUsers()[userIndex];
+                User user = Ndcgumf.this.kernel.getUsers()[userIndex];
 
                 double gradiente = 0;
 
@@ -428,13 +436,13 @@ public class Ndcgumf  implements FactorizationModel {
                     System.out.println("" + itemIndex + "While start" + v);
                 }
 
-                while (user.getUserCode() < item.getUsers()[v]){
+                while (user.getUserCode() < item.getUserAt(v)){
 
                     int itemIndexPrima = 0;
 
                     for(int w = 0; w < user.getNumberOfRatings(); w++)
                     {
-                        while(Kernel.gi().getItems()[itemIndexPrima].getItemCode() < user.getItems()[w]) itemIndexPrima++;
+                        itemIndexPrima = user.getItemIndexAt(w);
 
                         if(itemIndex != itemIndexPrima){
                             idcgu = Ndcgumf.this.getIdcgu(userIndex);
@@ -442,7 +450,7 @@ public class Ndcgumf  implements FactorizationModel {
                             smiprima =Ndcgumf.this.softmax(userIndex,itemIndexPrima);
 
                             gradiente -= 1/idcgu*
-                                (Math.pow(2,user.getRatings()[w])-1)/
+                                (Math.pow(2,user.getRatingAt(w))-1)/
                                 (Math.pow(Math.log(Ndcgumf.this.getPos(userIndex,itemIndexPrima) + 1),3))*
                                 smi*smiprima;
                         }
@@ -451,7 +459,7 @@ public class Ndcgumf  implements FactorizationModel {
 
                     userIndex++;
 
-                    user = Kernel.gi().getUsers()[userIndex];
+                    user = Ndcgumf.this.kernel.getUsers()[userIndex];
                 }
                 if (itemIndex==0){
                     System.out.println("" + itemIndex + "While fi");
@@ -465,7 +473,7 @@ public class Ndcgumf  implements FactorizationModel {
 
                 for(int w = 0; w < user.getNumberOfRatings(); w++)
                 {
-                    while(Kernel.gi().getItems()[itemIndexPrima].getItemCode() < user.getItems()[w]) itemIndexPrima++;
+                    itemIndexPrima = user.getItemIndexAt(w);
 
                     if(itemIndex != itemIndexPrima){
                         idcgu = Ndcgumf.this.getIdcgu(userIndex);
@@ -473,7 +481,7 @@ public class Ndcgumf  implements FactorizationModel {
                         smiprima =Ndcgumf.this.softmax(userIndex,itemIndexPrima);
 
                         gradiente -= 1/idcgu*
-                                (Math.pow(2,user.getRatings()[w])-1)/
+                                (Math.pow(2,user.getRatingAt(w))-1)/
                                 (Math.pow(Math.log(Ndcgumf.this.getPos(userIndex,itemIndexPrima) + 1),3))*
                                 smi*smiprima;
                     }
@@ -488,7 +496,7 @@ public class Ndcgumf  implements FactorizationModel {
                 idcgu = Ndcgumf.this.getIdcgu(userIndex);
                 // Get gradiente
                 gradiente += 1/idcgu*
-                        (Math.pow(2,item.getRatings()[v])-1)/
+                        (Math.pow(2,item.getRatingAt(v))-1)/
                         (Math.pow(Math.log(Ndcgumf.this.getPos(userIndex,itemIndex) + 1),3))*
                         smi*(1-smi);
 
@@ -542,24 +550,26 @@ public class Ndcgumf  implements FactorizationModel {
 
     /**
      * Get a random number between min and max
+     * @param random Random generator
      * @param min Minimum random value
      * @param max Maximum random value
      * @return Random value between min and max
      */
-    private double random (double min, double max) {
-        return Math.random() * (max - min) + min;
+    private double random (SplittableRandom random, double min, double max) {
+        return random.nextDouble() * (max - min) + min;
     }
 
     /**
      * Get an array of random numbers
+     * @param random Random generator
      * @param size Array length
      * @param min Minimum random value
      * @param max Maximum random value
      * @return Array of randoms
      */
-    private double [] random (int size, double min, double max) {
+    private double [] random (SplittableRandom random, int size, double min, double max) {
         double [] d = new double [size];
-        for (int i = 0; i < size; i++) d[i] = this.random(min, max);
+        for (int i = 0; i < size; i++) d[i] = this.random(random, min, max);
         return d;
     }
 
@@ -567,14 +577,14 @@ public class Ndcgumf  implements FactorizationModel {
 
         double idcgu = 0;
 
-        User user = Kernel.gi().getUsers()[userIndex];
+        User user = this.kernel.getUsers()[userIndex];
 
         ArrayList<Double> valores = new ArrayList<>();
 
         for (int j = 0; j < user.getNumberOfRatings(); j++) {
 
             //Sacar lista de valores para ordenarlos
-            valores.add(user.getRatings()[j]);
+            valores.add(user.getRatingAt(j));
         }
 
         //Ordenar y calcular idcgu
@@ -593,7 +603,7 @@ public class Ndcgumf  implements FactorizationModel {
 
     private double getPos(int userIndex, int itemIndex){
 
-        User user = Kernel.gi().getUsers()[userIndex];
+        User user = this.kernel.getUsers()[userIndex];
 
         double pos = user.getNumberOfRatings() - (user.getNumberOfRatings()-1)*this.softmax(userIndex, itemIndex);
 
@@ -605,13 +615,11 @@ public class Ndcgumf  implements FactorizationModel {
 
         double softmax = 0;
 
-        User user = Kernel.gi().getUsers()[userIndex];
-
-        int itemJndex = 0;
+        User user = this.kernel.getUsers()[userIndex];
 
         for (int j = 0; j < user.getNumberOfRatings(); j++) {
 
-            while (Kernel.gi().getItems()[itemJndex].getItemCode() < user.getItems()[j]) itemJndex++;
+            int itemJndex = user.getItemIndexAt(j);
 
             softmax += Math.exp(this.beta * Ndcgumf.this.getPrediction(userIndex, itemJndex));
         }
@@ -1,5 +1,9 @@
 package cf4j.model.matrixFactorization;
 
+import java.util.SplittableRandom;
+
+import cf4j.ArrayAttribute;
+import cf4j.DoubleAttribute;
 import cf4j.Item;
 import cf4j.ItemsPartible;
 import cf4j.Kernel;
@@ -7,6 +11,7 @@ import cf4j.Processor;
 import cf4j.User;
 import cf4j.UsersPartible;
 import cf4j.utils.Methods;
+import cf4j.utils.Randoms;
 
 /**
  * Implements Probabilist Matrix Factorization: Koren, Y., Bell, R., &amp; Volinsky, C. (2009). 
@@ -50,6 +55,19 @@ public class Pmf implements FactorizationModel {
 	 */
 	private boolean biases;
 
+	/**
+	 * Kernel of the model
+	 */
+	private Kernel kernel;
+
+	/**
+	 * Factors and biases of the users and items (see Kernel.getUsersAttributes())
+	 */
+	private ArrayAttribute userFactors;
+	private DoubleAttribute userBias;
+	private ArrayAttribute itemFactors;
+	private DoubleAttribute itemBias;
+
 	/**
 	 * Model constructor
 	 * @param numFactors Number of factors
@@ -107,28 +125,28 @@ public class Pmf implements FactorizationModel {
 		this.gamma = gamma;
 		this.biases = biases;
 
+		this.kernel = Kernel.gi();
+		this.userFactors = this.kernel.getUsersAttributes().getArrays(USER_FACTORS_KEY);
+		this.userBias = this.kernel.getUsersAttributes().getDoubles(USER_BIAS_KEY);
+		this.itemFactors = this.kernel.getItemsAttributes().getArrays(ITEM_FACTORS_KEY);
+		this.itemBias = this.kernel.getItemsAttributes().getDoubles(ITEM_BIAS_KEY);
+
+		// Each user and item has its own generator (see Randoms)
+		long usersSeed = Randoms.nextSeed();
+		long itemsSeed = Randoms.nextSeed();
+
 		// Users initialization
-		for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-			this.setUserFactors(u, this.random(this.numFactors, -1, 1));
+		for (int u = 0; u < this.kernel.getNumberOfUsers(); u++) {
+			SplittableRandom random = Randoms.get(usersSeed, u);
+			this.setUserFactors(u, this.random(random, this.numFactors, -1, 1));
+			if (this.biases) this.setUserBias(u, this.random(random, -1, 1));
 		}
 
 		// Items initialization
-		for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-			this.setItemFactors(i, this.random(this.numFactors, -1, 1));
-		}
-
-		// Initialize bias if needed
-		if (this.biases) {
-
-			// Users bias initialization
-			for (int u = 0; u < Kernel.gi().getNumberOfUsers(); u++) {
-				this.setUserBias(u, this.random(-1, 1));
-			}
-
-			// Items bias initialization
-			for (int i = 0; i < Kernel.gi().getNumberOfItems(); i++) {
-				this.setItemBias(i, this.random(-1, 1));
-			}
+		for (int i = 0; i < this.kernel.getNumberOfItems(); i++) {
+			SplittableRandom random = Randoms.get(itemsSeed, i);
+			this.setItemFactors(i, this.random(random, this.numFactors, -1, 1));
+			if (this.biases) this.setItemBias(i, this.random(random, -1, 1));
 		}
 	}
 
@@ -180,8 +198,7 @@ public class Pmf implements FactorizationModel {
 	 * @return User factors
 	 */
 	public double [] getUserFactors (int userIndex) {
-		User user = Kernel.gi().getUsers()[userIndex];
-		return (double []) user.get(USER_FACTORS_KEY);
+		return this.userFactors.get(userIndex);
 	}
 
 	/**
@@ -190,8 +207,7 @@ public class Pmf implements FactorizationModel {
 	 * @param factors User factors
 	 */
 	private void setUserFactors (int userIndex, double [] factors) {
-		User user = Kernel.gi().getUsers()[userIndex];
-		user.put(USER_FACTORS_KEY, factors);
+		this.userFactors.set(userIndex, factors);
 	}
 
 	/**
@@ -200,8 +216,7 @@ public class Pmf implements FactorizationModel {
 	 * @return Item factors
 	 */
 	public double [] getItemFactors (int itemIndex) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		return (double []) item.get(ITEM_FACTORS_KEY);
+		return this.itemFactors.get(itemIndex);
 	}
 
 	/**
@@ -210,8 +225,7 @@ public class Pmf implements FactorizationModel {
 	 * @param factors Item factors
 	 */
 	private void setItemFactors (int itemIndex, double [] factors) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		item.put(ITEM_FACTORS_KEY, factors);
+		this.itemFactors.set(itemIndex, factors);
 	}
 
 	/**
@@ -220,8 +234,7 @@ public class Pmf implements FactorizationModel {
 	 * @return User bias or null
 	 */
 	public double getUserBias (int userIndex) {
-		User user = Kernel.gi().getUsers()[userIndex];
-		return (Double) user.get(USER_BIAS_KEY);
+		return this.userBias.get(userIndex);
 	}
 
 	/**
@@ -230,8 +243,7 @@ public class Pmf implements FactorizationModel {
 	 * @param bias User bias
 	 */
 	private void setUserBias (int userIndex, double bias) 	{
-		User user = Kernel.gi().getUsers()[userIndex];
-		user.put(USER_BIAS_KEY, bias);
+		this.userBias.set(userIndex, bias);
 	}
 
 	/**
@@ -240,8 +252,7 @@ public class Pmf implements FactorizationModel {
 	 * @return Item bias
 	 */
 	public double getItemBias (int itemIndex) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		return (Double) item.get(ITEM_BIAS_KEY);
+		return this.itemBias.get(itemIndex);
 	}
 
 	/**
@@ -250,8 +261,7 @@ public class Pmf implements FactorizationModel {
 	 * @param bias Item bias
 	 */
 	private void setItemBias (int itemIndex, double bias) {
-		Item item = Kernel.gi().getItems()[itemIndex];
-		item.put(ITEM_BIAS_KEY, bias);
+		this.itemBias.set(itemIndex, bias);
 	}
 
 	/**
@@ -265,7 +275,7 @@ public class Pmf implements FactorizationModel {
 		double [] factors_i = this.getItemFactors(itemIndex);
 
 		if (this.biases) {
-			double average = Kernel.gi().getRatingAverage();
+			double average = this.kernel.getRatingAverage();
 
 			double bias_u = this.getUserBias(userIndex);
 			double bias_i = this.getItemBias(itemIndex);
@@ -289,16 +299,14 @@ public class Pmf implements FactorizationModel {
 		@Override
 		public void run (int userIndex) {
 
-			User user = Kernel.gi().getUsers()[userIndex];
-
-			int itemIndex = 0;
+			User user = Pmf.this.kernel.getUsers()[userIndex];
 
 			for (int j = 0; j < user.getNumberOfRatings(); j++) {
 
-				while (Kernel.gi().getItems()[itemIndex].getItemCode() < user.getItems()[j]) itemIndex++;
+				int itemIndex = user.getItemIndexAt(j);
 
 				// Get error
-				double error = user.getRatings()[j] - Pmf.this.getPrediction(userIndex, itemIndex);
+				double error = user.getRatingAt(j) - Pmf.this.getPrediction(userIndex, itemIndex);
 
 				// Update p_u
 				double [] p_u = Pmf.this.getUserFactors(userIndex);
@@ -340,16 +348,14 @@ public class Pmf implements FactorizationModel {
 		@Override
 		public void run(int itemIndex) {
 
-			Item item = Kernel.gi().getItems()[itemIndex];
-
-			int userIndex = 0;
+			Item item = Pmf.this.kernel.getItems()[itemIndex];
 
 			for (int v = 0; v < item.getNumberOfRatings(); v++)
 			{
-				while (Kernel.gi().getUsers()[userIndex].getUserCode() < item.getUsers()[v]) userIndex++;
+				int userIndex = item.getUserIndexAt(v);
 
 				// Get error
-				double error = item.getRatings()[v] - Pmf.this.getPrediction(userIndex, itemIndex);
+				double error = item.getRatingAt(v) - Pmf.this.getPrediction(userIndex, itemIndex);
 
 				// Update q_i
 				double [] q_i = Pmf.this.getItemFactors(itemIndex);
@@ -376,24 +382,26 @@ public class Pmf implements FactorizationModel {
 
 	/**
 	 * Get a random number between min and max
+	 * @param random Random generator
 	 * @param min Minimum random value
 	 * @param max Maximum random value
 	 * @return Random value between min and max
 	 */
-	private double random (double min, double max) {
-		return Math.random() * (max - min) + min;
+	private double random (SplittableRandom random, double min, double max) {
+		return random.nextDouble() * (max - min) + min;
 	}
 
 	/**
 	 * Get an array of random numbers
+	 * @param random Random generator
 	 * @param size Array length
 	 * @param min Minimum random value
 	 * @param max Maximum random value
 	 * @return Array of randoms
 	 */
-	private double [] random (int size, double min, double max) {
+	private double [] random (SplittableRandom random, int size, double min, double max) {
 		double [] d = new double [size];
-		for (int i = 0; i < size; i++) d[i] = this.random(min, max);
+		for (int i = 0; i < size; i++) d[i] = this.random(random, min, max);
 		return d;
 	}
 }
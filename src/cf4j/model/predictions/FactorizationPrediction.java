@@ -30,8 +30,7 @@ public class FactorizationPrediction implements TestUsersPartible {
 		double [] predictions = new double [user.getNumberOfTestRatings()];
 
 		for (int i = 0; i < user.getNumberOfTestRatings(); i++) {
-			int itemCode = user.getTestItems()[i];
-			int itemIndex = Kernel.gi().getItemIndex(itemCode);
+			int itemIndex = user.getTestItemIndexAt(i);
 
 			int userIndex = user.getUserIndex();
 
@@ -43,8 +43,8 @@ public class F1 extends QualityMeasure {
 		
 		// Items rated as relevant (in test) by the active user		
 		int relevant = 0;
-		for (double rating : testUser.getTestRatings()) {
-			if (rating >= this.relevantThreshold) {
+		for (int i = 0; i < testUser.getNumberOfTestRatings(); i++) {
+			if (testUser.getTestRatingAt(i) >= this.relevantThreshold) {
 				relevant++;
 			}
 		}
@@ -58,7 +58,7 @@ public class F1 extends QualityMeasure {
 		for (int testItemIndex : recommendations) {
 			if (testItemIndex == -1) break;
 			
-			if (testUser.getTestRatings()[testItemIndex] >= this.relevantThreshold) {
+			if (testUser.getTestRatingAt(testItemIndex) >= this.relevantThreshold) {
 				recommendedAndRelevant++;
 			}
 			
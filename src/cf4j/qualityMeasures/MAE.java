@@ -25,14 +25,14 @@ public class MAE extends QualityMeasure {
 	public double getMeasure (TestUser testUser) {
 		
 		double [] predictions = testUser.getPredictions();
-		double [] ratings = testUser.getTestRatings();
+		int numRatings = testUser.getNumberOfTestRatings();
 		
 		double mae = 0d; 
 		int count = 0;
 		
-		for (int i = 0; i < ratings.length; i++) {
+		for (int i = 0; i < numRatings; i++) {
 			if (!Double.isNaN(predictions[i])) {
-				mae += Math.abs(predictions[i] - ratings[i]);
+				mae += Math.abs(predictions[i] - testUser.getTestRatingAt(i));
 				count++;
 			}
 		}
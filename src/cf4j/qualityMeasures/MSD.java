@@ -25,14 +25,14 @@ public class MSD extends QualityMeasure {
 	public double getMeasure (TestUser testUser) {
 		
 		double [] predictions = testUser.getPredictions();
-		double [] ratings = testUser.getTestRatings();
+		int numRatings = testUser.getNumberOfTestRatings();
 		
 		double msd = 0d; 
 		int count = 0;
 		
-		for (int i = 0; i < ratings.length; i++) {
+		for (int i = 0; i < numRatings; i++) {
 			if (!Double.isNaN(predictions[i])) {
-				msd += Math.pow(predictions[i] - ratings[i], 2);
+				msd += Math.pow(predictions[i] - testUser.getTestRatingAt(i), 2);
 				count++;
 			}
 		}
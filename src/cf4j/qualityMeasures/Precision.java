@@ -51,7 +51,7 @@ public class Precision extends QualityMeasure {
 		for (int testItemIndex : recommendations) {
 			if (testItemIndex == -1) break;
 			
-			if (testUser.getTestRatings()[testItemIndex] >= this.relevantThreshold) {
+			if (testUser.getTestRatingAt(testItemIndex) >= this.relevantThreshold) {
 				recommendedAndRelevant++;
 			}
 			
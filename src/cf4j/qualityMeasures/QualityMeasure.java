@@ -34,6 +34,14 @@ public abstract class QualityMeasure implements TestUsersPartible {
 	@Override
 	public void run (int testUserIndex) {
 		TestUser testUser = Kernel.gi().getTestUsers()[testUserIndex];
+		this.run(testUser);
+	}
+
+	/**
+	 * Computes the quality measure for the test user and saves it in the test user map.
+	 * @param testUser User for compute quality measure
+	 */
+	public void run (TestUser testUser) {
 		double measure = this.getMeasure(testUser);
 		testUser.put(qualityMeasureName, measure);
 	}
@@ -1,32 +1,148 @@
 package cf4j.utils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
- * Util class to read text files line by line given the file name.
- * 
+ * Util class to read text files line by line given the file name. Lines can be retrieved as
+ * strings or parsed as ratings with a RatingTokenizer without allocating any object.
+ *
  * @author Fernando Ortega
  */
 public class InputTextFile {
-	
+
+	/**
+	 * Initial size of the chars buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
 	/**
-	 * Buffered reader of the file
+	 * Reader of the file
 	 */
-	private BufferedReader f;
-	
+	private Reader f;
+
+	/**
+	 * Chars read from the file and not consumed yet
+	 */
+	private char [] buffer;
+
+	/**
+	 * First char not consumed
+	 */
+	private int pos;
+
+	/**
+	 * End of the chars read
+	 */
+	private int limit;
+
+	/**
+	 * End of file reached
+	 */
+	private boolean eof;
+
 	public InputTextFile (String filename) throws FileNotFoundException {
-		this.f = new BufferedReader (new FileReader (new File(filename)));
+		this(new FileReader (new File(filename)));
+	}
+
+	public InputTextFile (Reader reader) {
+		this.f = reader;
+		this.buffer = new char [BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.eof = false;
 	}
-	
+
+	/**
+	 * Reads a line. Lines are terminated by '\n', '\r' or "\r\n".
+	 * @return Line without terminator or null at the end of the file
+	 * @throws IOException If the file can not be read
+	 */
 	public String readLine () throws IOException {
-		return this.f.readLine();
+		int end = this.lineEnd();
+		if (end == -1) return null;
+		String line = new String(this.buffer, this.pos, end - this.pos);
+		this.consumeLine(end);
+		return line;
+	}
+
+	/**
+	 * Reads the next rating of the file. Empty lines are skipped.
+	 * @param tokenizer Tokenizer used to parse the line. The fields of the rating are retrieved from it.
+	 * @return True if a rating was read; False at the end of the file
+	 * @throws IOException If the file can not be read
+	 * @throws NumberFormatException If the line is malformed
+	 */
+	public boolean readRating (RatingTokenizer tokenizer) throws IOException {
+		int end;
+		while ((end = this.lineEnd()) != -1) {
+			boolean parsed = tokenizer.parse(this.buffer, this.pos, end);
+			this.consumeLine(end);
+			if (parsed) return true;
+		}
+		return false;
 	}
-	 
+
 	public void close() throws IOException {
 		this.f.close();
 	}
+
+	/**
+	 * Finds the end of the current line reading more chars if needed
+	 * @return Position of the line terminator (or end of the chars at the end of file) or -1 if
+	 * 	there are not more lines
+	 * @throws IOException If the file can not be read
+	 */
+	private int lineEnd () throws IOException {
+		int offset = 0;
+		while (true) {
+			for (int i = this.pos + offset; i < this.limit; i++) {
+				char c = this.buffer[i];
+				if (c == '\n' || c == '\r') return i;
+			}
+			if (this.eof) return (this.pos < this.limit) ? this.limit : -1;
+			offset = this.limit - this.pos;
+			this.fill();
+		}
+	}
+
+	/**
+	 * Consumes the current line and its terminator
+	 * @param end Position of the line terminator
+	 * @throws IOException If the file can not be read
+	 */
+	private void consumeLine (int end) throws IOException {
+		this.pos = end;
+		if (this.pos == this.limit) return;
+
+		char c = this.buffer[this.pos++];
+		if (c == '\r') {
+			if (this.pos == this.limit && !this.eof) this.fill();
+			if (this.pos < this.limit && this.buffer[this.pos] == '\n') this.pos++;
+		}
+	}
+
+	/**
+	 * Moves the chars not consumed to the beginning of the buffer and reads more chars
+	 * @throws IOException If the file can not be read
+	 */
+	private void fill () throws IOException {
+		if (this.pos > 0) {
+			System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+			this.limit -= this.pos;
+			this.pos = 0;
+		}
+
+		if (this.limit == this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+		}
+
+		int read = this.f.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (read == -1) this.eof = true;
+		else this.limit += read;
+	}
 }
@@ -0,0 +1,75 @@
+package cf4j.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>This class is the source of randomness of the library. It is used to split the datasets and to
+ * initialize the models.</p>
+ *
+ * <p>Every random process takes its own seed from a global sequence, and every user or item draws its
+ * random numbers from its own generator, which is derived from that seed and the index of the user or item.
+ * So, the random numbers of an user or an item do not depend on the order in which they are processed or on
+ * the number of threads, and there is no synchronized generator shared by all threads.</p>
+ *
+ * <p>If a seed is set with setSeed(...) before the dataset is opened, the split of the dataset and the
+ * initialization of the models are reproducible. Otherwise, a different seed is used in each execution.</p>
+ *
+ * @author Fernando Ortega
+ */
+public class Randoms {
+
+	/**
+	 * Generator of the seeds of the random processes
+	 */
+	private static SplittableRandom seeds = new SplittableRandom();
+
+	/**
+	 * Sets the global seed. The sequence of seeds given by nextSeed() is restarted.
+	 * @param seed Global seed
+	 */
+	public static synchronized void setSeed (long seed) {
+		Randoms.seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Returns the next seed of the global sequence. Each random process (a dataset splitter, a model
+	 * initialization...) must take its own seed.
+	 * @return Seed
+	 */
+	public static synchronized long nextSeed () {
+		return Randoms.seeds.nextLong();
+	}
+
+	/**
+	 * Returns the generator of an element (an user, an item...) of a random process. The generator is
+	 * always the same for the same seed and index, so it can be created from any thread.
+	 * @param seed Seed of the random process
+	 * @param index Index or code of the element
+	 * @return Random generator of the element
+	 */
+	public static SplittableRandom get (long seed, long index) {
+		return new SplittableRandom(Randoms.mix(seed ^ Randoms.mix(index)));
+	}
+
+	/**
+	 * Returns an uniform random number in [0, 1) for an element of a random process without creating
+	 * its generator. The number is always the same for the same seed and index.
+	 * @param seed Seed of the random process
+	 * @param index Index or code of the element
+	 * @return Random number between 0 (inclusive) and 1 (exclusive)
+	 */
+	public static double nextDouble (long seed, long index) {
+		return (Randoms.mix(seed ^ Randoms.mix(index)) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Mixes the bits of a value (David Stafford's variant 13 of the MurmurHash3 finalizer)
+	 * @param z Value
+	 * @return Mixed value
+	 */
+	private static long mix (long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
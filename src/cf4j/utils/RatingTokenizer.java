@@ -0,0 +1,333 @@
+package cf4j.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Parses rating lines with the format:</p>
+ * <p>userCode SEPARATOR itemCode SEPARATOR rating [SEPARATOR timestamp]</p>
+ *
+ * <p>The separator is matched literally (it is not a regular expression) and can have any length.
+ * Lines can be parsed directly from bytes or chars without allocating any object, so the same
+ * tokenizer should be reused for all the lines of a file. After a line has been parsed, its fields
+ * are retrieved with the getters. Fields after the timestamp are ignored.</p>
+ *
+ * <p>This class is not thread safe: each thread must use its own tokenizer.</p>
+ *
+ * @author Fernando Ortega
+ */
+public class RatingTokenizer {
+
+	/**
+	 * Powers of ten that can be represented exactly as doubles
+	 */
+	private static final double [] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final int BYTES = 0;
+	private static final int BUFFER = 1;
+	private static final int CHARS = 2;
+	private static final int SEQUENCE = 3;
+
+	/**
+	 * Separator chars
+	 */
+	private char [] separatorChars;
+
+	/**
+	 * Separator bytes (UTF-8)
+	 */
+	private byte [] separatorBytes;
+
+	/**
+	 * Type of the line being parsed
+	 */
+	private int source;
+
+	private byte [] bytes;
+	private ByteBuffer buffer;
+	private char [] chars;
+	private CharSequence sequence;
+
+	/**
+	 * Fields of the last line parsed
+	 */
+	private int userCode;
+	private int itemCode;
+	private double rating;
+	private long timestamp;
+	private boolean hasTimestamp;
+
+	/**
+	 * Creates a new tokenizer
+	 * @param separator Separator between fields
+	 */
+	public RatingTokenizer (String separator) {
+		if (separator == null || separator.isEmpty()) {
+			throw new IllegalArgumentException("Separator can not be empty");
+		}
+		this.separatorChars = separator.toCharArray();
+		this.separatorBytes = separator.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses a line stored in a byte array
+	 * @param line Array containing the line
+	 * @param from First byte of the line
+	 * @param to End of the line (exclusive)
+	 * @return False if the line is empty; True otherwise
+	 * @throws NumberFormatException If the line is malformed
+	 */
+	public boolean parse (byte [] line, int from, int to) {
+		this.source = BYTES;
+		this.bytes = line;
+		return this.tokenize(from, to);
+	}
+
+	/**
+	 * Parses a line stored in a byte buffer. Buffer position and limit are not modified.
+	 * @param line Buffer containing the line
+	 * @param from First byte of the line
+	 * @param to End of the line (exclusive)
+	 * @return False if the line is empty; True otherwise
+	 * @throws NumberFormatException If the line is malformed
+	 */
+	public boolean parse (ByteBuffer line, int from, int to) {
+		this.source = BUFFER;
+		this.buffer = line;
+		return this.tokenize(from, to);
+	}
+
+	/**
+	 * Parses a line stored in a char array
+	 * @param line Array containing the line
+	 * @param from First char of the line
+	 * @param to End of the line (exclusive)
+	 * @return False if the line is empty; True otherwise
+	 * @throws NumberFormatException If the line is malformed
+	 */
+	public boolean parse (char [] line, int from, int to) {
+		this.source = CHARS;
+		this.chars = line;
+		return this.tokenize(from, to);
+	}
+
+	/**
+	 * Parses a line
+	 * @param line Line
+	 * @return False if the line is empty; True otherwise
+	 * @throws NumberFormatException If the line is malformed
+	 */
+	public boolean parse (CharSequence line) {
+		this.source = SEQUENCE;
+		this.sequence = line;
+		return this.tokenize(0, line.length());
+	}
+
+	/**
+	 * Returns the user code of the last line parsed
+	 * @return User code
+	 */
+	public int getUserCode () {
+		return this.userCode;
+	}
+
+	/**
+	 * Returns the item code of the last line parsed
+	 * @return Item code
+	 */
+	public int getItemCode () {
+		return this.itemCode;
+	}
+
+	/**
+	 * Returns the rating of the last line parsed
+	 * @return Rating
+	 */
+	public double getRating () {
+		return this.rating;
+	}
+
+	/**
+	 * Returns if the last line parsed contains a valid timestamp
+	 * @return True if there is timestamp
+	 */
+	public boolean hasTimestamp () {
+		return this.hasTimestamp;
+	}
+
+	/**
+	 * Returns the timestamp of the last line parsed
+	 * @return Timestamp or 0 if the line has not timestamp
+	 */
+	public long getTimestamp () {
+		return this.timestamp;
+	}
+
+	/**
+	 * Splits the line into fields and parses them
+	 * @param from First position of the line
+	 * @param to End of the line
+	 * @return False if the line is empty
+	 */
+	private boolean tokenize (int from, int to) {
+		if (to > from && this.at(to - 1) == '\r') to--;
+		if (to <= from) return false;
+
+		int length = (this.source == BYTES || this.source == BUFFER) ? this.separatorBytes.length : this.separatorChars.length;
+
+		int s1 = this.indexOfSeparator(from, to);
+		int s2 = (s1 < to) ? this.indexOfSeparator(s1 + length, to) : to;
+		if (s2 == to) throw new NumberFormatException("Malformed rating line: \"" + this.field(from, to) + "\"");
+		int s3 = this.indexOfSeparator(s2 + length, to);
+
+		this.userCode = (int) this.parseLong(from, s1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		this.itemCode = (int) this.parseLong(s1 + length, s2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		this.rating = this.parseDouble(s2 + length, s3);
+
+		this.hasTimestamp = false;
+		this.timestamp = 0;
+		if (s3 < to) {
+			int s4 = this.indexOfSeparator(s3 + length, to);
+			try {
+				this.timestamp = this.parseLong(s3 + length, s4, Long.MIN_VALUE, Long.MAX_VALUE);
+				this.hasTimestamp = true;
+			} catch (NumberFormatException e) {
+				// Optional field: an unknown format is ignored
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the char or byte at a position of the line
+	 * @param i Position
+	 * @return Char or byte value
+	 */
+	private int at (int i) {
+		switch (this.source) {
+			case BYTES: return this.bytes[i];
+			case BUFFER: return this.buffer.get(i);
+			case CHARS: return this.chars[i];
+			default: return this.sequence.charAt(i);
+		}
+	}
+
+	/**
+	 * Finds the separator inside the line
+	 * @param from First position to search
+	 * @param to End of the line
+	 * @return Position of the separator or the end of the line if it is not found
+	 */
+	private int indexOfSeparator (int from, int to) {
+		boolean binary = (this.source == BYTES || this.source == BUFFER);
+		int length = binary ? this.separatorBytes.length : this.separatorChars.length;
+		int first = binary ? this.separatorBytes[0] : this.separatorChars[0];
+
+		for (int i = from; i <= to - length; i++) {
+			if (this.at(i) == first) {
+				int j = 1;
+				while (j < length && this.at(i + j) == (binary ? this.separatorBytes[j] : this.separatorChars[j])) j++;
+				if (j == length) return i;
+			}
+		}
+		return to;
+	}
+
+	/**
+	 * Parses an integer field with the same rules than Long.parseLong
+	 * @param from First position of the field
+	 * @param to End of the field
+	 * @param min Minimum value allowed
+	 * @param max Maximum value allowed
+	 * @return Parsed value
+	 */
+	private long parseLong (int from, int to, long min, long max) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (this.at(i) == '-' || this.at(i) == '+')) {
+			negative = this.at(i) == '-';
+			i++;
+		}
+		if (i >= to) throw new NumberFormatException("For input string: \"" + this.field(from, to) + "\"");
+
+		long value = 0;
+		for (; i < to; i++) {
+			int digit = this.at(i) - '0';
+			if (digit < 0 || digit > 9) throw new NumberFormatException("For input string: \"" + this.field(from, to) + "\"");
+
+			// Accumulate negatively to reach Long.MIN_VALUE
+			if (value < (Long.MIN_VALUE + digit) / 10) throw new NumberFormatException("For input string: \"" + this.field(from, to) + "\"");
+			value = value * 10 - digit;
+		}
+
+		if (!negative) {
+			if (value == Long.MIN_VALUE) throw new NumberFormatException("For input string: \"" + this.field(from, to) + "\"");
+			value = -value;
+		}
+
+		if (value < min || value > max) throw new NumberFormatException("For input string: \"" + this.field(from, to) + "\"");
+		return value;
+	}
+
+	/**
+	 * Parses a double field with the same result than Double.parseDouble. Plain decimal numbers
+	 * are parsed without allocations; any other notation is delegated to Double.parseDouble.
+	 * @param from First position of the field
+	 * @param to End of the field
+	 * @return Parsed value
+	 */
+	private double parseDouble (int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (this.at(i) == '-' || this.at(i) == '+')) {
+			negative = this.at(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0, scale = 0;
+		boolean dot = false;
+		for (; i < to; i++) {
+			int c = this.at(i);
+			if (c >= '0' && c <= '9' && digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (dot) scale++;
+			} else if (c == '.' && !dot) {
+				dot = true;
+			} else {
+				return Double.parseDouble(this.field(from, to));
+			}
+		}
+
+		// The value is exact if the mantissa and the power of ten are exact doubles
+		if (digits == 0 || mantissa >= (1L << 53) || scale >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(this.field(from, to));
+		}
+
+		double value = (double) mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Returns a field as string (used for errors and uncommon notations)
+	 * @param from First position of the field
+	 * @param to End of the field
+	 * @return Field string
+	 */
+	private String field (int from, int to) {
+		switch (this.source) {
+			case BYTES: return new String(this.bytes, from, to - from, StandardCharsets.UTF_8);
+			case CHARS: return new String(this.chars, from, to - from);
+			case SEQUENCE: return this.sequence.subSequence(from, to).toString();
+			default:
+				byte [] b = new byte [to - from];
+				for (int i = from; i < to; i++) b[i - from] = this.buffer.get(i);
+				return new String(b, StandardCharsets.UTF_8);
+		}
+	}
+}